@@ -0,0 +1,63 @@
+import benchmarks.BookBenchmarkTarget;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Supplier;
+
+public class BookBenchmarkAdapter implements BookBenchmarkTarget {
+
+    private BookFileList bookFileList;
+
+    @Override
+    public int loadBook(Path bookPath, String loadMode, String wordTable) {
+        Supplier<WordCounter> wordCounterFactory = wordTable.equals("OFF_HEAP") ? OffHeapWordTable::new : Utf8WordTable::new;
+        return new BookFile(bookPath, LoadMode.valueOf(loadMode), wordCounterFactory).getWordCount();
+    }
+
+    @Override
+    public int loadNormalizedBook(Path bookPath, String normalization) {
+        BookFile bookFile = new BookFile(bookPath);
+        bookFile.setTextNormalizer(TextNormalizer.parse(normalization));
+        return bookFile.getWordCount();
+    }
+
+    @Override
+    public long countTokens(Path bookPath) {
+        long tokenCount = 0;
+        for (Word word : new BookFile(bookPath).getVocabulary()) {
+            tokenCount += word.getCount();
+        }
+        return tokenCount;
+    }
+
+    @Override
+    public void setUpBookFileList(List<Path> bookPaths) {
+        bookFileList = new BookFileList();
+        for (Path bookPath : bookPaths) {
+            bookFileList.addBookFileToList(new BookFile(bookPath));
+        }
+        bookFileList.preloadBookFiles().join();
+        bookFileList.chooseReferenceFile(1);
+    }
+
+    @Override
+    public void chooseReferenceFile(int bookNumber) {
+        bookFileList.chooseReferenceFile(bookNumber);
+    }
+
+    @Override
+    public Object getMostUsedWords(int count) {
+        return bookFileList.getReferenceBookFile().getMostUsedWords(count);
+    }
+
+    @Override
+    public Object getWordsOnlyPresentInReferenceFile() {
+        return bookFileList.getWordsOnlyPresentInReferenceFile();
+    }
+
+    @Override
+    public Object getCommonWordsPercentage() {
+        return bookFileList.getCommonWordsPercentage();
+    }
+
+}
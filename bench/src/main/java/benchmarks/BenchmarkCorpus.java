@@ -0,0 +1,142 @@
+package benchmarks;
+
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bundled books, and synthetic corpora scaling them.
+ * A book scaled n times is made of n copies of the book, where one word out of ten gets a copy specific suffix, so that
+ * the vocabulary grows with the corpus and not only the counts. Scaled books are generated once in the temporary
+ * directory and reused by following runs, like their compressed copies.
+ */
+public final class BenchmarkCorpus {
+
+    private static final Path BOOKS_DIRECTORY = findBooksDirectory();
+    private static final Path SCALED_BOOKS_DIRECTORY = Path.of(System.getProperty("java.io.tmpdir"), "books-bench");
+    private static final int GZIP_MEMBER_SIZE = 1 << 20;
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * Gets a bundled book, scaled a number of times.
+     *
+     * @param bookName the bundled book name (ethique, reforme or traite).
+     * @param scale    the number of book copies.
+     * @return the book file path.
+     */
+    public static Path getBook(String bookName, int scale) {
+        Path bookPath = BOOKS_DIRECTORY.resolve(bookName + "-line.txt");
+        if (scale == 1) {
+            return bookPath;
+        }
+
+        Path scaledBookPath = SCALED_BOOKS_DIRECTORY.resolve(bookName + "-x" + scale + "-line.txt");
+        try {
+            if (!Files.exists(scaledBookPath)) {
+                writeScaledBook(bookPath, scale, scaledBookPath);
+            }
+        } catch (IOException ioEx) {
+            throw new UncheckedIOException(ioEx);
+        }
+        return scaledBookPath;
+    }
+
+    /**
+     * Gets a compressed copy of a bundled book, scaled a number of times.
+     *
+     * @param bookName    the bundled book name (ethique, reforme or traite).
+     * @param scale       the number of book copies.
+     * @param compression the compression: none, gzip (a single member), gzip_members (1 MiB members, like bgzip
+     *                    writes them) or zstd.
+     * @return the book file path.
+     */
+    public static Path getCompressedBook(String bookName, int scale, String compression) {
+        Path bookPath = getBook(bookName, scale);
+        if (compression.equals("none")) {
+            return bookPath;
+        }
+
+        Path compressedBookPath = SCALED_BOOKS_DIRECTORY.resolve(bookName + "-x" + scale + "-line." + compression);
+        try {
+            if (!Files.exists(compressedBookPath)) {
+                Files.createDirectories(SCALED_BOOKS_DIRECTORY);
+                Path temporaryPath = Files.createTempFile(SCALED_BOOKS_DIRECTORY, bookName, ".tmp");
+                writeCompressedBook(bookPath, compression, temporaryPath);
+                Files.move(temporaryPath, compressedBookPath);
+            }
+        } catch (IOException ioEx) {
+            throw new UncheckedIOException(ioEx);
+        }
+        return compressedBookPath;
+    }
+
+    private static void writeCompressedBook(Path bookPath, String compression, Path compressedBookPath)
+            throws IOException {
+        try (InputStream input = Files.newInputStream(bookPath);
+             OutputStream output = Files.newOutputStream(compressedBookPath)) {
+            switch (compression) {
+                case "gzip" -> {
+                    try (GZIPOutputStream gzipOutput = new GZIPOutputStream(output)) {
+                        input.transferTo(gzipOutput);
+                    }
+                }
+                case "gzip_members" -> {
+                    byte[] memberBytes;
+                    while ((memberBytes = input.readNBytes(GZIP_MEMBER_SIZE)).length > 0) {
+                        ByteArrayOutputStream member = new ByteArrayOutputStream();
+                        try (GZIPOutputStream gzipOutput = new GZIPOutputStream(member)) {
+                            gzipOutput.write(memberBytes);
+                        }
+                        member.writeTo(output);
+                    }
+                }
+                case "zstd" -> {
+                    try (ZstdOutputStream zstdOutput = new ZstdOutputStream(output)) {
+                        input.transferTo(zstdOutput);
+                    }
+                }
+                default -> throw new IllegalArgumentException("Unknown compression: " + compression);
+            }
+        }
+    }
+
+    private static void writeScaledBook(Path bookPath, int scale, Path scaledBookPath) throws IOException {
+        List<String> lines = Files.readAllLines(bookPath, StandardCharsets.UTF_8);
+        Files.createDirectories(SCALED_BOOKS_DIRECTORY);
+
+        Path temporaryPath = Files.createTempFile(SCALED_BOOKS_DIRECTORY, bookPath.getFileName().toString(), ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporaryPath, StandardCharsets.UTF_8)) {
+            for (int copy = 0; copy < scale; copy++) {
+                for (int i = 0; i < lines.size(); i++) {
+                    writer.write(lines.get(i));
+                    if (copy > 0 && i % 10 == copy % 10) {
+                        writer.write(Integer.toString(copy));
+                    }
+                    writer.write('\n');
+                }
+            }
+        }
+        Files.move(temporaryPath, scaledBookPath);
+    }
+
+    private static Path findBooksDirectory() {
+        Path booksDirectory = Path.of(System.getProperty("books.dir", "resources/books"));
+        if (!Files.isDirectory(booksDirectory) && Files.isDirectory(Path.of("..").resolve(booksDirectory))) {
+            return Path.of("..").resolve(booksDirectory);
+        }
+        return booksDirectory;
+    }
+
+}
@@ -0,0 +1,91 @@
+package benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Operations measured by the benchmarks.
+ * Book classes live in the default package, which cannot be referenced from a named package (and JMH does not allow
+ * benchmarks in the default package): they are reached through this interface, implemented in the default package.
+ */
+public interface BookBenchmarkTarget {
+
+    /**
+     * Creates the benchmark target, the implementation being looked up once, out of measured code.
+     *
+     * @return the benchmark target.
+     */
+    static BookBenchmarkTarget create() {
+        try {
+            return (BookBenchmarkTarget) Class.forName("BookBenchmarkAdapter").getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException | NoSuchMethodException | InstantiationException | IllegalAccessException
+                 | InvocationTargetException ex) {
+            throw new IllegalStateException("Book benchmark adapter cannot be created", ex);
+        }
+    }
+
+    /**
+     * Loads a book file from scratch.
+     *
+     * @param bookPath  the book file path.
+     * @param loadMode  the load mode name.
+     * @param wordTable the counting engine: HEAP or OFF_HEAP.
+     * @return the number of distinct words.
+     */
+    int loadBook(Path bookPath, String loadMode, String wordTable);
+
+    /**
+     * Loads a book file from scratch, memory-mapped, turning its lines into words with some normalization stages.
+     *
+     * @param bookPath      the book file path.
+     * @param normalization the normalization stage names separated by commas, or "none".
+     * @return the number of distinct words.
+     */
+    int loadNormalizedBook(Path bookPath, String normalization);
+
+    /**
+     * Counts the words (lines) of a book file.
+     *
+     * @param bookPath the book file path.
+     * @return the number of words, distinct or not.
+     */
+    long countTokens(Path bookPath);
+
+    /**
+     * Creates and loads the book file list queried by the other operations, first book being the reference one.
+     *
+     * @param bookPaths the book file paths.
+     */
+    void setUpBookFileList(List<Path> bookPaths);
+
+    /**
+     * Chooses the reference book, comparisons with the previous reference book being forgotten.
+     *
+     * @param bookNumber the reference book number, starting from 1.
+     */
+    void chooseReferenceFile(int bookNumber);
+
+    /**
+     * Gets the most used words of the reference book.
+     *
+     * @param count the number of most used words.
+     * @return the result.
+     */
+    Object getMostUsedWords(int count);
+
+    /**
+     * Gets the words only present in the reference book.
+     *
+     * @return the result.
+     */
+    Object getWordsOnlyPresentInReferenceFile();
+
+    /**
+     * Gets the common words percentage of each book regarding the reference book.
+     *
+     * @return the result.
+     */
+    Object getCommonWordsPercentage();
+
+}
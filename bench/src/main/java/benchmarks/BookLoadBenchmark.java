@@ -0,0 +1,73 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Book loading throughput: besides loads per second, "bytes" and "tokens" secondary results give the throughput in
+ * bytes (divide by 1e6 for MB/s) and words per second. Run with "-prof gc" to get the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookLoadBenchmark {
+
+    @Param({"ethique", "reforme", "traite"})
+    public String bookName;
+
+    @Param({"1", "10", "100", "1000"})
+    public int scale;
+
+    @Param({"READER", "MAPPED", "PARALLEL"})
+    public String loadMode;
+
+    @Param({"HEAP", "OFF_HEAP"})
+    public String wordTable;
+
+    private BookBenchmarkTarget target;
+    private Path bookPath;
+    private long bookSize;
+    private long bookTokens;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        target = BookBenchmarkTarget.create();
+        bookPath = BenchmarkCorpus.getBook(bookName, scale);
+        bookSize = Files.size(bookPath);
+        bookTokens = target.countTokens(bookPath);
+    }
+
+    @Benchmark
+    public int loadBook(LoadThroughput loadThroughput) {
+        loadThroughput.bytes += bookSize;
+        loadThroughput.tokens += bookTokens;
+        return target.loadBook(bookPath, loadMode, wordTable);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class LoadThroughput {
+        public long bytes;
+        public long tokens;
+    }
+
+}
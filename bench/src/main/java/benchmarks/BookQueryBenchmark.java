@@ -0,0 +1,86 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries on loaded books (books are loaded once per trial, only queries are measured), reference book being
+ * ethique and compared books reforme and traite, all scaled the same way.
+ * Comparisons with the reference book are kept until books change, so comparison queries are measured twice: hot,
+ * answered from the kept comparison, and cold, the reference book being chosen again before each invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookQueryBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int scale;
+
+    private BookBenchmarkTarget target;
+
+    @Setup
+    public void setUp() {
+        target = BookBenchmarkTarget.create();
+        target.setUpBookFileList(List.of(
+                BenchmarkCorpus.getBook("ethique", scale),
+                BenchmarkCorpus.getBook("reforme", scale),
+                BenchmarkCorpus.getBook("traite", scale)));
+    }
+
+    @Benchmark
+    public Object getMostUsedWords() {
+        return target.getMostUsedWords(50);
+    }
+
+    @Benchmark
+    public Object getWordsOnlyPresentInReferenceFile() {
+        return target.getWordsOnlyPresentInReferenceFile();
+    }
+
+    @Benchmark
+    public Object getCommonWordsPercentage() {
+        return target.getCommonWordsPercentage();
+    }
+
+    @Benchmark
+    public Object getWordsOnlyPresentInReferenceFileCold(ColdReference coldReference) {
+        return target.getWordsOnlyPresentInReferenceFile();
+    }
+
+    @Benchmark
+    public Object getCommonWordsPercentageCold(ColdReference coldReference) {
+        return target.getCommonWordsPercentage();
+    }
+
+    /**
+     * Forgets the kept comparison before each invocation, by choosing another reference book and then ethique again.
+     */
+    @State(Scope.Thread)
+    public static class ColdReference {
+
+        @Setup(Level.Invocation)
+        public void forgetComparison(BookQueryBenchmark benchmark) {
+            benchmark.target.chooseReferenceFile(2);
+            benchmark.target.chooseReferenceFile(1);
+        }
+
+    }
+
+}
@@ -0,0 +1,67 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load of compressed books, to compare with the plain text book ("none", memory-mapped). Gzip members are
+ * decompressed in parallel, a single gzip member or a zstd frame are decompressed on one thread while lines are
+ * counted on another one. The "bytes" secondary result gives the throughput in uncompressed bytes per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressedLoadBenchmark {
+
+    @Param({"ethique"})
+    public String bookName;
+
+    @Param({"10"})
+    public int scale;
+
+    @Param({"none", "gzip", "gzip_members", "zstd"})
+    public String compression;
+
+    private BookBenchmarkTarget target;
+    private Path bookPath;
+    private long bookSize;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        target = BookBenchmarkTarget.create();
+        bookPath = BenchmarkCorpus.getCompressedBook(bookName, scale, compression);
+        bookSize = Files.size(BenchmarkCorpus.getBook(bookName, scale));
+    }
+
+    @Benchmark
+    public int loadCompressedBook(LoadThroughput loadThroughput) {
+        loadThroughput.bytes += bookSize;
+        return target.loadBook(bookPath, "MAPPED", "HEAP");
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class LoadThroughput {
+        public long bytes;
+    }
+
+}
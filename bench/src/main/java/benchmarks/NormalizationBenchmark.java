@@ -0,0 +1,71 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of each text normalization stage: books are loaded with a single stage, to compare with "none" (raw lines
+ * through the normalization pipeline) and "case_folding" alone (the default normalizer, lower-cased by the book reader
+ * itself). "all" enables every stage. The "bytes" secondary result gives the throughput in bytes per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NormalizationBenchmark {
+
+    private static final String ALL_STAGES = "tokenization,case_folding,nfc,accent_stripping,punctuation_filtering,"
+            + "digit_filtering,french_stop_words,english_stop_words,light_stemming";
+
+    @Param({"ethique"})
+    public String bookName;
+
+    @Param({"10"})
+    public int scale;
+
+    @Param({"none", "case_folding", "tokenization", "nfc", "accent_stripping", "punctuation_filtering",
+            "digit_filtering", "french_stop_words", "english_stop_words", "light_stemming", "all"})
+    public String normalization;
+
+    private BookBenchmarkTarget target;
+    private Path bookPath;
+    private long bookSize;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        target = BookBenchmarkTarget.create();
+        bookPath = BenchmarkCorpus.getBook(bookName, scale);
+        bookSize = Files.size(bookPath);
+    }
+
+    @Benchmark
+    public int loadNormalizedBook(NormalizationThroughput normalizationThroughput) {
+        normalizationThroughput.bytes += bookSize;
+        return target.loadNormalizedBook(bookPath, normalization.equals("all") ? ALL_STAGES : normalization);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class NormalizationThroughput {
+        public long bytes;
+    }
+
+}
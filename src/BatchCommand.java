@@ -0,0 +1,630 @@
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * Non interactive command computing book statistics, for scripts and pipelines:
+ * <pre>
+ * stats [--reference book] [--top count] [--format jsonl|csv] [--list file|-] [--index-cache] [--metrics]
+ *       [--max-loaded-bytes size] [--off-heap] [--normalize stage,...|none] [--tfidf] book...
+ * </pre>
+ * With many books, {@code --max-loaded-bytes} bounds the memory used by loaded books (see {@link BookCache}), and
+ * {@code --index-cache} makes loading evicted books again faster. {@code --off-heap} counts words outside of the Java
+ * heap while loading books (see {@link OffHeapWordTable}). {@code --normalize} sets the stages turning book lines into
+ * words (see {@link NormalizationStage}), books being read one lower-cased word per line by default. {@code --tfidf}
+ * also compares books by word frequencies (see {@link TfIdfVector}).
+ * Records are written to standard output as soon as they are computed, errors to standard error, and the exit status
+ * tells whether the command succeeded.
+ * <p>
+ * Records written, see {@link BookRecordWriter} for their fields:
+ * <ul>
+ *     <li>{@code words}: number of distinct words of each book</li>
+ *     <li>{@code top}: most used words of each book, with their count</li>
+ *     <li>{@code only_in_reference}: words only present in reference book, with their count</li>
+ *     <li>{@code common_rate}: rate of reference book words present in each other book</li>
+ *     <li>with {@code --tfidf}, {@code cosine}: cosine similarity of the TF-IDF word weights of the reference book and
+ *     each other book</li>
+ *     <li>with {@code --tfidf}, {@code distinctive}: words of each book with the highest TF-IDF weights, with their
+ *     weight</li>
+ *     <li>with {@code --metrics}, book load and query measures (see {@link MetricsSnapshot})</li>
+ * </ul>
+ * <p>
+ * Another command analyzes standard input (gzip compressed or not) as it arrives, in bounded memory (see
+ * {@link StreamingBookAnalyzer}):
+ * <pre>
+ * stream [--top count] [--capacity count] [--interval words] [--format jsonl|csv] [--normalize stage,...|none] book...
+ * </pre>
+ * Records are written for each snapshot of the stream, book field being "stdin":
+ * <ul>
+ *     <li>{@code snapshot}: snapshot version</li>
+ *     <li>{@code tokens}: number of words read so far</li>
+ *     <li>{@code distinct_words}: estimated number of distinct words read so far</li>
+ *     <li>{@code top}: approximate most used words, with their estimated count</li>
+ *     <li>{@code common_rate}: rate of monitored stream words present in each book given</li>
+ * </ul>
+ * <p>
+ * A last command answers the same statistics queries over HTTP until it is stopped (see {@link BookQueryServer}),
+ * listening to the loopback address by default, and refreshing the books as soon as they change with {@code --watch}:
+ * <pre>
+ * serve [--host address] [--port port] [--list file|-] [--index-cache] [--max-loaded-bytes size] [--watch]
+ *       [--normalize stage,...|none] book...
+ * </pre>
+ */
+public final class BatchCommand {
+
+    /**
+     * Exit status of a successful command.
+     */
+    public static final int EXIT_SUCCESS = 0;
+    /**
+     * Exit status of a command which could not read a book or write its results.
+     */
+    public static final int EXIT_FAILURE = 1;
+    /**
+     * Exit status of a command with invalid arguments.
+     */
+    public static final int EXIT_USAGE = 2;
+
+    private static final String STATS_COMMAND = "stats";
+    private static final String STREAM_COMMAND = "stream";
+    private static final String SERVE_COMMAND = "serve";
+    private static final String STREAM_NAME = "stdin";
+    private static final int DEFAULT_TOP_COUNT = 50;
+    private static final String DEFAULT_HOST = "127.0.0.1";
+    private static final int DEFAULT_PORT = 8080;
+    private static final long DEFAULT_SNAPSHOT_WORD_INTERVAL = 100_000;
+    private static final long DEFAULT_SNAPSHOT_MILLIS_INTERVAL = 1000;
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    private BatchCommand() {
+    }
+
+    /**
+     * Checks whether program arguments start with a batch command.
+     *
+     * @param args program arguments.
+     * @return true if a batch command must be run, false otherwise.
+     */
+    public static boolean isCommand(String[] args) {
+        return args.length > 0
+                && (args[0].equals(STATS_COMMAND) || args[0].equals(STREAM_COMMAND) || args[0].equals(SERVE_COMMAND));
+    }
+
+    /**
+     * Runs a batch command, writing its records to standard output.
+     *
+     * @param args program arguments, starting with the command name.
+     * @return the exit status.
+     */
+    public static int run(String[] args) {
+        // Standard output stream is used directly, since print streams hide write errors (closed pipe...)
+        Writer output = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), OUTPUT_BUFFER_SIZE);
+        return run(args, output);
+    }
+
+    /**
+     * Runs a batch command, the stream command reading standard input.
+     *
+     * @param args   program arguments, starting with the command name.
+     * @param output the writer receiving records, flushed but not closed.
+     * @return the exit status.
+     */
+    public static int run(String[] args, Writer output) {
+        return run(args, System.in, output);
+    }
+
+    /**
+     * Runs a batch command.
+     *
+     * @param args   program arguments, starting with the command name.
+     * @param input  the stream read by the stream command.
+     * @param output the writer receiving records, flushed but not closed.
+     * @return the exit status.
+     */
+    public static int run(String[] args, InputStream input, Writer output) {
+        if (args[0].equals(STREAM_COMMAND)) {
+            return runStream(args, input, output);
+        }
+        if (args[0].equals(SERVE_COMMAND)) {
+            return runServe(args);
+        }
+        return runStats(args, output);
+    }
+
+    /**
+     * Runs the stats command.
+     *
+     * @param args   program arguments, starting with the command name.
+     * @param output the writer receiving records, flushed but not closed.
+     * @return the exit status.
+     */
+    private static int runStats(String[] args, Writer output) {
+        Path referencePath = null;
+        int topCount = DEFAULT_TOP_COUNT;
+        BookRecordWriter.Format format = BookRecordWriter.Format.JSONL;
+        boolean isIndexCacheEnabled = false;
+        boolean isMetricsEnabled = false;
+        boolean isTfIdfEnabled = false;
+        long maxLoadedBytes = Long.MAX_VALUE;
+        Supplier<WordCounter> wordCounterFactory = Utf8WordTable::new;
+        TextNormalizer textNormalizer = TextNormalizer.DEFAULT;
+        List<Path> bookPaths = new ArrayList<>();
+
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--reference":
+                        referencePath = Path.of(getOptionValue(args, ++i));
+                        break;
+                    case "--top":
+                        topCount = Integer.parseInt(getOptionValue(args, ++i));
+                        break;
+                    case "--format":
+                        format = BookRecordWriter.Format.valueOf(getOptionValue(args, ++i).toUpperCase(Locale.ROOT));
+                        break;
+                    case "--list":
+                        bookPaths.addAll(readBookPaths(getOptionValue(args, ++i)));
+                        break;
+                    case "--index-cache":
+                        isIndexCacheEnabled = true;
+                        break;
+                    case "--metrics":
+                        isMetricsEnabled = true;
+                        break;
+                    case "--max-loaded-bytes":
+                        maxLoadedBytes = Long.parseLong(getOptionValue(args, ++i));
+                        break;
+                    case "--off-heap":
+                        wordCounterFactory = OffHeapWordTable::new;
+                        break;
+                    case "--tfidf":
+                        isTfIdfEnabled = true;
+                        break;
+                    case "--normalize":
+                        textNormalizer = TextNormalizer.parse(getOptionValue(args, ++i));
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("option inconnue " + args[i]);
+                        }
+                        bookPaths.add(Path.of(args[i]));
+                        break;
+                }
+            }
+        } catch (IllegalArgumentException | IOException ex) {
+            System.err.println("Arguments invalides : " + ex.getMessage());
+            printUsage();
+            return EXIT_USAGE;
+        }
+
+        if (referencePath != null && !bookPaths.contains(referencePath)) {
+            bookPaths.add(0, referencePath);
+        }
+        if (bookPaths.isEmpty() || topCount < 0) {
+            printUsage();
+            return EXIT_USAGE;
+        }
+
+        for (Path bookPath : bookPaths) {
+            if (!Files.isRegularFile(bookPath)) {
+                System.err.println("Le fichier n'existe pas : " + bookPath);
+                return EXIT_FAILURE;
+            }
+        }
+
+        if (isMetricsEnabled) {
+            BookMetrics.setEnabled(true);
+        }
+
+        ExecutorService loaderPool = BookLoaderPools.newBoundedPool(Runtime.getRuntime().availableProcessors());
+        BookFileList bookFileList = new BookFileList(loaderPool);
+        bookFileList.setConsoleMessagesEnabled(false);
+        bookFileList.setMaxLoadedBytes(maxLoadedBytes);
+        for (Path bookPath : bookPaths) {
+            BookFile bookFile = new BookFile(bookPath, wordCounterFactory);
+            bookFile.setIndexCacheEnabled(isIndexCacheEnabled);
+            bookFile.setTextNormalizer(textNormalizer);
+            bookFileList.addBookFileToList(bookFile);
+        }
+        // Reference book file is the first one by default, book paths given twice being only listed once
+        int referenceIndex = referencePath != null ? bookFileList.getBookFiles().indexOf(new BookFile(referencePath)) : 0;
+        bookFileList.chooseReferenceFile(referenceIndex + 1);
+
+        try {
+            BookRecordWriter recordWriter = new BookRecordWriter(output, format);
+            int exitStatus = writeStatistics(bookFileList, topCount, isTfIdfEnabled, recordWriter);
+            if (isMetricsEnabled) {
+                BookMetrics.getSnapshot().writeRecords(recordWriter);
+                recordWriter.flush();
+            }
+            return exitStatus;
+        } catch (IOException ex) {
+            System.err.println("Une erreur est survenue lors de l'écriture des résultats : " + ex.getMessage());
+            return EXIT_FAILURE;
+        } finally {
+            // Loader threads would otherwise outlive the command when it is run in process
+            loaderPool.shutdown();
+        }
+    }
+
+    /**
+     * Runs the stream command.
+     *
+     * @param args   program arguments, starting with the command name.
+     * @param input  the analyzed stream.
+     * @param output the writer receiving records, flushed but not closed.
+     * @return the exit status.
+     */
+    private static int runStream(String[] args, InputStream input, Writer output) {
+        int topCount = DEFAULT_TOP_COUNT;
+        int capacity = StreamingBookAnalyzer.DEFAULT_CAPACITY;
+        long snapshotWordInterval = DEFAULT_SNAPSHOT_WORD_INTERVAL;
+        BookRecordWriter.Format format = BookRecordWriter.Format.JSONL;
+        TextNormalizer textNormalizer = TextNormalizer.DEFAULT;
+        List<Path> bookPaths = new ArrayList<>();
+
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--top":
+                        topCount = Integer.parseInt(getOptionValue(args, ++i));
+                        break;
+                    case "--capacity":
+                        capacity = Integer.parseInt(getOptionValue(args, ++i));
+                        break;
+                    case "--interval":
+                        snapshotWordInterval = Long.parseLong(getOptionValue(args, ++i));
+                        break;
+                    case "--format":
+                        format = BookRecordWriter.Format.valueOf(getOptionValue(args, ++i).toUpperCase(Locale.ROOT));
+                        break;
+                    case "--normalize":
+                        textNormalizer = TextNormalizer.parse(getOptionValue(args, ++i));
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("option inconnue " + args[i]);
+                        }
+                        bookPaths.add(Path.of(args[i]));
+                        break;
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println("Arguments invalides : " + ex.getMessage());
+            printUsage();
+            return EXIT_USAGE;
+        }
+
+        if (topCount < 0 || capacity <= 0 || snapshotWordInterval <= 0) {
+            printUsage();
+            return EXIT_USAGE;
+        }
+        for (Path bookPath : bookPaths) {
+            if (!Files.isRegularFile(bookPath)) {
+                System.err.println("Le fichier n'existe pas : " + bookPath);
+                return EXIT_FAILURE;
+            }
+        }
+
+        StreamingBookAnalyzer streamingBookAnalyzer = new StreamingBookAnalyzer(STREAM_NAME, capacity);
+        streamingBookAnalyzer.setTextNormalizer(textNormalizer);
+        streamingBookAnalyzer.setTopCount(topCount);
+        streamingBookAnalyzer.setSnapshotInterval(snapshotWordInterval, DEFAULT_SNAPSHOT_MILLIS_INTERVAL);
+
+        // Stream is the reference book, compared with the given books at each snapshot
+        BookFileList bookFileList = new BookFileList();
+        bookFileList.setConsoleMessagesEnabled(false);
+        bookFileList.addBookFileToList(streamingBookAnalyzer.getBookFile());
+        for (Path bookPath : bookPaths) {
+            BookFile bookFile = new BookFile(bookPath);
+            bookFile.setTextNormalizer(textNormalizer);
+            bookFileList.addBookFileToList(bookFile);
+        }
+        bookFileList.chooseReferenceFile(1);
+
+        BookRecordWriter recordWriter = new BookRecordWriter(output, format);
+        streamingBookAnalyzer.addSnapshotListener(snapshot -> {
+            try {
+                writeStreamingSnapshot(snapshot, bookFileList, recordWriter);
+            } catch (IOException ioEx) {
+                throw new UncheckedIOException(ioEx);
+            }
+        });
+
+        try {
+            streamingBookAnalyzer.analyze(StreamingBookAnalyzer.openInput(input));
+            return EXIT_SUCCESS;
+        } catch (UncheckedIOException uncheckedIoEx) {
+            System.err.println("Une erreur est survenue lors de l'écriture des résultats : " + uncheckedIoEx.getCause().getMessage());
+            return EXIT_FAILURE;
+        } catch (IOException ioEx) {
+            System.err.println("Une erreur est survenue lors de la lecture de l'entrée standard : " + ioEx.getMessage());
+            return EXIT_FAILURE;
+        }
+    }
+
+    /**
+     * Runs the serve command, until the program is stopped.
+     *
+     * @param args program arguments, starting with the command name.
+     * @return the exit status.
+     */
+    private static int runServe(String[] args) {
+        String host = DEFAULT_HOST;
+        int port = DEFAULT_PORT;
+        boolean isIndexCacheEnabled = false;
+        boolean isWatchEnabled = false;
+        long maxLoadedBytes = Long.MAX_VALUE;
+        TextNormalizer textNormalizer = TextNormalizer.DEFAULT;
+        List<Path> bookPaths = new ArrayList<>();
+
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--host":
+                        host = getOptionValue(args, ++i);
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(getOptionValue(args, ++i));
+                        break;
+                    case "--list":
+                        bookPaths.addAll(readBookPaths(getOptionValue(args, ++i)));
+                        break;
+                    case "--index-cache":
+                        isIndexCacheEnabled = true;
+                        break;
+                    case "--max-loaded-bytes":
+                        maxLoadedBytes = Long.parseLong(getOptionValue(args, ++i));
+                        break;
+                    case "--watch":
+                        isWatchEnabled = true;
+                        break;
+                    case "--normalize":
+                        textNormalizer = TextNormalizer.parse(getOptionValue(args, ++i));
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("option inconnue " + args[i]);
+                        }
+                        bookPaths.add(Path.of(args[i]));
+                        break;
+                }
+            }
+        } catch (IllegalArgumentException | IOException ex) {
+            System.err.println("Arguments invalides : " + ex.getMessage());
+            printUsage();
+            return EXIT_USAGE;
+        }
+
+        if (bookPaths.isEmpty() || port < 0 || port > 65535) {
+            printUsage();
+            return EXIT_USAGE;
+        }
+        for (Path bookPath : bookPaths) {
+            if (!Files.isRegularFile(bookPath)) {
+                System.err.println("Le fichier n'existe pas : " + bookPath);
+                return EXIT_FAILURE;
+            }
+        }
+
+        ExecutorService loaderPool = BookLoaderPools.newBoundedPool(Runtime.getRuntime().availableProcessors());
+        BookFileList bookFileList = new BookFileList(loaderPool);
+        bookFileList.setConsoleMessagesEnabled(false);
+        bookFileList.setMaxLoadedBytes(maxLoadedBytes);
+        for (Path bookPath : bookPaths) {
+            BookFile bookFile = new BookFile(bookPath);
+            bookFile.setIndexCacheEnabled(isIndexCacheEnabled);
+            bookFile.setTextNormalizer(textNormalizer);
+            bookFileList.addBookFileToList(bookFile);
+        }
+
+        BookQueryServer bookQueryServer = null;
+        BookFileWatcher bookFileWatcher = null;
+        try {
+            bookQueryServer = new BookQueryServer(bookFileList, new InetSocketAddress(host, port));
+            if (isWatchEnabled) {
+                // Queries see refreshed books through their new snapshot version
+                bookFileWatcher = new BookFileWatcher(bookFile -> { });
+                for (BookFile bookFile : bookFileList.getBookFiles()) {
+                    bookFileWatcher.watch(bookFile);
+                }
+            }
+
+            // Server is stopped by the shutdown hook itself, since the program ends as soon as shutdown hooks end
+            CountDownLatch stopLatch = new CountDownLatch(1);
+            BookQueryServer startedServer = bookQueryServer;
+            BookFileWatcher startedWatcher = bookFileWatcher;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                stopServer(startedServer, startedWatcher, loaderPool);
+                stopLatch.countDown();
+            }));
+            bookQueryServer.start();
+            System.err.println("Serveur démarré sur http://" + host + ":" + bookQueryServer.getPort() + "/");
+            stopLatch.await();
+            return EXIT_SUCCESS;
+        } catch (IOException ioEx) {
+            System.err.println("Le serveur ne peut pas démarrer : " + ioEx.getMessage());
+            stopServer(bookQueryServer, bookFileWatcher, loaderPool);
+            return EXIT_FAILURE;
+        } catch (InterruptedException interruptedEx) {
+            Thread.currentThread().interrupt();
+            return EXIT_SUCCESS;
+        }
+    }
+
+    /**
+     * Stops the server of the serve command and the resources it uses.
+     *
+     * @param bookQueryServer the query server, or null if it was not created.
+     * @param bookFileWatcher the book file watcher, or null if books are not watched.
+     * @param loaderPool      the pool loading books.
+     */
+    private static void stopServer(BookQueryServer bookQueryServer, BookFileWatcher bookFileWatcher,
+                                   ExecutorService loaderPool) {
+        if (bookFileWatcher != null) {
+            try {
+                bookFileWatcher.close();
+            } catch (IOException ioEx) {
+                System.err.println("La surveillance des fichiers ne peut pas être arrêtée : " + ioEx.getMessage());
+            }
+        }
+        if (bookQueryServer != null) {
+            bookQueryServer.close();
+        }
+        loaderPool.shutdown();
+    }
+
+    /**
+     * Writes the records of a stream snapshot, and flushes them so that they are read as soon as they are computed.
+     *
+     * @param snapshot     the stream snapshot.
+     * @param bookFileList the book file list, the stream being the reference book.
+     * @param recordWriter the record writer.
+     * @throws IOException if records cannot be written.
+     */
+    private static void writeStreamingSnapshot(StreamingSnapshot snapshot, BookFileList bookFileList,
+                                               BookRecordWriter recordWriter) throws IOException {
+        recordWriter.writeRecord("snapshot", STREAM_NAME, 0, null, snapshot.getVersion());
+        recordWriter.writeRecord("tokens", STREAM_NAME, 0, null, snapshot.getWordCount());
+        recordWriter.writeRecord("distinct_words", STREAM_NAME, 0, null, snapshot.getDistinctWordCount());
+        int rank = 1;
+        for (HeavyHitter heavyHitter : snapshot.getMostUsedWords()) {
+            recordWriter.writeRecord("top", STREAM_NAME, rank++, heavyHitter.getContent(), heavyHitter.getCount());
+        }
+        if (bookFileList.getBookFileListSize() > 1) {
+            for (Map.Entry<BookFile, Double> commonWordsRate : bookFileList.getCommonWordsRates().entrySet()) {
+                recordWriter.writeRecord("common_rate", commonWordsRate.getKey().toString(), 0, null, commonWordsRate.getValue());
+            }
+        }
+        recordWriter.flush();
+    }
+
+    /**
+     * Writes the statistics records of the books, each book being written as soon as it is loaded.
+     *
+     * @param bookFileList the book file list, with a reference book file.
+     * @param topCount       the number of most used words written for each book.
+     * @param isTfIdfEnabled true to also write the TF-IDF records.
+     * @param recordWriter   the record writer.
+     * @return the exit status.
+     * @throws IOException if records cannot be written.
+     */
+    private static int writeStatistics(BookFileList bookFileList, int topCount, boolean isTfIdfEnabled,
+                                       BookRecordWriter recordWriter) throws IOException {
+        for (BookFile bookFile : bookFileList.getBookFiles()) {
+            BookSnapshot snapshot = bookFileList.getBookSnapshot(bookFile);
+            if (!snapshot.isRead()) {
+                recordWriter.flush();
+                return EXIT_FAILURE;
+            }
+
+            String book = bookFile.toString();
+            recordWriter.writeRecord("words", book, 0, null, snapshot.size());
+            int rank = 1;
+            for (Word word : snapshot.getMostUsedWords(topCount)) {
+                recordWriter.writeRecord("top", book, rank++, word.getContent(), word.getCount());
+            }
+        }
+
+        String referenceBook = bookFileList.getReferenceBookFile().toString();
+        for (Word word : bookFileList.getWordsOnlyPresentInReferenceFile()) {
+            recordWriter.writeRecord("only_in_reference", referenceBook, 0, word.getContent(), word.getCount());
+        }
+        for (Map.Entry<BookFile, Double> commonWordsRate : bookFileList.getCommonWordsRates().entrySet()) {
+            recordWriter.writeRecord("common_rate", commonWordsRate.getKey().toString(), 0, null, commonWordsRate.getValue());
+        }
+        if (isTfIdfEnabled) {
+            writeTfIdfStatistics(bookFileList, topCount, recordWriter);
+        }
+
+        recordWriter.flush();
+        return EXIT_SUCCESS;
+    }
+
+    /**
+     * Writes the TF-IDF records of the books: cosine similarities with the reference book and distinctive words.
+     *
+     * @param bookFileList the book file list, with a reference book file.
+     * @param topCount     the number of distinctive words written for each book.
+     * @param recordWriter the record writer.
+     * @throws IOException if records cannot be written.
+     */
+    private static void writeTfIdfStatistics(BookFileList bookFileList, int topCount, BookRecordWriter recordWriter)
+            throws IOException {
+        for (Map.Entry<BookFile, Double> cosineSimilarity : bookFileList.getCosineSimilarities().entrySet()) {
+            recordWriter.writeRecord("cosine", cosineSimilarity.getKey().toString(), 0, null, cosineSimilarity.getValue());
+        }
+        WordDictionary dictionary = WordDictionary.getSharedDictionary();
+        for (BookFile bookFile : bookFileList.getBookFiles()) {
+            TfIdfVector vector = bookFileList.getTfIdfVector(bookFile);
+            int rank = 1;
+            for (int wordIndex : vector.getHighestWeightIndexes(topCount)) {
+                recordWriter.writeRecord("distinctive", bookFile.toString(), rank++,
+                        dictionary.getContent(vector.getId(wordIndex)), vector.getWeight(wordIndex));
+            }
+        }
+    }
+
+    /**
+     * Gets the value of an option.
+     *
+     * @param args  program arguments.
+     * @param index the option value index.
+     * @return the option value.
+     */
+    private static String getOptionValue(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("valeur manquante pour l'option " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    /**
+     * Reads book file paths from a list file, one per line.
+     *
+     * @param listFile the list file, or "-" to read standard input.
+     * @return the book file paths.
+     * @throws IOException if the list file cannot be read.
+     */
+    private static List<Path> readBookPaths(String listFile) throws IOException {
+        List<String> lines = listFile.equals("-")
+                ? new String(System.in.readAllBytes(), StandardCharsets.UTF_8).lines().toList()
+                : Files.readAllLines(Path.of(listFile), StandardCharsets.UTF_8);
+
+        List<Path> bookPaths = new ArrayList<>();
+        for (String line : lines) {
+            if (!line.isBlank()) {
+                bookPaths.add(Path.of(line.strip()));
+            }
+        }
+        return bookPaths;
+    }
+
+    private static void printUsage() {
+        System.err.println("Utilisation : serve [--host adresse] [--port port] [--list fichier|-] [--index-cache] "
+                + "[--max-loaded-bytes taille] [--watch] [--normalize étape,...|none] livre...");
+        System.err.println("              stream [--top nombre] [--capacity nombre] [--interval mots] [--format jsonl|csv] "
+                + "[--normalize étape,...|none] livre...");
+        System.err.println("              stats [--reference livre] [--top nombre] [--format jsonl|csv] "
+                + "[--list fichier|-] [--index-cache] [--metrics] [--max-loaded-bytes taille] [--off-heap] "
+                + "[--normalize étape,...|none] [--tfidf] livre...");
+    }
+
+}
@@ -0,0 +1,245 @@
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Bounds the memory used by loaded books: when the estimated size of loaded books exceeds a maximum, books are
+ * unloaded. Unloaded books are loaded again transparently when they are queried.
+ * <p>
+ * Queries often walk all books in list order: when the books do not fit, a least recently used policy unloads each
+ * book just before it is queried again, so that every access misses. Books are rather kept regarding their access
+ * frequency (W-TinyLFU): a loaded book first stays in a small window of recently loaded books, then only replaces a
+ * book of the main space if it was accessed more often than this book. Access frequencies are kept for unloaded books
+ * too, and halved periodically so that old accesses fade.
+ * <p>
+ * Streamed books cannot be unloaded, they are never chosen to be unloaded and stay counted in the loaded size.
+ * This class is thread-safe.
+ */
+public class BookCache {
+
+    // Part of the maximum size given to the admission window
+    private static final int WINDOW_SIZE_RATIO = 100;
+    // Frequencies are halved after this many accesses per known book
+    private static final int AGING_PERIOD_FACTOR = 10;
+
+    // Both access ordered, so that iteration starts with the least recently used book
+    private final Map<BookFile, Long> windowBookSizes = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<BookFile, Long> mainBookSizes = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<BookFile, Integer> accessFrequencies = new HashMap<>();
+    private final Consumer<BookFile> evictionListener;
+    private long maxLoadedBytes;
+    private long loadedBytes = 0;
+    private long windowBytes = 0;
+    private long accessCountSinceAging = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    /**
+     * Constructor of a book cache.
+     *
+     * @param maxLoadedBytes   the maximum estimated size of loaded books, in bytes.
+     * @param evictionListener called with each book unloaded by the cache.
+     */
+    public BookCache(long maxLoadedBytes, Consumer<BookFile> evictionListener) {
+        this.maxLoadedBytes = maxLoadedBytes;
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * Records an access to a book, unloading books if the maximum size is exceeded.
+     * The accessed book is never unloaded, even if it is larger than the maximum size by itself.
+     *
+     * @param bookFile the accessed book file.
+     * @param snapshot the book snapshot, to estimate its size.
+     */
+    public synchronized void recordAccess(BookFile bookFile, BookSnapshot snapshot) {
+        recordFrequency(bookFile);
+
+        // Size is estimated again on each access, since snapshot indexes and n-gram counts are computed on demand
+        long size = estimateSize(bookFile, snapshot);
+        Long previousSize = mainBookSizes.get(bookFile);
+        if (previousSize != null) {
+            hitCount++;
+            loadedBytes += size - previousSize;
+            mainBookSizes.put(bookFile, size);
+        } else {
+            previousSize = windowBookSizes.get(bookFile);
+            if (previousSize != null) {
+                hitCount++;
+            } else {
+                missCount++;
+                previousSize = 0L;
+            }
+            loadedBytes += size - previousSize;
+            windowBytes += size - previousSize;
+            windowBookSizes.put(bookFile, size);
+        }
+        evict(bookFile);
+    }
+
+    /**
+     * Estimates again the size of a loaded book which grew since it was accessed, unloading books if the maximum size
+     * is exceeded. Nothing is done if the book is not loaded.
+     *
+     * @param bookFile the book file.
+     * @param snapshot the book snapshot, to estimate its size.
+     */
+    public synchronized void updateSize(BookFile bookFile, BookSnapshot snapshot) {
+        long size = estimateSize(bookFile, snapshot);
+        Long previousSize = mainBookSizes.replace(bookFile, size);
+        if (previousSize == null) {
+            previousSize = windowBookSizes.replace(bookFile, size);
+            if (previousSize == null) {
+                return;
+            }
+            windowBytes += size - previousSize;
+        }
+        loadedBytes += size - previousSize;
+        evict(bookFile);
+    }
+
+    /**
+     * Forgets a book, which is not unloaded.
+     *
+     * @param bookFile the book file.
+     */
+    public synchronized void remove(BookFile bookFile) {
+        accessFrequencies.remove(bookFile);
+        Long size = mainBookSizes.remove(bookFile);
+        if (size == null) {
+            size = windowBookSizes.remove(bookFile);
+            if (size != null) {
+                windowBytes -= size;
+            }
+        }
+        if (size != null) {
+            loadedBytes -= size;
+        }
+    }
+
+    /**
+     * Sets the maximum size of loaded books, unloading books if it is exceeded.
+     *
+     * @param maxLoadedBytes the maximum estimated size of loaded books, in bytes.
+     */
+    public synchronized void setMaxLoadedBytes(long maxLoadedBytes) {
+        this.maxLoadedBytes = maxLoadedBytes;
+        evict(null);
+    }
+
+    /**
+     * Gets the cache statistics.
+     *
+     * @return the statistics.
+     */
+    public synchronized BookCacheStatistics getStatistics() {
+        return new BookCacheStatistics(hitCount, missCount, evictionCount,
+                windowBookSizes.size() + mainBookSizes.size(), loadedBytes, maxLoadedBytes);
+    }
+
+    /**
+     * Moves the least recently used books out of the admission window while it is too large, then unloads least
+     * recently used books until loaded books fit in the maximum size.
+     *
+     * @param keptBookFile a book file which must not be unloaded, or null.
+     */
+    private void evict(BookFile keptBookFile) {
+        // Last accessed book stays in the window, whatever its size
+        Iterator<Map.Entry<BookFile, Long>> windowBooks = windowBookSizes.entrySet().iterator();
+        while (windowBytes > maxLoadedBytes / WINDOW_SIZE_RATIO && windowBookSizes.size() > 1
+                && windowBooks.hasNext()) {
+            Map.Entry<BookFile, Long> candidate = windowBooks.next();
+            if (!candidate.getKey().equals(keptBookFile)) {
+                windowBooks.remove();
+                windowBytes -= candidate.getValue();
+                admit(candidate.getKey(), candidate.getValue(), keptBookFile);
+            }
+        }
+
+        // Window and main space may still exceed the maximum size, when books grew or the maximum size decreased
+        unloadLeastRecentlyUsed(mainBookSizes, keptBookFile, false);
+        unloadLeastRecentlyUsed(windowBookSizes, keptBookFile, true);
+    }
+
+    /**
+     * Admits a book leaving the admission window in the main space, if it fits or if it was accessed more often than
+     * the main space books it replaces. It is unloaded otherwise.
+     *
+     * @param candidate    the book file leaving the admission window.
+     * @param size         the book estimated size.
+     * @param keptBookFile a book file which must not be unloaded, or null.
+     */
+    private void admit(BookFile candidate, long size, BookFile keptBookFile) {
+        int candidateFrequency = accessFrequencies.getOrDefault(candidate, 0);
+        Iterator<Map.Entry<BookFile, Long>> mainBooks = mainBookSizes.entrySet().iterator();
+        while (loadedBytes > maxLoadedBytes && !candidate.isStreamed()) {
+            Map.Entry<BookFile, Long> victim = null;
+            while (victim == null && mainBooks.hasNext()) {
+                Map.Entry<BookFile, Long> mainBook = mainBooks.next();
+                if (!mainBook.getKey().equals(keptBookFile) && !mainBook.getKey().isStreamed()) {
+                    victim = mainBook;
+                }
+            }
+            if (victim == null || candidateFrequency <= accessFrequencies.getOrDefault(victim.getKey(), 0)) {
+                loadedBytes -= size;
+                unload(candidate);
+                return;
+            }
+            mainBooks.remove();
+            loadedBytes -= victim.getValue();
+            unload(victim.getKey());
+        }
+        mainBookSizes.put(candidate, size);
+    }
+
+    /**
+     * Unloads the least recently used books of a space until loaded books fit in the maximum size.
+     *
+     * @param bookSizes    the space books, by access order.
+     * @param keptBookFile a book file which must not be unloaded, or null.
+     * @param isWindow     true if the space is the admission window.
+     */
+    private void unloadLeastRecentlyUsed(Map<BookFile, Long> bookSizes, BookFile keptBookFile, boolean isWindow) {
+        Iterator<Map.Entry<BookFile, Long>> books = bookSizes.entrySet().iterator();
+        while (loadedBytes > maxLoadedBytes && books.hasNext()) {
+            Map.Entry<BookFile, Long> book = books.next();
+            BookFile bookFile = book.getKey();
+            if (!bookFile.equals(keptBookFile) && !bookFile.isStreamed()) {
+                books.remove();
+                loadedBytes -= book.getValue();
+                if (isWindow) {
+                    windowBytes -= book.getValue();
+                }
+                unload(bookFile);
+            }
+        }
+    }
+
+    private static long estimateSize(BookFile bookFile, BookSnapshot snapshot) {
+        return snapshot.getEstimatedSize() + bookFile.getNGramCountsEstimatedSize();
+    }
+
+    private void unload(BookFile bookFile) {
+        evictionCount++;
+        bookFile.unload();
+        evictionListener.accept(bookFile);
+    }
+
+    /**
+     * Counts an access to a book, halving all frequencies once enough accesses were counted.
+     *
+     * @param bookFile the accessed book file.
+     */
+    private void recordFrequency(BookFile bookFile) {
+        accessFrequencies.merge(bookFile, 1, Integer::sum);
+        if (++accessCountSinceAging > (long) AGING_PERIOD_FACTOR * Math.max(accessFrequencies.size(), 16)) {
+            accessFrequencies.replaceAll((agedBookFile, frequency) -> frequency / 2);
+            accessFrequencies.values().removeIf(frequency -> frequency == 0);
+            accessCountSinceAging = 0;
+        }
+    }
+
+}
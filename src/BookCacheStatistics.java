@@ -0,0 +1,93 @@
+/**
+ * Statistics of a {@link BookCache}.
+ */
+public class BookCacheStatistics {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final int loadedBookCount;
+    private final long loadedBytes;
+    private final long maxLoadedBytes;
+
+    /**
+     * Constructor of book cache statistics.
+     *
+     * @param hitCount        the number of accesses to loaded books.
+     * @param missCount       the number of accesses to books which had to be loaded.
+     * @param evictionCount   the number of books unloaded to stay under the maximum size.
+     * @param loadedBookCount the number of loaded books.
+     * @param loadedBytes     the estimated size of loaded books, in bytes.
+     * @param maxLoadedBytes  the maximum size of loaded books, in bytes.
+     */
+    public BookCacheStatistics(long hitCount, long missCount, long evictionCount, int loadedBookCount, long loadedBytes,
+                               long maxLoadedBytes) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.loadedBookCount = loadedBookCount;
+        this.loadedBytes = loadedBytes;
+        this.maxLoadedBytes = maxLoadedBytes;
+    }
+
+    /**
+     * Gets the number of accesses to loaded books.
+     *
+     * @return the number of hits.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Gets the number of accesses to books which had to be loaded.
+     *
+     * @return the number of misses.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Gets the number of books unloaded to stay under the maximum size.
+     *
+     * @return the number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Gets the number of loaded books.
+     *
+     * @return the number of loaded books.
+     */
+    public int getLoadedBookCount() {
+        return loadedBookCount;
+    }
+
+    /**
+     * Gets the estimated size of loaded books.
+     *
+     * @return the size, in bytes.
+     */
+    public long getLoadedBytes() {
+        return loadedBytes;
+    }
+
+    /**
+     * Gets the maximum size of loaded books.
+     *
+     * @return the maximum size, in bytes.
+     */
+    public long getMaxLoadedBytes() {
+        return maxLoadedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%1$d succès, %2$d défauts, %3$d évictions, %4$d livres chargés (%5$d / %6$d octets)",
+                hitCount, missCount, evictionCount, loadedBookCount, loadedBytes, maxLoadedBytes);
+    }
+
+}
@@ -0,0 +1,50 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Compression format of a book file, detected from its first bytes whatever its file name is.
+ */
+public enum BookCompression {
+
+    /**
+     * Plain text.
+     */
+    NONE,
+
+    /**
+     * Gzip compressed text, made of one or several members.
+     */
+    GZIP,
+
+    /**
+     * Zstandard compressed text, read with the zstd-jni library when it is in the classpath.
+     */
+    ZSTD;
+
+    private static final int ZSTD_MAGIC_NUMBER = 0xFD2FB528;
+
+    /**
+     * Detects the compression format of a book file.
+     *
+     * @param channel the book file channel.
+     * @return the compression format.
+     * @throws IOException if the book file cannot be read.
+     */
+    public static BookCompression detect(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        int readBytes;
+        do {
+            readBytes = channel.read(header, header.position());
+        } while (readBytes > 0 && header.hasRemaining());
+
+        if (header.position() >= 2 && (header.get(0) & 0xFF) == 0x1F && (header.get(1) & 0xFF) == 0x8B) {
+            return GZIP;
+        }
+        if (header.position() == 4 && Integer.reverseBytes(header.getInt(0)) == ZSTD_MAGIC_NUMBER) {
+            return ZSTD;
+        }
+        return NONE;
+    }
+
+}
@@ -1,18 +1,39 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public class BookFile {
 
     private final Path filePath;
-    private final List<Word> wordList = new ArrayList<>();
+    private final LoadMode loadMode;
+    private final Supplier<WordCounter> wordCounterFactory;
 
-    private boolean isBookLoadedInMemory = false;
+    private volatile BookSnapshot snapshot;
+    private final Map<Integer, NGramCounts> nGramCountsCache = new ConcurrentHashMap<>();
+    private FileTime snapshotModifiedTime;
+    private boolean isIndexCacheEnabled = false;
+    private TextNormalizer textNormalizer = TextNormalizer.DEFAULT;
+    private boolean isStreamed = false;
+    private volatile boolean isBookLoadedInMemory = false;
+
+    // Last snapshot state when the book was unloaded, so that its version is kept if the book file did not change
+    private long unloadedVersion = 0;
+    private long unloadedReadPosition = -1;
+    private FileTime unloadedModifiedTime;
 
     /**
      * Constructor with book file path argument.
@@ -20,115 +41,495 @@ public class BookFile {
      * @param filePath the book file path.
      */
     public BookFile(Path filePath) {
+        this(filePath, LoadMode.MAPPED, Utf8WordTable::new);
+    }
+
+    /**
+     * Constructor with book file path and counting engine arguments.
+     *
+     * @param filePath           the book file path.
+     * @param wordCounterFactory the factory of the counting engine used when loading the book.
+     */
+    public BookFile(Path filePath, Supplier<WordCounter> wordCounterFactory) {
+        this(filePath, LoadMode.MAPPED, wordCounterFactory);
+    }
+
+    /**
+     * Constructor with book file path, load mode and counting engine arguments.
+     *
+     * @param filePath           the book file path.
+     * @param loadMode           the way book file is read.
+     * @param wordCounterFactory the factory of the counting engine used when loading the book.
+     */
+    public BookFile(Path filePath, LoadMode loadMode, Supplier<WordCounter> wordCounterFactory) {
         this.filePath = filePath;
+        this.loadMode = loadMode;
+        this.wordCounterFactory = wordCounterFactory;
     }
 
     /**
-     * Get book word count.
+     * Creates a book fed by a stream (see {@link StreamingBookAnalyzer}) instead of read from a file.
+     * Its snapshots are published by the stream analyzer, starting with an empty one, and it is never unloaded nor
+     * refreshed since the stream cannot be read again.
      *
-     * @return the number of words contained in book.
+     * @param name the stream name, used as book file path.
+     * @return the streamed book.
      */
-    public int getWordCount() {
+    static BookFile ofStream(String name) {
+        BookFile bookFile = new BookFile(Path.of(name));
+        bookFile.isStreamed = true;
+        bookFile.publishSnapshot(WordCounts.of(new int[0], new int[0], WordDictionary.getSharedDictionary()), 0);
+        return bookFile;
+    }
+
+    /**
+     * Checks whether the book is fed by a stream instead of read from a file.
+     *
+     * @return true if the book is streamed, false otherwise.
+     */
+    public boolean isStreamed() {
+        return isStreamed;
+    }
+
+    /**
+     * Enables (or disables) the persistent index cache of the book file.
+     * When enabled, the book vocabulary is read from its index file if it is still valid (see {@link BookIndexFile}),
+     * and written to it after the book file has been read otherwise. It should be set before the book is loaded.
+     *
+     * @param isIndexCacheEnabled true to enable the index cache.
+     */
+    public void setIndexCacheEnabled(boolean isIndexCacheEnabled) {
+        this.isIndexCacheEnabled = isIndexCacheEnabled;
+    }
+
+    /**
+     * Sets the normalizer turning the book file lines into words (the default one reads one lower-cased word per
+     * line). It should be set before the book is loaded.
+     *
+     * @param textNormalizer the text normalizer.
+     */
+    public void setTextNormalizer(TextNormalizer textNormalizer) {
+        this.textNormalizer = textNormalizer;
+    }
+
+    /**
+     * Gets the normalizer turning the book file lines into words.
+     *
+     * @return the text normalizer.
+     */
+    public TextNormalizer getTextNormalizer() {
+        return textNormalizer;
+    }
+
+    /**
+     * Loads the book in memory if not done yet.
+     * This method is thread-safe: if several threads call it at the same time, only one of them loads the book.
+     */
+    public void load() {
         if (!isBookLoadedInMemory)
             loadBookInMemory();
+    }
+
+    /**
+     * Unloads the book from memory, to free it until it is queried again: it is then loaded again transparently
+     * (from its index file if the index cache is enabled).
+     * Snapshots already given keep their content. If the book file did not change meanwhile, the snapshot loaded
+     * again has the same version as the unloaded one.
+     */
+    public synchronized void unload() {
+        if (!isBookLoadedInMemory || isStreamed) return;
+
+        unloadedVersion = snapshot.getVersion();
+        unloadedReadPosition = snapshot.getReadPosition();
+        unloadedModifiedTime = snapshotModifiedTime;
+        isBookLoadedInMemory = false;
+        snapshot = null;
+        nGramCountsCache.clear();
+    }
 
-        return wordList.size();
+    /**
+     * Checks whether the book is loaded in memory.
+     *
+     * @return true if the book is loaded, false otherwise.
+     */
+    public boolean isBookLoadedInMemory() {
+        return isBookLoadedInMemory;
+    }
+
+    /**
+     * Gets the book file path.
+     *
+     * @return the book file path.
+     */
+    public Path getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Gets the current snapshot of the loaded book.
+     * A snapshot never changes: when the book file is refreshed, a new snapshot replaces it.
+     *
+     * @return the book snapshot, an empty one if the book file cannot be read (see {@link BookSnapshot#isRead()}).
+     */
+    public BookSnapshot getSnapshot() {
+        // Book may be unloaded concurrently, the snapshot read first is then still valid
+        BookSnapshot currentSnapshot = snapshot;
+        if (currentSnapshot == null || !isBookLoadedInMemory)
+            currentSnapshot = loadBookInMemory();
+
+        return currentSnapshot;
+    }
+
+    /**
+     * Get book word count.
+     *
+     * @return the number of words contained in book.
+     */
+    public int getWordCount() {
+        return getSnapshot().getWordCounts().size();
     }
 
     /**
      * Gets the most used words of a book.
+     * Only the requested words are selected (bounded heap), the whole word list is not sorted for that.
      *
      * @param count the number of most used words.
-     * @return a sub list of the book word list.
+     * @return the most used words, by descending count.
      */
     public List<Word> getMostUsedWords(int count) {
-        if (!isBookLoadedInMemory)
-            loadBookInMemory();
+        BookMetrics.QueryTimer queryTimer = BookMetrics.startQuery("getMostUsedWords");
+        List<Word> mostUsedWords = getSnapshot().getMostUsedWords(count);
+        queryTimer.stop();
+        return mostUsedWords;
+    }
+
+    /**
+     * Gets the approximate most used words of a book, streaming the book file in bounded memory.
+     * The book vocabulary is never fully loaded: at most capacity words are monitored at the same time.
+     *
+     * @param count    the number of most used words.
+     * @param capacity the number of monitored words, the larger the more accurate.
+     * @return the approximate most used words, with their count error bounds.
+     */
+    public List<HeavyHitter> getApproximateMostUsedWords(int count, int capacity) {
+        SpaceSavingCounter spaceSavingCounter = new SpaceSavingCounter(capacity);
+
+        try {
+            readWords(spaceSavingCounter, Files.size(filePath));
+        } catch (IOException ioEx) {
+            System.err.println("Une erreur est survenue lors de la lecture du fichier : " + filePath);
+            return new ArrayList<>();
+        }
+
+        return spaceSavingCounter.getHeavyHitters(count);
+    }
+
+    /**
+     * Gets the n-gram counts of a book, read from the book file the first time they are needed, up to the position
+     * read by the current snapshot.
+     *
+     * @param n the number of words of n-grams (2 or 3).
+     * @return the n-gram counts.
+     */
+    public NGramCounts getNGramCounts(int n) {
+        NGramCounts nGramCounts = nGramCountsCache.get(n);
+        if (nGramCounts != null) {
+            return nGramCounts;
+        }
+
+        NGramCounter nGramCounter = new NGramCounter(n, WordDictionary.getSharedDictionary());
+        BookSnapshot currentSnapshot = getSnapshot();
+        if (!currentSnapshot.isRead()) {
+            return nGramCounter.getNGramCounts();
+        }
+        try {
+            readWords(nGramCounter, currentSnapshot.getReadPosition());
+        } catch (IOException ioEx) {
+            System.err.println("Une erreur est survenue lors de la lecture du fichier : " + filePath);
+            return nGramCounter.getNGramCounts();
+        }
+
+        nGramCounts = nGramCounter.getNGramCounts();
+        cacheNGramCounts(n, nGramCounts, currentSnapshot);
+        return nGramCounts;
+    }
+
+    /**
+     * Caches the n-gram counts of a snapshot, only if it is still the current one.
+     * Cache is cleared under the same lock when the snapshot is replaced, so that n-grams of an older content are
+     * never served for the new one.
+     *
+     * @param n            the number of words of n-grams.
+     * @param nGramCounts  the n-gram counts.
+     * @param readSnapshot the snapshot whose content the n-grams were read from.
+     */
+    private synchronized void cacheNGramCounts(int n, NGramCounts nGramCounts, BookSnapshot readSnapshot) {
+        if (snapshot == readSnapshot && isBookLoadedInMemory) {
+            nGramCountsCache.put(n, nGramCounts);
+        }
+    }
+
+    /**
+     * Estimates the heap size of the n-gram counts computed so far for the book.
+     *
+     * @return the estimated size, in bytes.
+     */
+    public long getNGramCountsEstimatedSize() {
+        long estimatedSize = 0;
+        for (NGramCounts nGramCounts : nGramCountsCache.values()) {
+            estimatedSize += nGramCounts.getEstimatedSize();
+        }
+        return estimatedSize;
+    }
+
+    /**
+     * Gets the most used n-grams of a book.
+     *
+     * @param n     the number of words of n-grams (2 or 3).
+     * @param count the number of most used n-grams.
+     * @return the most used n-grams, their words separated by spaces, by descending count.
+     */
+    public List<Word> getMostUsedNGrams(int n, int count) {
+        return getNGramCounts(n).getMostCounted(count);
+    }
 
-        return wordList.subList(0, count);
+    /**
+     * Gets the vocabulary of a book, without sorting it.
+     *
+     * @return the words contained in a book, in no particular order.
+     */
+    public Collection<Word> getVocabulary() {
+        WordCounts wordCounts = getSnapshot().getWordCounts();
+
+        List<Word> vocabulary = new ArrayList<>(wordCounts.size());
+        for (int i = 0; i < wordCounts.size(); i++) {
+            vocabulary.add(wordCounts.getWord(i));
+        }
+        return vocabulary;
+    }
+
+    /**
+     * Gets the compact word counts of a book, words being identified by their id in the shared dictionary.
+     *
+     * @return the book word counts.
+     */
+    public WordCounts getWordCounts() {
+        return getSnapshot().getWordCounts();
     }
 
     /**
      * Gets the words list of a book.
+     * This is a copy of the book words: {@link #getSnapshot()} gives read access to them without copying.
      *
      * @return the list of words contained in a book.
      */
     public List<Word> getWordList() {
-        if (!isBookLoadedInMemory)
+        return new ArrayList<>(getSnapshot().asWordList());
+    }
+
+    /**
+     * Reads the lines appended to the book file since it was loaded (or last refreshed), and updates the word counts
+     * and ordering with them, without reading the whole book file again.
+     * Book file is expected to only grow by appending lines: if it got smaller, or if it is compressed, it is entirely
+     * loaded again.
+     * A last line without line terminator is counted, and counted again once completed.
+     * Readers keep seeing the previous snapshot until the new one is ready.
+     *
+     * @return true if the book changed, false otherwise.
+     */
+    public synchronized boolean refresh() {
+        if (isStreamed) {
+            return false;
+        }
+        if (!isBookLoadedInMemory) {
             loadBookInMemory();
+            return isBookLoadedInMemory;
+        }
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            FileTime modifiedTime = Files.getLastModifiedTime(filePath);
+            long fileSize = channel.size();
+            boolean isCompressed = BookCompression.detect(channel) != BookCompression.NONE;
+            if (fileSize == snapshot.getReadPosition() && (!isCompressed || modifiedTime.equals(snapshotModifiedTime))) {
+                return false;
+            }
+            // Compressed books cannot be read from a position, they are entirely loaded again
+            if (fileSize < snapshot.getReadPosition() || isCompressed) {
+                isBookLoadedInMemory = false;
+                loadBookInMemory();
+                return true;
+            }
+
+            // Appended lines, with previous incomplete line counted again and removed from previous counts
+            MappedBookReader mappedBookReader = new MappedBookReader(textNormalizer);
+            WordCounts delta;
+            try (WordCounter appendedWordCounter = wordCounterFactory.get()) {
+                mappedBookReader.readWords(channel, snapshot.getLineEndPosition(), fileSize, appendedWordCounter);
+                if (snapshot.getReadPosition() > snapshot.getLineEndPosition()) {
+                    try (WordCounter incompleteLineCounter = wordCounterFactory.get()) {
+                        mappedBookReader.readWords(channel, snapshot.getLineEndPosition(), snapshot.getReadPosition(), incompleteLineCounter);
+                        for (Word word : incompleteLineCounter.getWords()) {
+                            appendedWordCounter.add(word.getContent(), -word.getCount());
+                        }
+                    }
+                }
+                delta = WordCounts.of(appendedWordCounter, WordDictionary.getSharedDictionary());
+            }
 
-        List<Word> wordListToReturn = new ArrayList<>(wordList.size());
-        wordListToReturn.addAll(wordList);
+            long lineEndPosition = MappedBookReader.findLastLineEnd(channel, snapshot.getLineEndPosition(), fileSize);
+            snapshot = snapshot.append(delta, lineEndPosition, fileSize);
+            snapshotModifiedTime = modifiedTime;
+            nGramCountsCache.clear();
+            return true;
+        } catch (IOException ioEx) {
+            System.err.println("Une erreur est survenue lors de la lecture du fichier : " + filePath);
+            return false;
+        }
+    }
 
-        return wordListToReturn;
+    /**
+     * Replaces the snapshot of a streamed book with the word counts read so far.
+     *
+     * @param newWordCounts the word counts read from the stream.
+     * @param readPosition  the number of bytes read from the stream.
+     */
+    synchronized void publishSnapshot(WordCounts newWordCounts, long readPosition) {
+        long version = snapshot != null ? snapshot.getVersion() + 1 : 1;
+        snapshot = new BookSnapshot(newWordCounts, readPosition, readPosition, version, null);
+        nGramCountsCache.clear();
+        isBookLoadedInMemory = true;
     }
 
     /**
-     * Load book file as a list of words.
+     * Load book file words in memory.
+     *
+     * @return the book snapshot, an empty one if the book file cannot be read.
      */
-    private void loadBookInMemory() {
-        try {
-            BufferedReader reader = new BufferedReader(new FileReader(filePath.toFile()));
+    private synchronized BookSnapshot loadBookInMemory() {
+        // Another thread may have loaded the book while this one was waiting for the lock
+        if (isBookLoadedInMemory) return snapshot;
 
-            wordList.add(null);
-            String line;
-            do {
-                line = reader.readLine();
+        BookMetrics.LoadTimer loadTimer = BookMetrics.startLoad();
+        WordCounter newWordCounter = null;
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            // Book file may grow while being read, only its current content is loaded
+            FileTime modifiedTime = Files.getLastModifiedTime(filePath);
+            long fileSize = channel.size();
+            BookCompression compression = BookCompression.detect(channel);
 
-                if (line != null) {
-                    line = line.toLowerCase();
-                    Word readWord = new Word(line, 1);
+            WordCounts newWordCounts = null;
+            if (isIndexCacheEnabled) {
+                newWordCounts = BookIndexFile.read(filePath, WordDictionary.getSharedDictionary(), textNormalizer);
+            }
+            boolean isReadFromIndexFile = newWordCounts != null;
 
-                    if (wordList.contains(readWord)) {
-                        wordList.get(wordList.indexOf(readWord)).incrementCount();
-                    } else {
-                        wordList.add(readWord);
-                    }
+            if (newWordCounts == null) {
+                if (compression != BookCompression.NONE) {
+                    newWordCounter = new CompressedBookReader().readWords(filePath, fileSize, compression, textNormalizer,
+                            wordCounterFactory);
+                } else if (loadMode == LoadMode.PARALLEL) {
+                    newWordCounter = new ParallelBookLoader().readWords(filePath, fileSize, textNormalizer, wordCounterFactory);
+                } else {
+                    newWordCounter = wordCounterFactory.get();
+                    readWords(newWordCounter, fileSize);
                 }
 
-            } while (line != null);
-
-            wordList.add(null);
-            wordList.sort(new Comparator<Word>() {
-                /**
-                 * Compares the word regarding descending count number (and if equal, word content comparison in ascending order).
-                 *
-                 * @param o1 word 1
-                 * @param o2 word 2
-                 * @return comparison result
-                 *          level 1 ==> 0 if both words are null; 1 if o1 is null but not o2; -1 if o2 is null but not o1
-                 *          level 2 ==> 1 if o1.count < o2.count; -1 if o1.count > o2.count
-                 *          level 3 ==> o1.content.compareTo(o2.content) (alphabetical ascending ordering)
-                 */
-                @Override
-                public int compare(Word o1, Word o2) {
-                    int comparison = 0;
-
-                    // If both words are null then they are equal
-                    if (o1 == null && o2 == null) return 0;
-                    // Else if word 1 is null (but not word 2), it should be greater compared to word 2
-                    else if (o1 == null) return 1;
-                    // Else if word 2 is null, it should go
-                    else if (o2 == null) return -1;
-
-                    // If counts are different, compare them
-                    // Otherwise compare word contents
-                    if (o1.getCount() < o2.getCount()) {
-                        comparison = 1;
-                    } else if (o1.getCount() > o2.getCount()) {
-                        comparison = -1;
-                    } else {
-                        comparison = o1.getContent().compareTo(o2.getContent());
-                    }
-
-                    return comparison;
+                // Counting engine is only needed while reading, words are then kept in compact form
+                newWordCounts = WordCounts.of(newWordCounter, WordDictionary.getSharedDictionary());
+                if (isIndexCacheEnabled) {
+                    writeIndexFile(newWordCounts, fileSize, modifiedTime);
                 }
+            }
 
-            });
+            long lineEndPosition = compression == BookCompression.NONE
+                    ? MappedBookReader.findLastLineEnd(channel, 0, fileSize) : fileSize;
+            long version;
+            if (snapshot != null) {
+                version = snapshot.getVersion() + 1;
+            } else if (fileSize == unloadedReadPosition && modifiedTime.equals(unloadedModifiedTime)) {
+                version = unloadedVersion;
+            } else {
+                version = unloadedVersion + 1;
+            }
+            snapshot = new BookSnapshot(newWordCounts, lineEndPosition, fileSize, version, null);
+            snapshotModifiedTime = modifiedTime;
+            nGramCountsCache.clear();
             isBookLoadedInMemory = true;
+            loadTimer.stop(filePath, loadMode, isReadFromIndexFile, fileSize, newWordCounts, newWordCounter);
         } catch (IOException ioEx) {
             System.err.println("Une erreur est survenue lors de la lecture du fichier : " + filePath);
             isBookLoadedInMemory = false;
+        } finally {
+            // Counting engine is closed even if reading failed, off-heap counters holding memory until then
+            if (newWordCounter != null) {
+                newWordCounter.close();
+            }
+        }
+        return isBookLoadedInMemory ? snapshot : BookSnapshot.ofUnreadBook();
+    }
+
+    /**
+     * Writes the book index file, a failure only meaning that the book file will be read again next time.
+     * Index file is not written if the book file changed while being read, its words being those of an older content.
+     *
+     * @param newWordCounts the book word counts.
+     * @param fileSize      the book file size when its words were read.
+     * @param modifiedTime  the book file modification time when its words were read.
+     */
+    private void writeIndexFile(WordCounts newWordCounts, long fileSize, FileTime modifiedTime) {
+        try {
+            if (Files.size(filePath) != fileSize || !Files.getLastModifiedTime(filePath).equals(modifiedTime)) {
+                return;
+            }
+            BookIndexFile.write(filePath, fileSize, modifiedTime, newWordCounts, textNormalizer);
+        } catch (IOException ioEx) {
+            System.err.println("Le fichier d'index n'a pas pu être écrit pour le fichier : " + filePath);
+        }
+    }
+
+    /**
+     * Reads book file words in a sink.
+     * Parallel load mode is not used here since the sink may not be a mergeable counter, book is then read as a
+     * mapped file.
+     * Compressed books are decompressed whatever the load mode is.
+     *
+     * @param sink     the sink receiving the words.
+     * @param fileSize the book file size to read, in mapped modes.
+     * @throws IOException if the book file cannot be read.
+     */
+    private void readWords(WordSink sink, long fileSize) throws IOException {
+        if (isStreamed) {
+            throw new IOException("Un livre lu en flux ne peut pas être relu : " + filePath);
+        }
+
+        BookCompression compression;
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            compression = BookCompression.detect(channel);
+        }
+        if (compression != BookCompression.NONE) {
+            new CompressedBookReader().readWords(filePath, fileSize, compression, textNormalizer, sink);
+            return;
+        }
+        if (loadMode != LoadMode.READER) {
+            try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+                new MappedBookReader(textNormalizer).readWords(channel, 0, fileSize, sink);
+            }
+            return;
+        }
+
+        TextNormalizer.Tokenizer tokenizer = textNormalizer.isDefault() ? null : textNormalizer.newTokenizer();
+        try (BufferedReader reader = new BufferedReader(new FileReader(filePath.toFile(), StandardCharsets.UTF_8))) {
+            String line;
+            do {
+                line = reader.readLine();
+
+                if (line != null && tokenizer != null) {
+                    tokenizer.addWords(line, sink);
+                } else if (line != null) {
+                    sink.add(line.toLowerCase(Locale.ROOT));
+                }
+
+            } while (line != null);
         }
     }
 
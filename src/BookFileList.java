@@ -1,12 +1,64 @@
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.IntStream;
 
 public class BookFileList {
 
     private final List<BookFile> bookFileList = new ArrayList<>();
+    private final Map<BookFile, CompletableFuture<BookFile>> bookFileLoadings = new ConcurrentHashMap<>();
+    private final VocabularyIndex vocabularyIndex = new VocabularyIndex();
+    private final Map<BookFile, Long> indexedVersions = new HashMap<>();
+    // Indexed snapshots of loaded books only, evicted books being forgotten
+    private final Map<BookFile, BookSnapshot> indexedSnapshots = new ConcurrentHashMap<>();
+    private final BookCache bookCache = new BookCache(Long.MAX_VALUE, this::forgetEvictedBook);
+    private final Executor loaderPool;
     private BookFile referenceBookFile;
+    // Results of the comparison of the reference book with the other books, null until they are queried
+    private ReferenceComparison referenceComparison;
+    // TF-IDF vectors of loaded book files, valid as long as the vocabulary index is not modified
+    private final Map<BookFile, TfIdfVector> tfIdfVectors = new ConcurrentHashMap<>();
+    private long tfIdfModificationCount = -1;
+    // Reference vector weights spread by word id, kept as long as the reference vector is the same
+    private TfIdfVector denseReferenceVector;
+    private double[] denseReferenceWeights;
+    private boolean isConsoleMessagesEnabled = true;
+
+    /**
+     * Constructor of a book file list loading books lazily, on the caller thread, when they are first queried.
+     */
+    public BookFileList() {
+        this.loaderPool = null;
+    }
+
+    /**
+     * Constructor of a book file list loading books eagerly on a pool, as soon as they are added to the list.
+     *
+     * @param loaderPool the pool loading books concurrently (see {@link BookLoaderPools}).
+     */
+    public BookFileList(Executor loaderPool) {
+        this.loaderPool = loaderPool;
+    }
+
+    /**
+     * Enables or disables the messages printed in console when book files are added or removed.
+     * Batch commands disable them, so that console output only contains their results.
+     *
+     * @param isConsoleMessagesEnabled true to print messages, false otherwise.
+     */
+    public void setConsoleMessagesEnabled(boolean isConsoleMessagesEnabled) {
+        this.isConsoleMessagesEnabled = isConsoleMessagesEnabled;
+    }
 
     /**
      * Adds a book file to the book file list.
@@ -16,10 +68,13 @@ public class BookFileList {
      */
     public void addBookFileToList(BookFile newBookFile) {
         if (bookFileList.contains(newBookFile)) {
-            System.out.println("Le fichier est déjà dans la liste, il sera ignoré.");
+            printMessage("Le fichier est déjà dans la liste, il sera ignoré.");
         } else {
             bookFileList.add(newBookFile);
-            System.out.println("Le fichier [" + newBookFile + "] a bien été ajouté.");
+            if (loaderPool != null) {
+                getBookFileLoading(newBookFile);
+            }
+            printMessage("Le fichier [" + newBookFile + "] a bien été ajouté.");
         }
     }
 
@@ -31,11 +86,89 @@ public class BookFileList {
      */
     public void removeBookFileFromList(BookFile bookFileToRemove) {
         if (bookFileList.contains(bookFileToRemove)) {
-            bookFileList.remove(bookFileToRemove);
-            System.out.println("Le fichier [" + bookFileToRemove + "] a bien été supprimé.");
+            // Book file to remove may be another instance of the same file, the listed one is the loaded one
+            BookFile listedBookFile = bookFileList.remove(bookFileList.indexOf(bookFileToRemove));
+            bookFileLoadings.remove(listedBookFile);
+            bookCache.remove(listedBookFile);
+            removeFromVocabularyIndex(listedBookFile);
+            if (listedBookFile.equals(referenceBookFile)) {
+                referenceBookFile = null;
+                referenceComparison = null;
+            } else if (referenceComparison != null) {
+                referenceComparison.removeComparedBookFile(listedBookFile);
+            }
+            printMessage("Le fichier [" + bookFileToRemove + "] a bien été supprimé.");
         } else {
-            System.out.println("Le fichier n'existe pas dans la liste, il sera ignoré.");
+            printMessage("Le fichier n'existe pas dans la liste, il sera ignoré.");
+        }
+    }
+
+    /**
+     * Starts loading all the book files of the list on the loader pool.
+     *
+     * @return a future completed when all book files are loaded.
+     */
+    public CompletableFuture<Void> preloadBookFiles() {
+        List<CompletableFuture<BookFile>> loadings = new ArrayList<>();
+        for (BookFile bookFile : bookFileList) {
+            loadings.add(getBookFileLoading(bookFile));
         }
+        return CompletableFuture.allOf(loadings.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Gets the loading of a book file, so that work can start as soon as this book is ready.
+     * Without loader pool, the book file is loaded on the caller thread.
+     *
+     * @param bookFile the book file.
+     * @return a future completed when the book file is loaded.
+     */
+    public CompletableFuture<BookFile> getBookFileLoading(BookFile bookFile) {
+        if (loaderPool == null) {
+            bookFile.load();
+            return CompletableFuture.completedFuture(bookFile);
+        }
+
+        return bookFileLoadings.computeIfAbsent(bookFile, bookFileToLoad -> CompletableFuture.supplyAsync(() -> {
+            BookSnapshot snapshot = bookFileToLoad.getSnapshot();
+            if (snapshot.isRead()) {
+                bookCache.recordAccess(bookFileToLoad, snapshot);
+            }
+            return bookFileToLoad;
+        }, loaderPool));
+    }
+
+    /**
+     * Gets the snapshot of a book file of the list, loading it again if it was evicted from the loaded books cache.
+     *
+     * @param bookFile the book file.
+     * @return the book snapshot, an empty one if the book file cannot be read (see {@link BookSnapshot#isRead()}).
+     */
+    public BookSnapshot getBookSnapshot(BookFile bookFile) {
+        BookSnapshot snapshot = getLoadedBookFile(bookFile).getSnapshot();
+        if (snapshot.isRead()) {
+            bookCache.recordAccess(bookFile, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Sets the maximum estimated size of loaded books: least frequently used books are unloaded to stay under it
+     * (see {@link BookCache}), and loaded again when they are queried. Loaded books size is not bounded by default.
+     *
+     * @param maxLoadedBytes the maximum size, in bytes.
+     */
+    public void setMaxLoadedBytes(long maxLoadedBytes) {
+        bookCache.setMaxLoadedBytes(maxLoadedBytes);
+    }
+
+    /**
+     * Gets the statistics of the loaded books cache.
+     *
+     * @return the cache statistics.
+     */
+    public BookCacheStatistics getBookCacheStatistics() {
+        return bookCache.getStatistics();
     }
 
     /**
@@ -58,13 +191,25 @@ public class BookFileList {
      * @param bookFileIndex the book file index in the book file list.
      */
     public void chooseReferenceFile(int bookFileIndex) {
+        BookFile newReferenceBookFile = null;
         if (bookFileIndex <= bookFileList.size() && bookFileIndex > 0) {
-            referenceBookFile = bookFileList.get(bookFileIndex - 1);
-        } else {
-            referenceBookFile = null;
+            newReferenceBookFile = bookFileList.get(bookFileIndex - 1);
+        }
+        if (newReferenceBookFile != referenceBookFile) {
+            referenceBookFile = newReferenceBookFile;
+            referenceComparison = null;
         }
     }
 
+    /**
+     * Gets the book files of the list.
+     *
+     * @return the book files, in the order they were added.
+     */
+    public List<BookFile> getBookFiles() {
+        return Collections.unmodifiableList(bookFileList);
+    }
+
     /**
      * Gets the book file list size.
      *
@@ -85,23 +230,84 @@ public class BookFileList {
 
     /**
      * Get words that appears in reference file and not in other files.
+     * The result is kept until the reference file or the book files change.
      *
-     * @return the list of reference file unique words
+     * @return the unmodifiable list of reference file unique words
      */
     public List<Word> getWordsOnlyPresentInReferenceFile() {
-        List<Word> referenceWordList = referenceBookFile.getWordList();
-        List<Word> uniqueWordList = referenceBookFile.getWordList();
+        BookMetrics.QueryTimer queryTimer = BookMetrics.startQuery("getWordsOnlyPresentInReferenceFile");
+        List<Word> uniqueWordList = getReferenceComparison().uniqueWords;
+        queryTimer.stop();
+        return uniqueWordList;
+    }
 
-        for (BookFile compareBook : bookFileList) {
-            if (compareBook != referenceBookFile) {
-                for (Word word : referenceWordList) {
-                    if (compareBook.getWordList().contains(word)) {
-                        uniqueWordList.remove(word);
-                    }
-                }
+    /**
+     * Get n-grams that appears in reference file and not in other files.
+     *
+     * @param n the number of words of n-grams (2 or 3).
+     * @return the list of reference file unique n-grams, their words separated by spaces, by descending count
+     */
+    public List<Word> getNGramsOnlyPresentInReferenceFile(int n) {
+        NGramCounts referenceNGramCounts = getNGramCounts(referenceBookFile, n);
+        boolean[] isInOtherFile = new boolean[referenceNGramCounts.size()];
+        for (BookFile bookFile : bookFileList) {
+            if (bookFile != referenceBookFile) {
+                referenceNGramCounts.markCommonNGrams(getNGramCounts(bookFile, n), isInOtherFile);
             }
         }
-        return uniqueWordList;
+
+        List<Integer> uniqueNGramIndexes = new ArrayList<>();
+        for (int i = 0; i < isInOtherFile.length; i++) {
+            if (!isInOtherFile[i]) {
+                uniqueNGramIndexes.add(i);
+            }
+        }
+        uniqueNGramIndexes.sort(referenceNGramCounts::compareByCount);
+
+        List<Word> uniqueNGramList = new ArrayList<>(uniqueNGramIndexes.size());
+        for (int index : uniqueNGramIndexes) {
+            uniqueNGramList.add(referenceNGramCounts.getWord(index));
+        }
+        return uniqueNGramList;
+    }
+
+    /**
+     * Get words that appears both in reference file and in another file.
+     *
+     * @param compareBook the book file to compare with the reference file.
+     * @return the list of reference file words also present in the other file
+     */
+    public List<Word> getCommonWordsWithReferenceFile(BookFile compareBook) {
+        updateVocabularyIndex();
+        int compareOrdinal = vocabularyIndex.getOrdinal(compareBook);
+
+        BookSnapshot referenceSnapshot = getIndexedSnapshot(referenceBookFile);
+        WordCounts referenceWordCounts = referenceSnapshot.getWordCounts();
+        List<Word> commonWordList = new ArrayList<>();
+        for (int wordIndex : referenceSnapshot.getSortedWordIndexes()) {
+            if (compareOrdinal >= 0 && vocabularyIndex.getBooks(referenceWordCounts.getId(wordIndex)).get(compareOrdinal)) {
+                commonWordList.add(referenceWordCounts.getWord(wordIndex));
+            }
+        }
+        return commonWordList;
+    }
+
+    /**
+     * Get words that appears in at least a number of files.
+     *
+     * @param bookFileCount the minimum number of files.
+     * @return the words contents, in alphabetical order
+     */
+    public List<String> getWordsPresentInAtLeast(int bookFileCount) {
+        updateVocabularyIndex();
+
+        WordDictionary dictionary = WordDictionary.getSharedDictionary();
+        List<String> words = new ArrayList<>();
+        for (int id : vocabularyIndex.getWordsInAtLeast(bookFileCount)) {
+            words.add(dictionary.getContent(id));
+        }
+        Collections.sort(words);
+        return words;
     }
 
     /**
@@ -110,22 +316,431 @@ public class BookFileList {
      * @return a map with the compared book file and the percentage of common words.
      */
     public Map<BookFile, String> getCommonWordsPercentage() {
+        BookMetrics.QueryTimer queryTimer = BookMetrics.startQuery("getCommonWordsPercentage");
+        Map<BookFile, Double> commonWordsRates = getCommonWordsRates();
+
         Map<BookFile, String> bookFileMap = new HashMap<>();
+        for (Map.Entry<BookFile, Double> commonWordsRate : commonWordsRates.entrySet()) {
+            bookFileMap.put(commonWordsRate.getKey(), String.format(" %1$.1f%2$s", commonWordsRate.getValue() * 100, "%"));
+        }
+        queryTimer.stop();
 
-        List<Word> referenceWordList = referenceBookFile.getWordList();
+        return bookFileMap;
+    }
+
+    /**
+     * Get common word rate regarding reference file: the part of reference file words also present in each other file.
+     * The rates are kept until the reference file or the book files change.
+     *
+     * @return an unmodifiable map with the compared book file and the rate of common words (between 0 and 1), in list
+     * order.
+     */
+    public Map<BookFile, Double> getCommonWordsRates() {
+        return Collections.unmodifiableMap(getReferenceComparison().commonWordsRates);
+    }
+
+    /**
+     * Gets the cosine similarity of the TF-IDF vectors of the reference file and each other file: unlike common word
+     * rates, it takes word frequencies into account, words used in few books weighing more.
+     * Document frequencies are updated as book files are added or removed, and books are scored in parallel.
+     *
+     * @return a map with the compared book file and the cosine similarity (between 0 and 1), in list order, empty if
+     * no reference file is chosen.
+     */
+    public Map<BookFile, Double> getCosineSimilarities() {
+        if (!bookFileList.contains(referenceBookFile)) {
+            return new LinkedHashMap<>();
+        }
+
+        BookMetrics.QueryTimer queryTimer = BookMetrics.startQuery("getCosineSimilarities");
+        updateVocabularyIndex();
+        TfIdfVector[] vectors = getTfIdfVectors(bookFileList);
+        int referenceIndex = bookFileList.indexOf(referenceBookFile);
+
+        // Reference weights are spread by word id, so that each book is scored by a single pass on its own words
+        if (denseReferenceVector != vectors[referenceIndex]) {
+            denseReferenceVector = vectors[referenceIndex];
+            denseReferenceWeights = new double[denseReferenceVector.getIdBound()];
+            denseReferenceVector.scatter(denseReferenceWeights);
+        }
+        double[] referenceWeights = denseReferenceWeights;
+        double[] cosines = IntStream.range(0, vectors.length).parallel()
+                .mapToDouble(i -> vectors[i].cosine(referenceWeights))
+                .toArray();
+
+        Map<BookFile, Double> cosineSimilarities = new LinkedHashMap<>();
+        for (int i = 0; i < vectors.length; i++) {
+            if (i != referenceIndex) {
+                cosineSimilarities.put(bookFileList.get(i), Math.min(cosines[i], 1));
+            }
+        }
+        queryTimer.stop();
+        return cosineSimilarities;
+    }
+
+    /**
+     * Gets the TF-IDF vector of a book file, its word weights depending on the other book files.
+     *
+     * @param bookFile the book file, in the list.
+     * @return the TF-IDF vector, its indexes matching the word counts of the book snapshot.
+     */
+    public TfIdfVector getTfIdfVector(BookFile bookFile) {
+        updateVocabularyIndex();
+        return getTfIdfVectors(List.of(bookFile))[0];
+    }
+
+    /**
+     * Gets the most distinctive words of a book file: the words with the highest TF-IDF weights, used often in this
+     * book and rarely in the other ones.
+     *
+     * @param bookFile the book file, in the list.
+     * @param count    the number of words.
+     * @return the distinctive words with their count, by descending weight.
+     */
+    public List<Word> getDistinctiveWords(BookFile bookFile, int count) {
+        TfIdfVector vector = getTfIdfVector(bookFile);
+        WordCounts wordCounts = getIndexedSnapshot(bookFile).getWordCounts();
+        List<Word> distinctiveWords = new ArrayList<>();
+        for (int wordIndex : vector.getHighestWeightIndexes(count)) {
+            distinctiveWords.add(wordCounts.getWord(wordIndex));
+        }
+        return distinctiveWords;
+    }
+
+    /**
+     * Gets the exact vocabulary similarity of all pairs of book files.
+     * Vocabularies are sorted by word id, so each pair is compared with a linear merge, pairs being compared in
+     * parallel.
+     *
+     * @return the similarity matrix, in list order.
+     */
+    public SimilarityMatrix getSimilarityMatrix() {
+        updateVocabularyIndex();
+        int bookCount = bookFileList.size();
+        WordCounts[] bookWordCounts = new WordCounts[bookCount];
+        int[] wordCounts = new int[bookCount];
+        for (int i = 0; i < bookCount; i++) {
+            bookWordCounts[i] = getIndexedSnapshot(bookFileList.get(i)).getWordCounts();
+            wordCounts[i] = bookWordCounts[i].size();
+        }
+
+        int[] commonWordCounts = new int[bookCount * bookCount];
+        IntStream.range(0, bookCount).parallel().forEach(i -> {
+            commonWordCounts[i * bookCount + i] = wordCounts[i];
+            for (int j = i + 1; j < bookCount; j++) {
+                int commonWordCount = bookWordCounts[i].countCommonWords(bookWordCounts[j]);
+                commonWordCounts[i * bookCount + j] = commonWordCount;
+                commonWordCounts[j * bookCount + i] = commonWordCount;
+            }
+        });
+
+        return new SimilarityMatrix(bookFileList, wordCounts, commonWordCounts);
+    }
+
+    /**
+     * Gets the pairs of book files with similar vocabularies, such as near duplicates, with estimated similarities.
+     * Books are only compared when their MinHash signatures share a band (LSH), so that all pairs of books are not
+     * compared: some similar pairs may be missed, more likely the closer their similarity is to the threshold.
+     *
+     * @param similarityThreshold the minimum estimated Jaccard similarity, between 0 and 1.
+     * @return the similar book pairs, by descending similarity.
+     */
+    public List<BookSimilarity> getSimilarBookFiles(double similarityThreshold) {
+        updateVocabularyIndex();
+        int bookCount = bookFileList.size();
+        BookSnapshot[] snapshots = new BookSnapshot[bookCount];
+        for (int i = 0; i < bookCount; i++) {
+            snapshots[i] = getIndexedSnapshot(bookFileList.get(i));
+        }
+        MinHashSignature[] signatures = IntStream.range(0, bookCount).parallel()
+                .mapToObj(i -> snapshots[i].getMinHashSignature())
+                .toArray(MinHashSignature[]::new);
+
+        // Candidate pairs are the books in the same bucket of any band, packed as (i, j) with i < j
+        int rowsPerBand = MinHashSignature.getRowsPerBand(similarityThreshold);
+        Set<Long> candidatePairs = new HashSet<>();
+        for (int band = 0; band < MinHashSignature.SIZE / rowsPerBand; band++) {
+            Map<Long, List<Integer>> bandBuckets = new HashMap<>();
+            for (int i = 0; i < bookCount; i++) {
+                List<Integer> bucket = bandBuckets.computeIfAbsent(signatures[i].getBandHash(band, rowsPerBand), hash -> new ArrayList<>());
+                for (int j : bucket) {
+                    candidatePairs.add((long) j << 32 | i);
+                }
+                bucket.add(i);
+            }
+        }
+
+        List<BookSimilarity> similarBookFiles = new ArrayList<>();
+        for (long candidatePair : candidatePairs) {
+            int i = (int) (candidatePair >>> 32);
+            int j = (int) candidatePair;
+            double jaccard = signatures[i].estimateJaccard(signatures[j]);
+            if (jaccard >= similarityThreshold) {
+                similarBookFiles.add(BookSimilarity.ofJaccard(bookFileList.get(i), bookFileList.get(j), jaccard,
+                        snapshots[i].size(), snapshots[j].size()));
+            }
+        }
+        similarBookFiles.sort(Comparator.comparingDouble(BookSimilarity::getJaccard).reversed());
+        return similarBookFiles;
+    }
+
+    /**
+     * Gets the comparison of the reference book with the other books, up to date with the indexed books.
+     * Books added since the comparison was computed are compared alone, the comparison with the other books being
+     * kept. The comparison is computed again from scratch if the reference book or another book changed.
+     *
+     * @return the reference comparison.
+     */
+    private ReferenceComparison getReferenceComparison() {
+        updateVocabularyIndex();
+        BookSnapshot referenceSnapshot = getIndexedSnapshot(referenceBookFile);
+        boolean isUpToDate = referenceComparison != null && referenceComparison.referenceBookFile == referenceBookFile
+                && referenceComparison.referenceVersion == referenceSnapshot.getVersion();
+        for (int i = 0; i < bookFileList.size() && isUpToDate; i++) {
+            Long comparedVersion = referenceComparison.comparedVersions.get(bookFileList.get(i));
+            isUpToDate = comparedVersion == null || comparedVersion.equals(indexedVersions.get(bookFileList.get(i)));
+        }
+        if (!isUpToDate) {
+            referenceComparison = new ReferenceComparison(referenceBookFile, referenceSnapshot.getVersion());
+        }
+
+        // Ordinals of the books not compared yet
+        BitSet addedOrdinals = new BitSet();
+        for (BookFile bookFile : bookFileList) {
+            if (bookFile != referenceBookFile && !referenceComparison.comparedVersions.containsKey(bookFile)) {
+                addedOrdinals.set(vocabularyIndex.getOrdinal(bookFile));
+            }
+        }
+        if (addedOrdinals.isEmpty() && referenceComparison.uniqueWords != null) {
+            return referenceComparison;
+        }
+
+        // Added books are merged with the reference book in parallel
+        WordCounts referenceWordCounts = referenceSnapshot.getWordCounts();
+        List<BookFile> addedBookFiles = new ArrayList<>();
+        List<WordCounts> addedWordCounts = new ArrayList<>();
         for (BookFile compareBook : bookFileList) {
-            double commonWords = 0.d;
-            if (compareBook != referenceBookFile) {
-                for (Word word : referenceWordList) {
-                    if (compareBook.getWordList().contains(word)) {
-                        commonWords += 1;
-                    }
+            if (compareBook != referenceBookFile && addedOrdinals.get(vocabularyIndex.getOrdinal(compareBook))) {
+                addedBookFiles.add(compareBook);
+                addedWordCounts.add(getIndexedSnapshot(compareBook).getWordCounts());
+            }
+        }
+        int[] commonWordCounts = SortedWordSets.countCommonWords(referenceWordCounts, addedWordCounts);
+        for (int i = 0; i < addedBookFiles.size(); i++) {
+            double commonWords = commonWordCounts[i];
+            referenceComparison.commonWordsRates.put(addedBookFiles.get(i), commonWords / referenceWordCounts.size());
+            referenceComparison.comparedVersions.put(addedBookFiles.get(i), indexedVersions.get(addedBookFiles.get(i)));
+        }
+
+        if (referenceComparison.uniqueWords == null) {
+            int referenceOrdinal = vocabularyIndex.getOrdinal(referenceBookFile);
+            List<Integer> uniqueWordIndexes = new ArrayList<>();
+            for (int wordIndex : referenceSnapshot.getSortedWordIndexes()) {
+                if (vocabularyIndex.isOnlyInBook(referenceWordCounts.getId(wordIndex), referenceOrdinal)) {
+                    uniqueWordIndexes.add(wordIndex);
                 }
-                double similarityRate = commonWords / referenceWordList.size();
-                bookFileMap.put(compareBook, String.format(" %1$.1f%2$s", similarityRate * 100, "%"));
             }
+            referenceComparison.setUniqueWords(uniqueWordIndexes, referenceWordCounts);
+        } else {
+            // Unique words stay unique unless an added book contains them
+            List<Integer> uniqueWordIndexes = new ArrayList<>();
+            for (int wordIndex : referenceComparison.uniqueWordIndexes) {
+                if (!vocabularyIndex.getBooks(referenceWordCounts.getId(wordIndex)).intersects(addedOrdinals)) {
+                    uniqueWordIndexes.add(wordIndex);
+                }
+            }
+            referenceComparison.setUniqueWords(uniqueWordIndexes, referenceWordCounts);
+        }
+        return referenceComparison;
+    }
+
+    /**
+     * Indexes the vocabulary of the book files which are not indexed yet, or which changed since they were indexed.
+     * Queries then only read indexed snapshots, so that they see consistent book contents even if books are
+     * refreshed meanwhile. Books evicted from the loaded books cache are not loaded again to be checked: they only
+     * change when they are refreshed, which loads them.
+     */
+    private void updateVocabularyIndex() {
+        for (BookFile bookFile : bookFileList) {
+            Long indexedVersion = indexedVersions.get(bookFile);
+            if (indexedVersion == null
+                    || bookFile.isBookLoadedInMemory() && bookFile.getSnapshot().getVersion() != indexedVersion) {
+                getIndexedSnapshot(bookFile);
+            }
+        }
+    }
+
+    /**
+     * Gets the snapshot of a book file matching the vocabulary index, indexing it again if it changed.
+     *
+     * @param bookFile the book file.
+     * @return the indexed snapshot.
+     */
+    private BookSnapshot getIndexedSnapshot(BookFile bookFile) {
+        BookSnapshot indexedSnapshot = indexedSnapshots.get(bookFile);
+        if (indexedSnapshot != null && bookFile.isBookLoadedInMemory()
+                && bookFile.getSnapshot().getVersion() == indexedSnapshot.getVersion()) {
+            bookCache.recordAccess(bookFile, indexedSnapshot);
+            return indexedSnapshot;
+        }
+
+        BookSnapshot snapshot = getBookSnapshot(bookFile);
+        Long indexedVersion = indexedVersions.get(bookFile);
+        if (indexedVersion == null || indexedVersion != snapshot.getVersion()) {
+            removeFromVocabularyIndex(bookFile);
+            vocabularyIndex.addBook(bookFile, snapshot.getWordCounts());
+            indexedVersions.put(bookFile, snapshot.getVersion());
+        }
+        indexedSnapshots.put(bookFile, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Gets the TF-IDF vectors of indexed book files, computing the missing ones in parallel.
+     * All vectors are computed again once the vocabulary index is modified, since document frequencies changed, and
+     * the vector of a book is forgotten when the book is evicted from the loaded books cache. Books are only loaded
+     * for missing vectors.
+     *
+     * @param bookFiles the book files.
+     * @return the TF-IDF vectors, in the same order.
+     */
+    private TfIdfVector[] getTfIdfVectors(List<BookFile> bookFiles) {
+        if (tfIdfModificationCount != vocabularyIndex.getModificationCount()) {
+            tfIdfVectors.clear();
+            tfIdfModificationCount = vocabularyIndex.getModificationCount();
+        }
+
+        TfIdfVector[] vectors = new TfIdfVector[bookFiles.size()];
+        WordCounts[] missingWordCounts = new WordCounts[vectors.length];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = tfIdfVectors.get(bookFiles.get(i));
+            BookSnapshot indexedSnapshot = indexedSnapshots.get(bookFiles.get(i));
+            if (vectors[i] != null && indexedSnapshot != null) {
+                bookCache.recordAccess(bookFiles.get(i), indexedSnapshot);
+            } else {
+                missingWordCounts[i] = getIndexedSnapshot(bookFiles.get(i)).getWordCounts();
+            }
+        }
+
+        IntStream.range(0, vectors.length).parallel().filter(i -> missingWordCounts[i] != null)
+                .forEach(i -> vectors[i] = TfIdfVector.of(missingWordCounts[i], vocabularyIndex));
+        for (int i = 0; i < vectors.length; i++) {
+            // Loading a book may have evicted a previous one, whose vector is not kept
+            if (missingWordCounts[i] != null && indexedSnapshots.containsKey(bookFiles.get(i))) {
+                tfIdfVectors.put(bookFiles.get(i), vectors[i]);
+            }
+        }
+        return vectors;
+    }
+
+    /**
+     * Gets the n-gram counts of a book file, loading it through the loaded books cache.
+     *
+     * @param bookFile the book file.
+     * @param n        the number of words of n-grams.
+     * @return the n-gram counts.
+     */
+    private NGramCounts getNGramCounts(BookFile bookFile, int n) {
+        BookSnapshot snapshot = getBookSnapshot(bookFile);
+        NGramCounts nGramCounts = bookFile.getNGramCounts(n);
+        // Cached n-gram counts make the book larger, which may unload other books
+        if (snapshot.isRead()) {
+            bookCache.updateSize(bookFile, snapshot);
+        }
+        return nGramCounts;
+    }
+
+    /**
+     * Forgets what is computed from a book evicted from the loaded books cache.
+     *
+     * @param bookFile the evicted book file.
+     */
+    private void forgetEvictedBook(BookFile bookFile) {
+        indexedSnapshots.remove(bookFile);
+        TfIdfVector vector = tfIdfVectors.remove(bookFile);
+        if (vector != null && vector == denseReferenceVector) {
+            denseReferenceVector = null;
+            denseReferenceWeights = null;
+        }
+    }
+
+    /**
+     * Removes a book file from the vocabulary index, if indexed.
+     *
+     * @param bookFile the book file.
+     */
+    private void removeFromVocabularyIndex(BookFile bookFile) {
+        indexedVersions.remove(bookFile);
+        BookSnapshot indexedSnapshot = indexedSnapshots.remove(bookFile);
+        if (indexedSnapshot != null) {
+            vocabularyIndex.removeBook(bookFile, indexedSnapshot.getWordCounts());
+        } else {
+            vocabularyIndex.removeBook(bookFile);
+        }
+    }
+
+    /**
+     * Prints a message in console, if console messages are enabled.
+     *
+     * @param message the message.
+     */
+    private void printMessage(String message) {
+        if (isConsoleMessagesEnabled) {
+            System.out.println(message);
+        }
+    }
+
+    /**
+     * Waits for a book file to be loaded.
+     *
+     * @param bookFile the book file.
+     * @return the loaded book file.
+     */
+    private BookFile getLoadedBookFile(BookFile bookFile) {
+        return getBookFileLoading(bookFile).join();
+    }
+
+    /**
+     * Results of the comparison of a reference book snapshot with the other books of the list, for the versions of
+     * the books they were computed from.
+     */
+    private static class ReferenceComparison {
+
+        private final BookFile referenceBookFile;
+        private final long referenceVersion;
+        private final Map<BookFile, Long> comparedVersions = new HashMap<>();
+        private final Map<BookFile, Double> commonWordsRates = new LinkedHashMap<>();
+        // Reference words only present in reference book, by descending count, null until computed
+        private int[] uniqueWordIndexes;
+        private List<Word> uniqueWords;
+
+        private ReferenceComparison(BookFile referenceBookFile, long referenceVersion) {
+            this.referenceBookFile = referenceBookFile;
+            this.referenceVersion = referenceVersion;
+        }
+
+        private void setUniqueWords(List<Integer> wordIndexes, WordCounts referenceWordCounts) {
+            uniqueWordIndexes = new int[wordIndexes.size()];
+            List<Word> words = new ArrayList<>(wordIndexes.size());
+            for (int i = 0; i < uniqueWordIndexes.length; i++) {
+                uniqueWordIndexes[i] = wordIndexes.get(i);
+                words.add(referenceWordCounts.getWord(uniqueWordIndexes[i]));
+            }
+            uniqueWords = Collections.unmodifiableList(words);
+        }
+
+        /**
+         * Forgets a removed book: its rate is removed, and unique words must be computed again since words shared
+         * only with this book are now unique.
+         *
+         * @param bookFile the removed book file.
+         */
+        private void removeComparedBookFile(BookFile bookFile) {
+            comparedVersions.remove(bookFile);
+            commonWordsRates.remove(bookFile);
+            uniqueWordIndexes = null;
+            uniqueWords = null;
         }
 
-        return bookFileMap;
     }
 }
@@ -0,0 +1,103 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Watches book files and refreshes them (see {@link BookFile#refresh()}) as soon as they are modified.
+ * Events are handled on a daemon thread, until the watcher is closed.
+ */
+public class BookFileWatcher implements AutoCloseable {
+
+    private final WatchService watchService;
+    private final Map<Path, BookFile> watchedBookFiles = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> watchedDirectories = new ConcurrentHashMap<>();
+    private final Consumer<BookFile> refreshListener;
+    private final Thread watchingThread;
+
+    /**
+     * Constructor with refresh listener argument.
+     *
+     * @param refreshListener called with each book file which changed after being refreshed.
+     * @throws IOException if the file system cannot be watched.
+     */
+    public BookFileWatcher(Consumer<BookFile> refreshListener) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.refreshListener = refreshListener;
+        this.watchingThread = new Thread(this::watch, "book-file-watcher");
+        this.watchingThread.setDaemon(true);
+        this.watchingThread.start();
+    }
+
+    /**
+     * Starts watching a book file.
+     *
+     * @param bookFile the book file to watch.
+     * @throws IOException if the book file directory cannot be watched.
+     */
+    public void watch(BookFile bookFile) throws IOException {
+        Path filePath = bookFile.getFilePath().toAbsolutePath().normalize();
+        Path directory = filePath.getParent();
+
+        watchedBookFiles.put(filePath, bookFile);
+        if (!watchedDirectories.containsKey(directory)) {
+            watchedDirectories.put(directory, directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+        }
+    }
+
+    /**
+     * Stops watching a book file.
+     *
+     * @param bookFile the book file not to watch anymore.
+     */
+    public void unwatch(BookFile bookFile) {
+        watchedBookFiles.remove(bookFile.getFilePath().toAbsolutePath().normalize());
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey watchKey = watchService.take();
+                Path directory = (Path) watchKey.watchable();
+
+                for (WatchEvent<?> event : watchKey.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // Some events were lost, every book file of the directory may have changed
+                        watchedBookFiles.forEach((filePath, bookFile) -> {
+                            if (filePath.getParent().equals(directory)) refresh(bookFile);
+                        });
+                        continue;
+                    }
+
+                    BookFile bookFile = watchedBookFiles.get(directory.resolve((Path) event.context()));
+                    if (bookFile != null) {
+                        refresh(bookFile);
+                    }
+                }
+                watchKey.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // Watcher is closed
+        }
+    }
+
+    private void refresh(BookFile bookFile) {
+        if (bookFile.refresh() && refreshListener != null) {
+            refreshListener.accept(bookFile);
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Persistent index of a book file vocabulary, stored next to the book file (same name, ".idx" extension).
+ * <p>
+ * Header holds the book file size, modification time and content hash, so that an index is only used while its book
+ * file has not changed, and the code of the normalizer which read it (see {@link TextNormalizer#getCode()}).
+ * Words follow in alphabetical order, each word only storing the UTF-8 bytes that differ from the previous word
+ * (front coding), with sizes and counts written as variable length integers.
+ */
+public final class BookIndexFile {
+
+    private static final int MAGIC_NUMBER = 0x42494458; // "BIDX"
+    private static final int FORMAT_VERSION = 2;
+    private static final String INDEX_FILE_EXTENSION = ".idx";
+
+    private BookIndexFile() {
+    }
+
+    /**
+     * Gets the index file path of a book file.
+     *
+     * @param bookFilePath the book file path.
+     * @return the index file path.
+     */
+    public static Path getIndexFilePath(Path bookFilePath) {
+        return bookFilePath.resolveSibling(bookFilePath.getFileName() + INDEX_FILE_EXTENSION);
+    }
+
+    /**
+     * Writes the index file of a book file.
+     * The index is first written in a temporary file, then moved, so that a partially written index is never read.
+     * Header describes the book file as it was when its words were read: if the book file grew since then, the index
+     * is not valid for its current content and is not used.
+     *
+     * @param bookFilePath     the book file path.
+     * @param bookFileSize     the book file size when its words were read.
+     * @param bookModifiedTime the book file modification time when its words were read.
+     * @param wordCounts       the book word counts.
+     * @param textNormalizer   the normalizer which read the book words.
+     * @throws IOException if the index file cannot be written.
+     */
+    public static void write(Path bookFilePath, long bookFileSize, FileTime bookModifiedTime, WordCounts wordCounts,
+                             TextNormalizer textNormalizer) throws IOException {
+        Path indexFilePath = getIndexFilePath(bookFilePath);
+        Path temporaryFilePath = indexFilePath.resolveSibling(indexFilePath.getFileName() + ".tmp");
+
+        // Sort words in alphabetical order, so that consecutive words share prefixes
+        byte[][] contents = new byte[wordCounts.size()][];
+        Integer[] sortedIndexes = new Integer[wordCounts.size()];
+        for (int i = 0; i < wordCounts.size(); i++) {
+            contents[i] = wordCounts.getDictionary().getContent(wordCounts.getId(i)).getBytes(StandardCharsets.UTF_8);
+            sortedIndexes[i] = i;
+        }
+        Arrays.sort(sortedIndexes, (index1, index2) -> Arrays.compareUnsigned(contents[index1], contents[index2]));
+
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporaryFilePath)))) {
+            output.writeInt(MAGIC_NUMBER);
+            output.writeInt(FORMAT_VERSION);
+            output.writeLong(bookFileSize);
+            output.writeLong(bookModifiedTime.toMillis());
+            output.writeLong(computeContentHash(bookFilePath, bookFileSize));
+            output.writeInt(textNormalizer.getCode());
+
+            writeVarInt(output, wordCounts.size());
+            byte[] previousContent = new byte[0];
+            for (int index : sortedIndexes) {
+                byte[] content = contents[index];
+                int prefixLength = Arrays.mismatch(previousContent, content);
+                if (prefixLength < 0) prefixLength = content.length;
+
+                writeVarInt(output, prefixLength);
+                writeVarInt(output, content.length - prefixLength);
+                output.write(content, prefixLength, content.length - prefixLength);
+                writeVarInt(output, wordCounts.getCount(index));
+                previousContent = content;
+            }
+        }
+
+        Files.move(temporaryFilePath, indexFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the index file of a book file, if it exists and is still valid.
+     *
+     * @param bookFilePath   the book file path.
+     * @param dictionary     the dictionary giving the word ids.
+     * @param textNormalizer the normalizer which should have read the book words.
+     * @return the book word counts, null if there is no valid index file.
+     * @throws IOException if the index file or the book file cannot be read.
+     */
+    public static WordCounts read(Path bookFilePath, WordDictionary dictionary, TextNormalizer textNormalizer)
+            throws IOException {
+        Path indexFilePath = getIndexFilePath(bookFilePath);
+        if (!Files.isRegularFile(indexFilePath)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(indexFilePath, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            // Cheap checks first, content hash last since it reads the whole book file
+            long bookFileSize = Files.size(bookFilePath);
+            if (buffer.remaining() < 36 || buffer.getInt() != MAGIC_NUMBER || buffer.getInt() != FORMAT_VERSION
+                    || buffer.getLong() != bookFileSize
+                    || buffer.getLong() != Files.getLastModifiedTime(bookFilePath).toMillis()
+                    || buffer.getLong() != computeContentHash(bookFilePath, bookFileSize)
+                    || buffer.getInt() != textNormalizer.getCode()) {
+                return null;
+            }
+
+            return readWordCounts(buffer, dictionary);
+        }
+    }
+
+    /**
+     * Reads the words of an index file, after its header.
+     *
+     * @param buffer     the index file content, positioned after the header.
+     * @param dictionary the dictionary giving the word ids.
+     * @return the book word counts, null if the index file is truncated or corrupt (the book file is then read again).
+     */
+    private static WordCounts readWordCounts(ByteBuffer buffer, WordDictionary dictionary) {
+        try {
+            int wordCount = readVarInt(buffer);
+            // Each word takes at least 3 bytes, so that a corrupt word count does not allocate huge arrays
+            if (wordCount < 0 || wordCount > buffer.remaining() / 3) {
+                return null;
+            }
+
+            int[] ids = new int[wordCount];
+            int[] counts = new int[wordCount];
+            byte[] content = new byte[64];
+            int previousLength = 0;
+            for (int i = 0; i < wordCount; i++) {
+                int prefixLength = readVarInt(buffer);
+                int suffixLength = readVarInt(buffer);
+                if (prefixLength > previousLength || suffixLength < 0 || suffixLength > buffer.remaining()) {
+                    return null;
+                }
+                if (prefixLength + suffixLength > content.length) {
+                    content = Arrays.copyOf(content, Math.max(prefixLength + suffixLength, content.length * 2));
+                }
+                buffer.get(content, prefixLength, suffixLength);
+                previousLength = prefixLength + suffixLength;
+
+                ids[i] = dictionary.getId(new String(content, 0, previousLength, StandardCharsets.UTF_8));
+                counts[i] = readVarInt(buffer);
+            }
+
+            return WordCounts.of(ids, counts, dictionary);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Computes the hash of a book file content (CRC-32C), up to a given size.
+     *
+     * @param bookFilePath the book file path.
+     * @param bookFileSize the size of the hashed content, bytes appended after it being ignored.
+     * @return the content hash.
+     * @throws IOException if the book file cannot be read.
+     */
+    public static long computeContentHash(Path bookFilePath, long bookFileSize) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(bookFilePath, StandardOpenOption.READ)) {
+            long position = 0;
+            long size = Math.min(bookFileSize, channel.size());
+            while (position < size) {
+                long chunkSize = Math.min(size - position, Integer.MAX_VALUE);
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, chunkSize);
+                crc.update(buffer);
+                position += chunkSize;
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static void writeVarInt(OutputStream output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+}
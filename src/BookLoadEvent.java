@@ -0,0 +1,41 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a book load, so that loads can be correlated with garbage collections.
+ */
+@Name("books.BookLoad")
+@Label("Book Load")
+@Category("Books")
+@Description("Book loaded in memory")
+public class BookLoadEvent extends jdk.jfr.Event {
+
+    @Label("Book File")
+    String filePath;
+
+    @Label("Load Mode")
+    String loadMode;
+
+    @Label("Read From Index File")
+    boolean isReadFromIndexFile;
+
+    @Label("Bytes")
+    @DataAmount
+    long byteCount;
+
+    @Label("Tokens")
+    long tokenCount;
+
+    @Label("Distinct Words")
+    int distinctWordCount;
+
+    @Label("Probes")
+    long probeCount;
+
+    @Label("Resizes")
+    int resizeCount;
+
+}
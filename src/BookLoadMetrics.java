@@ -0,0 +1,132 @@
+import java.nio.file.Path;
+
+/**
+ * Measures of a book load.
+ */
+public class BookLoadMetrics {
+
+    private final Path filePath;
+    private final LoadMode loadMode;
+    private final boolean isReadFromIndexFile;
+    private final long durationNanos;
+    private final long byteCount;
+    private final long tokenCount;
+    private final int distinctWordCount;
+    private final long probeCount;
+    private final int resizeCount;
+
+    /**
+     * Constructor of book load measures.
+     *
+     * @param filePath            the book file path.
+     * @param loadMode            the way book file was read.
+     * @param isReadFromIndexFile true if words were read from the book index file instead of the book file.
+     * @param durationNanos       the load duration, in nanoseconds.
+     * @param byteCount           the number of book file bytes loaded.
+     * @param tokenCount          the number of words read, counting each occurrence.
+     * @param distinctWordCount   the number of distinct words.
+     * @param probeCount          the number of hash table slots probed while counting words, 0 if not known.
+     * @param resizeCount         the number of hash table resizes while counting words, 0 if not known.
+     */
+    public BookLoadMetrics(Path filePath, LoadMode loadMode, boolean isReadFromIndexFile, long durationNanos,
+                           long byteCount, long tokenCount, int distinctWordCount, long probeCount, int resizeCount) {
+        this.filePath = filePath;
+        this.loadMode = loadMode;
+        this.isReadFromIndexFile = isReadFromIndexFile;
+        this.durationNanos = durationNanos;
+        this.byteCount = byteCount;
+        this.tokenCount = tokenCount;
+        this.distinctWordCount = distinctWordCount;
+        this.probeCount = probeCount;
+        this.resizeCount = resizeCount;
+    }
+
+    /**
+     * Gets the book file path.
+     *
+     * @return the book file path.
+     */
+    public Path getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Gets the way book file was read.
+     *
+     * @return the load mode.
+     */
+    public LoadMode getLoadMode() {
+        return loadMode;
+    }
+
+    /**
+     * Checks whether words were read from the book index file.
+     *
+     * @return true if words were read from the book index file, false if they were read from the book file.
+     */
+    public boolean isReadFromIndexFile() {
+        return isReadFromIndexFile;
+    }
+
+    /**
+     * Gets the load duration.
+     *
+     * @return the load duration, in nanoseconds.
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * Gets the number of book file bytes loaded.
+     *
+     * @return the number of bytes.
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Gets the number of words read, counting each occurrence.
+     *
+     * @return the number of tokens.
+     */
+    public long getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Gets the number of distinct words.
+     *
+     * @return the number of distinct words.
+     */
+    public int getDistinctWordCount() {
+        return distinctWordCount;
+    }
+
+    /**
+     * Gets the number of hash table slots probed while counting words.
+     *
+     * @return the number of probed slots, 0 if not known.
+     */
+    public long getProbeCount() {
+        return probeCount;
+    }
+
+    /**
+     * Gets the number of hash table resizes while counting words.
+     *
+     * @return the number of resizes, 0 if not known.
+     */
+    public int getResizeCount() {
+        return resizeCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%1$s : %2$d ms (%3$s%4$s), %5$d octets, %6$d mots lus, %7$d mots différents, %8$d sondages, %9$d agrandissements",
+                filePath, durationNanos / 1_000_000, loadMode, isReadFromIndexFile ? ", index" : "", byteCount,
+                tokenCount, distinctWordCount, probeCount, resizeCount);
+    }
+
+}
@@ -0,0 +1,41 @@
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class BookLoaderPools {
+
+    private BookLoaderPools() {
+    }
+
+    /**
+     * Creates a pool loading at most a given number of books at the same time.
+     * Pool threads are daemon threads, so that they do not prevent the program from exiting.
+     *
+     * @param threadCount the maximum number of books loaded at the same time.
+     * @return the loader pool.
+     */
+    public static ExecutorService newBoundedPool(int threadCount) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "book-loader-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates a pool loading each book on its own virtual thread.
+     * Virtual threads are only available from Java 21, a bounded pool with one thread per core is used otherwise.
+     *
+     * @return the loader pool.
+     */
+    public static ExecutorService newVirtualThreadPool() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException ex) {
+            return newBoundedPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+}
@@ -0,0 +1,183 @@
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures of book loads and query latencies, and matching flight recorder events.
+ * Measures are only taken when metrics are enabled (with {@link #setEnabled(boolean)} or the books.metrics system
+ * property), or when a flight recording enables book events: otherwise timers do nothing.
+ */
+public final class BookMetrics {
+
+    private static final Map<Path, BookLoadMetrics> bookLoads = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> queryLatencies = new ConcurrentHashMap<>();
+    private static volatile boolean isEnabled = Boolean.getBoolean("books.metrics");
+
+    private BookMetrics() {
+    }
+
+    /**
+     * Enables (or disables) metrics.
+     *
+     * @param isEnabled true to take measures, false otherwise.
+     */
+    public static void setEnabled(boolean isEnabled) {
+        BookMetrics.isEnabled = isEnabled;
+    }
+
+    /**
+     * Checks whether metrics are enabled.
+     *
+     * @return true if measures are taken, false otherwise.
+     */
+    public static boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * Removes all measures taken so far.
+     */
+    public static void reset() {
+        bookLoads.clear();
+        queryLatencies.clear();
+    }
+
+    /**
+     * Gets a copy of the measures taken so far.
+     *
+     * @return the metrics snapshot.
+     */
+    public static MetricsSnapshot getSnapshot() {
+        Map<String, LatencyHistogram> queryLatencyCopies = new ConcurrentHashMap<>();
+        for (Map.Entry<String, LatencyHistogram> queryLatency : queryLatencies.entrySet()) {
+            queryLatencyCopies.put(queryLatency.getKey(), queryLatency.getValue().copy());
+        }
+        return new MetricsSnapshot(bookLoads.values(), queryLatencyCopies);
+    }
+
+    /**
+     * Starts timing a book load.
+     *
+     * @return the load timer, to stop once the book is loaded.
+     */
+    public static LoadTimer startLoad() {
+        return new LoadTimer();
+    }
+
+    /**
+     * Starts timing a query.
+     *
+     * @param query the query name.
+     * @return the query timer, to stop once the query is done.
+     */
+    public static QueryTimer startQuery(String query) {
+        BookQueryEvent event = new BookQueryEvent();
+        if (!isEnabled && !event.isEnabled()) {
+            return QueryTimer.DISABLED;
+        }
+
+        return new QueryTimer(query, event);
+    }
+
+    /**
+     * Timer of a book load.
+     */
+    public static final class LoadTimer {
+
+        private final long startTime = System.nanoTime();
+        private final BookLoadEvent event = new BookLoadEvent();
+
+        private LoadTimer() {
+            event.begin();
+        }
+
+        /**
+         * Stops the timer, recording the load measures.
+         *
+         * @param filePath            the book file path.
+         * @param loadMode            the way book file was read.
+         * @param isReadFromIndexFile true if words were read from the book index file.
+         * @param byteCount           the number of book file bytes loaded.
+         * @param wordCounts          the book word counts.
+         * @param wordCounter         the counting engine used to read the book file, or null.
+         */
+        public void stop(Path filePath, LoadMode loadMode, boolean isReadFromIndexFile, long byteCount,
+                         WordCounts wordCounts, WordCounter wordCounter) {
+            long durationNanos = System.nanoTime() - startTime;
+            event.end();
+            if (!isEnabled && !event.shouldCommit()) {
+                return;
+            }
+
+            long tokenCount = 0;
+            for (int i = 0; i < wordCounts.size(); i++) {
+                tokenCount += wordCounts.getCount(i);
+            }
+            long probeCount = 0;
+            int resizeCount = 0;
+            if (wordCounter instanceof Utf8WordTable) {
+                probeCount = ((Utf8WordTable) wordCounter).getProbeCount();
+                resizeCount = ((Utf8WordTable) wordCounter).getResizeCount();
+            }
+
+            if (isEnabled) {
+                bookLoads.put(filePath, new BookLoadMetrics(filePath, loadMode, isReadFromIndexFile, durationNanos,
+                        byteCount, tokenCount, wordCounts.size(), probeCount, resizeCount));
+            }
+            if (event.shouldCommit()) {
+                event.filePath = filePath.toString();
+                event.loadMode = loadMode.name();
+                event.isReadFromIndexFile = isReadFromIndexFile;
+                event.byteCount = byteCount;
+                event.tokenCount = tokenCount;
+                event.distinctWordCount = wordCounts.size();
+                event.probeCount = probeCount;
+                event.resizeCount = resizeCount;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Timer of a query.
+     */
+    public static final class QueryTimer {
+
+        private static final QueryTimer DISABLED = new QueryTimer(null, null);
+
+        private final String query;
+        private final BookQueryEvent event;
+        private final long startTime;
+
+        private QueryTimer(String query, BookQueryEvent event) {
+            this.query = query;
+            this.event = event;
+            if (event != null) {
+                event.begin();
+                this.startTime = System.nanoTime();
+            } else {
+                this.startTime = 0;
+            }
+        }
+
+        /**
+         * Stops the timer, recording the query latency.
+         */
+        public void stop() {
+            if (event == null) {
+                return;
+            }
+
+            long durationNanos = System.nanoTime() - startTime;
+            event.end();
+            if (isEnabled) {
+                queryLatencies.computeIfAbsent(query, queryName -> new LatencyHistogram()).record(durationNanos);
+            }
+            if (event.shouldCommit()) {
+                event.query = query;
+                event.commit();
+            }
+        }
+    }
+
+}
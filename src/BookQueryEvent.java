@@ -0,0 +1,18 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a book query, so that slow queries can be correlated with garbage collections.
+ */
+@Name("books.BookQuery")
+@Label("Book Query")
+@Category("Books")
+@Description("Query on books")
+public class BookQueryEvent extends jdk.jfr.Event {
+
+    @Label("Query")
+    String query;
+
+}
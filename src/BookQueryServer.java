@@ -0,0 +1,393 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-only HTTP service answering book statistics queries over the books of a list, with the JDK HTTP server.
+ * Responses are the JSON records written by batch commands, one per line (see {@link BookRecordWriter}):
+ * <ul>
+ *     <li>{@code GET /books}: {@code book} records, value being the book number used by other queries</li>
+ *     <li>{@code GET /words?book=n}: {@code words} record, number of distinct words of a book</li>
+ *     <li>{@code GET /top?book=n&count=k}: {@code top} records, most used words of a book (at most 1000)</li>
+ *     <li>{@code GET /only-in-reference?reference=n}: {@code only_in_reference} records</li>
+ *     <li>{@code GET /common-rates?reference=n}: {@code common_rate} records</li>
+ * </ul>
+ * Book numbers start from 1, the first book being the reference book by default.
+ * <p>
+ * Responses are cached with the versions of the book snapshots they were computed from, so that they are computed
+ * again once a book changes (refreshed by a {@link BookFileWatcher} for instance). At most 1024 responses are cached,
+ * other ones being dropped in no particular order beyond it. Concurrent identical requests wait
+ * for the same computation, and concurrent first loads of a book are done once. Responses are computed from the book
+ * snapshots only, books being compared by sorted merges (see {@link SortedWordSets}), so that queries do not lock
+ * once books are loaded. The book list must not be modified while the server runs.
+ */
+public class BookQueryServer implements AutoCloseable {
+
+    private static final String CONTENT_TYPE = "application/x-ndjson; charset=utf-8";
+    private static final int BACKLOG = 1024;
+    private static final int DEFAULT_TOP_COUNT = 50;
+    private static final int MAX_TOP_COUNT = 1000;
+    private static final int MAX_CACHED_RESPONSES = 1024;
+
+    private final BookFileList bookFileList;
+    private final List<BookFile> bookFiles;
+    private final HttpServer httpServer;
+    private final ExecutorService requestPool;
+    private final Map<String, CachedResponse> cachedResponses = new ConcurrentHashMap<>();
+    private final AtomicLong computationCount = new AtomicLong();
+
+    /**
+     * Constructor of a query server, handling requests on virtual threads when available (see
+     * {@link BookLoaderPools#newVirtualThreadPool()}).
+     *
+     * @param bookFileList the queried book file list, preferably loading books on a pool.
+     * @param address      the server address, port 0 choosing a free port.
+     * @throws IOException if the server address cannot be bound.
+     */
+    public BookQueryServer(BookFileList bookFileList, InetSocketAddress address) throws IOException {
+        this(bookFileList, address, BookLoaderPools.newVirtualThreadPool());
+    }
+
+    /**
+     * Constructor with request pool argument.
+     *
+     * @param bookFileList the queried book file list, preferably loading books on a pool.
+     * @param address      the server address, port 0 choosing a free port.
+     * @param requestPool  the pool handling requests, shut down when the server is closed.
+     * @throws IOException if the server address cannot be bound.
+     */
+    public BookQueryServer(BookFileList bookFileList, InetSocketAddress address, ExecutorService requestPool)
+            throws IOException {
+        this.bookFileList = bookFileList;
+        this.bookFiles = List.copyOf(bookFileList.getBookFiles());
+        this.requestPool = requestPool;
+        this.httpServer = HttpServer.create(address, BACKLOG);
+        this.httpServer.createContext("/", this::handle);
+        this.httpServer.setExecutor(requestPool);
+    }
+
+    /**
+     * Starts handling requests, on the request pool.
+     */
+    public void start() {
+        httpServer.start();
+    }
+
+    /**
+     * Gets the port the server listens to.
+     *
+     * @return the server port.
+     */
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Gets the number of responses computed, cached responses excluded.
+     *
+     * @return the number of computations.
+     */
+    public long getComputationCount() {
+        return computationCount.get();
+    }
+
+    /**
+     * Stops the server, letting current requests end for at most a second.
+     */
+    @Override
+    public void close() {
+        httpServer.stop(1);
+        requestPool.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendError(exchange, 405, "Seules les requêtes GET sont acceptées");
+                return;
+            }
+
+            byte[] response;
+            try {
+                Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+                response = query(exchange.getRequestURI().getPath(), parameters);
+            } catch (IllegalArgumentException ex) {
+                sendError(exchange, 400, ex.getMessage());
+                return;
+            } catch (CompletionException | UncheckedIOException ex) {
+                sendError(exchange, 500, "Une erreur est survenue lors du calcul de la réponse");
+                return;
+            }
+
+            if (response == null) {
+                sendError(exchange, 404, "Requête inconnue : " + exchange.getRequestURI().getPath());
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(response);
+            }
+        }
+    }
+
+    /**
+     * Answers a query, from the cached response if books did not change since it was computed.
+     *
+     * @param path       the query path.
+     * @param parameters the query parameters.
+     * @return the response body, null for an unknown query.
+     */
+    private byte[] query(String path, Map<String, String> parameters) {
+        switch (path) {
+            case "/books": {
+                return getResponse(path, new long[0], recordWriter -> {
+                    for (int i = 0; i < bookFiles.size(); i++) {
+                        recordWriter.writeRecord("book", bookFiles.get(i).toString(), 0, null, i + 1);
+                    }
+                });
+            }
+            case "/words": {
+                BookFile bookFile = getBookFile(parameters, "book");
+                BookSnapshot snapshot = getSnapshot(bookFile);
+                return getResponse(path + "?book=" + bookFile, new long[]{snapshot.getVersion()},
+                        recordWriter -> recordWriter.writeRecord("words", bookFile.toString(), 0, null, snapshot.size()));
+            }
+            case "/top": {
+                BookFile bookFile = getBookFile(parameters, "book");
+                int requestedCount = getIntParameter(parameters, "count", DEFAULT_TOP_COUNT);
+                if (requestedCount > MAX_TOP_COUNT) {
+                    throw new IllegalArgumentException("valeur trop grande pour le paramètre count (maximum "
+                            + MAX_TOP_COUNT + ") : " + requestedCount);
+                }
+                BookSnapshot snapshot = getSnapshot(bookFile);
+                // Counts beyond the book size give the same response, so they share it
+                int count = Math.min(requestedCount, snapshot.size());
+                return getResponse(path + "?book=" + bookFile + "&count=" + count, new long[]{snapshot.getVersion()},
+                        recordWriter -> {
+                            int rank = 1;
+                            for (Word word : snapshot.getMostUsedWords(count)) {
+                                recordWriter.writeRecord("top", bookFile.toString(), rank++, word.getContent(), word.getCount());
+                            }
+                        });
+            }
+            case "/only-in-reference": {
+                BookFile referenceBookFile = getBookFile(parameters, "reference");
+                BookSnapshot[] snapshots = getSnapshots();
+                return getResponse(path + "?reference=" + referenceBookFile, getVersions(snapshots), recordWriter -> {
+                    BookSnapshot referenceSnapshot = snapshots[bookFiles.indexOf(referenceBookFile)];
+                    WordCounts referenceWordCounts = referenceSnapshot.getWordCounts();
+                    BitSet wordsInOtherBooks = SortedWordSets.getWordsInOtherBooks(referenceWordCounts,
+                            getOtherWordCounts(snapshots, referenceSnapshot));
+                    for (int wordIndex : referenceSnapshot.getSortedWordIndexes()) {
+                        if (!wordsInOtherBooks.get(wordIndex)) {
+                            Word word = referenceWordCounts.getWord(wordIndex);
+                            recordWriter.writeRecord("only_in_reference", referenceBookFile.toString(), 0,
+                                    word.getContent(), word.getCount());
+                        }
+                    }
+                });
+            }
+            case "/common-rates": {
+                BookFile referenceBookFile = getBookFile(parameters, "reference");
+                BookSnapshot[] snapshots = getSnapshots();
+                return getResponse(path + "?reference=" + referenceBookFile, getVersions(snapshots), recordWriter -> {
+                    BookSnapshot referenceSnapshot = snapshots[bookFiles.indexOf(referenceBookFile)];
+                    WordCounts referenceWordCounts = referenceSnapshot.getWordCounts();
+                    int[] commonWordCounts = SortedWordSets.countCommonWords(referenceWordCounts,
+                            getOtherWordCounts(snapshots, referenceSnapshot));
+                    int otherIndex = 0;
+                    for (int i = 0; i < snapshots.length; i++) {
+                        if (snapshots[i] != referenceSnapshot) {
+                            double commonWords = commonWordCounts[otherIndex++];
+                            recordWriter.writeRecord("common_rate", bookFiles.get(i).toString(), 0, null,
+                                    commonWords / referenceWordCounts.size());
+                        }
+                    }
+                });
+            }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Gets the response of a query, computed by the first thread asking for it while the other ones wait for it.
+     *
+     * @param key      the query key, with its parameters.
+     * @param versions the versions of the snapshots the response depends on.
+     * @param records  the records writer of the response, called if the response must be computed.
+     * @return the response body.
+     */
+    private byte[] getResponse(String key, long[] versions, ResponseRecords records) {
+        CachedResponse cachedResponse = cachedResponses.get(key);
+        if (cachedResponse != null && Arrays.equals(cachedResponse.versions, versions)) {
+            return cachedResponse.body.join();
+        }
+
+        CachedResponse newResponse = new CachedResponse(versions, new CompletableFuture<>());
+        cachedResponse = cachedResponses.compute(key, (responseKey, previousResponse) ->
+                previousResponse != null && Arrays.equals(previousResponse.versions, versions) ? previousResponse : newResponse);
+        if (cachedResponse == newResponse) {
+            computationCount.incrementAndGet();
+            evictCachedResponses(key);
+            try {
+                StringWriter body = new StringWriter();
+                records.write(new BookRecordWriter(body, BookRecordWriter.Format.JSONL));
+                newResponse.body.complete(body.toString().getBytes(StandardCharsets.UTF_8));
+            } catch (IOException | RuntimeException ex) {
+                // Failed computations are not cached, next request computes the response again
+                cachedResponses.remove(key, newResponse);
+                newResponse.body.completeExceptionally(ex);
+            }
+        }
+        return cachedResponse.body.join();
+    }
+
+    /**
+     * Drops cached responses while there are too many of them.
+     *
+     * @param keptKey the key of a response which must stay cached.
+     */
+    private void evictCachedResponses(String keptKey) {
+        Iterator<String> keys = cachedResponses.keySet().iterator();
+        while (cachedResponses.size() > MAX_CACHED_RESPONSES && keys.hasNext()) {
+            String key = keys.next();
+            if (!key.equals(keptKey)) {
+                keys.remove();
+            }
+        }
+    }
+
+    /**
+     * Gets the snapshot of a book file, through the book file list.
+     * Concurrent first loads of the book are done once, and each access is recorded by the loaded books cache, so that
+     * its eviction choices follow the server queries.
+     *
+     * @param bookFile the book file.
+     * @return the book snapshot.
+     */
+    private BookSnapshot getSnapshot(BookFile bookFile) {
+        BookSnapshot snapshot = bookFileList.getBookSnapshot(bookFile);
+        if (!snapshot.isRead()) {
+            throw new UncheckedIOException(new IOException("Le livre ne peut pas être lu : " + bookFile));
+        }
+        return snapshot;
+    }
+
+    private BookSnapshot[] getSnapshots() {
+        BookSnapshot[] snapshots = new BookSnapshot[bookFiles.size()];
+        for (int i = 0; i < snapshots.length; i++) {
+            snapshots[i] = getSnapshot(bookFiles.get(i));
+        }
+        return snapshots;
+    }
+
+    private static long[] getVersions(BookSnapshot[] snapshots) {
+        long[] versions = new long[snapshots.length];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = snapshots[i].getVersion();
+        }
+        return versions;
+    }
+
+    private static List<WordCounts> getOtherWordCounts(BookSnapshot[] snapshots, BookSnapshot referenceSnapshot) {
+        List<WordCounts> otherWordCounts = new ArrayList<>(snapshots.length);
+        for (BookSnapshot snapshot : snapshots) {
+            if (snapshot != referenceSnapshot) {
+                otherWordCounts.add(snapshot.getWordCounts());
+            }
+        }
+        return otherWordCounts;
+    }
+
+    private BookFile getBookFile(Map<String, String> parameters, String name) {
+        int bookNumber = getIntParameter(parameters, name, 1);
+        if (bookNumber < 1 || bookNumber > bookFiles.size()) {
+            throw new IllegalArgumentException("numéro de livre inconnu " + bookNumber);
+        }
+        return bookFiles.get(bookNumber - 1);
+    }
+
+    private static int getIntParameter(Map<String, String> parameters, String name, int defaultValue) {
+        String value = parameters.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int intValue = Integer.parseInt(value);
+            if (intValue < 0) {
+                throw new IllegalArgumentException("valeur négative pour le paramètre " + name);
+            }
+            return intValue;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("valeur invalide pour le paramètre " + name + " : " + value);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int separatorIndex = parameter.indexOf('=');
+            String name = separatorIndex >= 0 ? parameter.substring(0, separatorIndex) : parameter;
+            String value = separatorIndex >= 0 ? parameter.substring(separatorIndex + 1) : "";
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    /**
+     * Writes the records of a response.
+     */
+    @FunctionalInterface
+    private interface ResponseRecords {
+        void write(BookRecordWriter recordWriter) throws IOException;
+    }
+
+    /**
+     * Response body, computed or being computed, with the versions of the snapshots it depends on.
+     */
+    private static class CachedResponse {
+
+        private final long[] versions;
+        private final CompletableFuture<byte[]> body;
+
+        private CachedResponse(long[] versions, CompletableFuture<byte[]> body) {
+            this.versions = versions;
+            this.body = body;
+        }
+
+    }
+
+}
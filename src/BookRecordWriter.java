@@ -0,0 +1,145 @@
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes book statistics as machine readable records, one record per line, as soon as they are produced.
+ * All records have the same fields: type, book, rank, word and value, empty (or null) when they do not apply.
+ */
+public class BookRecordWriter {
+
+    /**
+     * Record formats.
+     */
+    public enum Format {
+        /**
+         * One JSON object per line.
+         */
+        JSONL,
+        /**
+         * Comma separated values, with a header line.
+         */
+        CSV
+    }
+
+    private static final String[] FIELD_NAMES = {"type", "book", "rank", "word", "value"};
+
+    private final Writer writer;
+    private final Format format;
+    private boolean isHeaderWritten;
+
+    /**
+     * Constructor of a record writer.
+     *
+     * @param writer the writer receiving records, preferably buffered.
+     * @param format the record format.
+     */
+    public BookRecordWriter(Writer writer, Format format) {
+        this.writer = writer;
+        this.format = format;
+    }
+
+    /**
+     * Writes a record.
+     *
+     * @param type  the record type.
+     * @param book  the book file path, or null.
+     * @param rank  the word rank (from 1), or 0 if the record is not about a ranked word.
+     * @param word  the word content, or null.
+     * @param value the record value (count, rate...), or null.
+     * @throws IOException if the record cannot be written.
+     */
+    public void writeRecord(String type, String book, int rank, String word, Number value) throws IOException {
+        if (format == Format.CSV) {
+            writeCsvRecord(type, book, rank, word, value);
+        } else {
+            writeJsonRecord(type, book, rank, word, value);
+        }
+    }
+
+    /**
+     * Writes the records not written yet by the underlying writer.
+     *
+     * @throws IOException if records cannot be written.
+     */
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    private void writeJsonRecord(String type, String book, int rank, String word, Number value) throws IOException {
+        writer.write("{\"" + FIELD_NAMES[0] + "\":");
+        writeJsonString(type);
+        if (book != null) {
+            writer.write(",\"" + FIELD_NAMES[1] + "\":");
+            writeJsonString(book);
+        }
+        if (rank > 0) {
+            writer.write(",\"" + FIELD_NAMES[2] + "\":");
+            writer.write(Integer.toString(rank));
+        }
+        if (word != null) {
+            writer.write(",\"" + FIELD_NAMES[3] + "\":");
+            writeJsonString(word);
+        }
+        if (value != null) {
+            writer.write(",\"" + FIELD_NAMES[4] + "\":");
+            writer.write(value.toString());
+        }
+        writer.write("}\n");
+    }
+
+    private void writeJsonString(String content) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < 0x20) {
+                writer.write(String.format("\\u%04x", (int) c));
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+
+    private void writeCsvRecord(String type, String book, int rank, String word, Number value) throws IOException {
+        if (!isHeaderWritten) {
+            writer.write(String.join(",", FIELD_NAMES));
+            writer.write('\n');
+            isHeaderWritten = true;
+        }
+
+        writeCsvField(type);
+        writer.write(',');
+        writeCsvField(book);
+        writer.write(',');
+        writeCsvField(rank > 0 ? Integer.toString(rank) : null);
+        writer.write(',');
+        writeCsvField(word);
+        writer.write(',');
+        writeCsvField(value != null ? value.toString() : null);
+        writer.write('\n');
+    }
+
+    private void writeCsvField(String field) throws IOException {
+        if (field == null) {
+            return;
+        }
+
+        boolean isQuoted = false;
+        for (int i = 0; i < field.length() && !isQuoted; i++) {
+            char c = field.charAt(i);
+            isQuoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (isQuoted) {
+            writer.write('"');
+            writer.write(field.replace("\"", "\"\""));
+            writer.write('"');
+        } else {
+            writer.write(field);
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Vocabulary similarity of two books, from the number of words they have in common.
+ */
+public class BookSimilarity {
+
+    private final BookFile bookFile1;
+    private final BookFile bookFile2;
+    private final int commonWordCount;
+    private final int wordCount1;
+    private final int wordCount2;
+    private final boolean isApproximate;
+
+    /**
+     * Constructor of a book similarity.
+     *
+     * @param bookFile1       the first book file.
+     * @param bookFile2       the second book file.
+     * @param commonWordCount the number of words present in both books.
+     * @param wordCount1      the number of distinct words of the first book.
+     * @param wordCount2      the number of distinct words of the second book.
+     * @param isApproximate   true if the number of common words is estimated, false if it is exact.
+     */
+    public BookSimilarity(BookFile bookFile1, BookFile bookFile2, int commonWordCount, int wordCount1, int wordCount2,
+                          boolean isApproximate) {
+        this.bookFile1 = bookFile1;
+        this.bookFile2 = bookFile2;
+        this.commonWordCount = commonWordCount;
+        this.wordCount1 = wordCount1;
+        this.wordCount2 = wordCount2;
+        this.isApproximate = isApproximate;
+    }
+
+    /**
+     * Builds a book similarity from an estimated Jaccard similarity.
+     *
+     * @param bookFile1  the first book file.
+     * @param bookFile2  the second book file.
+     * @param jaccard    the estimated Jaccard similarity.
+     * @param wordCount1 the number of distinct words of the first book.
+     * @param wordCount2 the number of distinct words of the second book.
+     * @return the approximate book similarity.
+     */
+    public static BookSimilarity ofJaccard(BookFile bookFile1, BookFile bookFile2, double jaccard, int wordCount1,
+                                           int wordCount2) {
+        // J = |A & B| / (|A| + |B| - |A & B|), so |A & B| = J (|A| + |B|) / (1 + J)
+        int commonWordCount = (int) Math.round(jaccard * (wordCount1 + wordCount2) / (1 + jaccard));
+        return new BookSimilarity(bookFile1, bookFile2, Math.min(commonWordCount, Math.min(wordCount1, wordCount2)),
+                wordCount1, wordCount2, true);
+    }
+
+    /**
+     * Gets the first book file.
+     *
+     * @return the first book file.
+     */
+    public BookFile getBookFile1() {
+        return bookFile1;
+    }
+
+    /**
+     * Gets the second book file.
+     *
+     * @return the second book file.
+     */
+    public BookFile getBookFile2() {
+        return bookFile2;
+    }
+
+    /**
+     * Gets the number of words present in both books.
+     *
+     * @return the number of common words.
+     */
+    public int getCommonWordCount() {
+        return commonWordCount;
+    }
+
+    /**
+     * Gets the Jaccard similarity: common words among the words of either book.
+     *
+     * @return the Jaccard similarity, between 0 and 1.
+     */
+    public double getJaccard() {
+        int unionWordCount = wordCount1 + wordCount2 - commonWordCount;
+        return unionWordCount > 0 ? (double) commonWordCount / unionWordCount : 1;
+    }
+
+    /**
+     * Gets the overlap coefficient: common words among the words of the smaller book.
+     *
+     * @return the overlap coefficient, between 0 and 1.
+     */
+    public double getOverlap() {
+        int smallerWordCount = Math.min(wordCount1, wordCount2);
+        return smallerWordCount > 0 ? (double) commonWordCount / smallerWordCount : 1;
+    }
+
+    /**
+     * Checks whether the similarity is estimated.
+     *
+     * @return true if the number of common words is estimated, false if it is exact.
+     */
+    public boolean isApproximate() {
+        return isApproximate;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%1$s / %2$s : %3$.3f (Jaccard), %4$.3f (recouvrement)%5$s", bookFile1, bookFile2,
+                getJaccard(), getOverlap(), isApproximate ? " ~" : "");
+    }
+
+}
@@ -0,0 +1,333 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Immutable state of a loaded book: its word counts and how much of the book file they cover.
+ * A book file replaces its snapshot as a whole when it is refreshed, so that readers holding a snapshot always see
+ * consistent word counts and ordering.
+ * <p>
+ * Snapshots can be shared between threads and read without copying: words are accessed by rank (rank 0 being the most
+ * used word, as in {@link BookFile#getWordList()}), and Word objects are created on access, so that callers cannot
+ * modify the snapshot through them.
+ */
+public class BookSnapshot implements Iterable<Word> {
+
+    private final WordCounts wordCounts;
+    private final long lineEndPosition;
+    private final long readPosition;
+    private final long version;
+    private volatile int[] sortedWordIndexes;
+    private volatile int[] idLookupTable;
+    private volatile MinHashSignature minHashSignature;
+
+    BookSnapshot(WordCounts wordCounts, long lineEndPosition, long readPosition, long version, int[] sortedWordIndexes) {
+        this.wordCounts = wordCounts;
+        this.lineEndPosition = lineEndPosition;
+        this.readPosition = readPosition;
+        this.version = version;
+        this.sortedWordIndexes = sortedWordIndexes;
+    }
+
+    /**
+     * Creates the empty snapshot given for a book file which cannot be read, so that queries see a book without
+     * words. Its version is 0, read books starting at version 1 (see {@link #isRead()}).
+     *
+     * @return the empty snapshot.
+     */
+    static BookSnapshot ofUnreadBook() {
+        return new BookSnapshot(WordCounts.of(new int[0], new int[0], WordDictionary.getSharedDictionary()), 0, 0, 0,
+                new int[0]);
+    }
+
+    /**
+     * Gets the book word counts.
+     *
+     * @return the word counts.
+     */
+    public WordCounts getWordCounts() {
+        return wordCounts;
+    }
+
+    /**
+     * Gets the number of distinct words.
+     *
+     * @return the number of words.
+     */
+    public int size() {
+        return wordCounts.size();
+    }
+
+    /**
+     * Gets a word by rank.
+     *
+     * @param rank the word rank, from 0 (most used word) to size - 1.
+     * @return a new word object.
+     */
+    public Word get(int rank) {
+        return wordCounts.getWord(getSortedWordIndexes()[rank]);
+    }
+
+    /**
+     * Gets the words by rank, as a read-only list view which does not copy the snapshot.
+     * Ranges of ranks can be read with {@link List#subList(int, int)}, which is a view as well.
+     *
+     * @return the list view of words.
+     */
+    public List<Word> asWordList() {
+        return new AbstractList<>() {
+            @Override
+            public Word get(int rank) {
+                return BookSnapshot.this.get(rank);
+            }
+
+            @Override
+            public int size() {
+                return BookSnapshot.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Word> iterator() {
+        return asWordList().iterator();
+    }
+
+    /**
+     * Gets the most used words, without sorting all the words if they are not sorted yet.
+     *
+     * @param count the number of most used words.
+     * @return the most used words, by descending count.
+     */
+    public List<Word> getMostUsedWords(int count) {
+        int[] wordIndexes = sortedWordIndexes;
+        if (wordIndexes != null) {
+            return new ArrayList<>(asWordList().subList(0, Math.max(0, Math.min(count, wordIndexes.length))));
+        }
+
+        int[] mostUsedWordIndexes = wordCounts.selectMostCounted(count);
+        List<Word> mostUsedWords = new ArrayList<>(mostUsedWordIndexes.length);
+        for (int wordIndex : mostUsedWordIndexes) {
+            mostUsedWords.add(wordCounts.getWord(wordIndex));
+        }
+        return mostUsedWords;
+    }
+
+    /**
+     * Checks whether the book contains a word, in constant time.
+     *
+     * @param content the word content (lower case, as read from the book).
+     * @return true if the book contains the word, false otherwise.
+     */
+    public boolean contains(String content) {
+        return countOf(content) > 0;
+    }
+
+    /**
+     * Gets the count of a word, in constant time.
+     *
+     * @param content the word content (lower case, as read from the book).
+     * @return the word count, 0 if the book does not contain the word.
+     */
+    public int countOf(String content) {
+        int id = wordCounts.getDictionary().findId(content);
+        if (id < 0) {
+            return 0;
+        }
+
+        int index = lookUpIndex(id);
+        return index >= 0 ? wordCounts.getCount(index) : 0;
+    }
+
+    /**
+     * Estimates the heap size of the snapshot, with the indexes computed so far.
+     *
+     * @return the estimated size, in bytes.
+     */
+    public long getEstimatedSize() {
+        long estimatedSize = 48 + wordCounts.getEstimatedSize();
+        int[] wordIndexes = sortedWordIndexes;
+        if (wordIndexes != null) {
+            estimatedSize += 16 + 4L * wordIndexes.length;
+        }
+        int[] lookupTable = idLookupTable;
+        if (lookupTable != null) {
+            estimatedSize += 16 + 4L * lookupTable.length;
+        }
+        if (minHashSignature != null) {
+            estimatedSize += 32 + 4L * MinHashSignature.SIZE;
+        }
+        return estimatedSize;
+    }
+
+    /**
+     * Gets the position in book file right after the last complete line which has been read.
+     *
+     * @return the last line end position.
+     */
+    public long getLineEndPosition() {
+        return lineEndPosition;
+    }
+
+    /**
+     * Gets the number of book file bytes which have been read, last line being possibly incomplete.
+     *
+     * @return the read position.
+     */
+    public long getReadPosition() {
+        return readPosition;
+    }
+
+    /**
+     * Gets the snapshot version, which increases each time the book file is loaded or refreshed.
+     *
+     * @return the snapshot version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Checks whether the snapshot holds the words of the book, or is the empty snapshot of a book file which could
+     * not be read.
+     *
+     * @return true if the book file was read, false otherwise.
+     */
+    public boolean isRead() {
+        return version > 0;
+    }
+
+    /**
+     * Gets the word indexes (in word counts) sorted by descending count, computed the first time they are needed.
+     *
+     * @return the sorted word indexes, which should not be modified.
+     */
+    public int[] getSortedWordIndexes() {
+        int[] wordIndexes = sortedWordIndexes;
+        if (wordIndexes == null) {
+            // Concurrent computations give the same result, the last one simply replaces the other ones
+            wordIndexes = wordCounts.sortByCount();
+            sortedWordIndexes = wordIndexes;
+        }
+        return wordIndexes;
+    }
+
+    /**
+     * Gets the MinHash signature of the book vocabulary, computed the first time it is needed.
+     *
+     * @return the signature.
+     */
+    public MinHashSignature getMinHashSignature() {
+        MinHashSignature signature = minHashSignature;
+        if (signature == null) {
+            signature = MinHashSignature.of(wordCounts);
+            minHashSignature = signature;
+        }
+        return signature;
+    }
+
+    /**
+     * Finds the index of a word in word counts with a hash table built the first time it is needed.
+     *
+     * @param id the word id.
+     * @return the word index, -1 if the book does not contain the word.
+     */
+    private int lookUpIndex(int id) {
+        int[] lookupTable = idLookupTable;
+        if (lookupTable == null) {
+            lookupTable = buildIdLookupTable();
+            idLookupTable = lookupTable;
+        }
+
+        // Open addressing table of (id + 1, index) pairs, 0 meaning an empty slot
+        int mask = (lookupTable.length >>> 1) - 1;
+        int slot = mix(id) & mask;
+        while (lookupTable[2 * slot] != 0) {
+            if (lookupTable[2 * slot] == id + 1) {
+                return lookupTable[2 * slot + 1];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int[] buildIdLookupTable() {
+        int slotCount = Integer.highestOneBit(Math.max(wordCounts.size(), 1) * 2) * 2;
+        int mask = slotCount - 1;
+        int[] lookupTable = new int[2 * slotCount];
+        for (int index = 0; index < wordCounts.size(); index++) {
+            int id = wordCounts.getId(index);
+            int slot = mix(id) & mask;
+            while (lookupTable[2 * slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            lookupTable[2 * slot] = id + 1;
+            lookupTable[2 * slot + 1] = index;
+        }
+        return lookupTable;
+    }
+
+    private static int mix(int id) {
+        int hash = id * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Creates the next snapshot, after count changes read from the book file.
+     * If word ordering was already computed, only the changed words are moved in it, instead of sorting all words.
+     *
+     * @param delta           the count changes.
+     * @param lineEndPosition the new last line end position.
+     * @param readPosition    the new read position.
+     * @return the new snapshot.
+     */
+    BookSnapshot append(WordCounts delta, long lineEndPosition, long readPosition) {
+        int[] indexMapping = new int[wordCounts.size()];
+        WordCounts newWordCounts = wordCounts.merge(delta, indexMapping);
+
+        int[] oldSortedWordIndexes = sortedWordIndexes;
+        int[] newSortedWordIndexes = null;
+        if (oldSortedWordIndexes != null) {
+            newSortedWordIndexes = reorder(oldSortedWordIndexes, indexMapping, newWordCounts, delta);
+        }
+
+        return new BookSnapshot(newWordCounts, lineEndPosition, readPosition, version + 1, newSortedWordIndexes);
+    }
+
+    private static int[] reorder(int[] oldSortedWordIndexes, int[] indexMapping, WordCounts newWordCounts, WordCounts delta) {
+        // Changed words are sorted on their own...
+        BitSet changedWordIndexes = new BitSet(newWordCounts.size());
+        for (int i = 0; i < delta.size(); i++) {
+            int newIndex = newWordCounts.indexOf(delta.getId(i));
+            if (newIndex >= 0) {
+                changedWordIndexes.set(newIndex);
+            }
+        }
+        Integer[] changedSortedIndexes = changedWordIndexes.stream().boxed().toArray(Integer[]::new);
+        Arrays.sort(changedSortedIndexes, newWordCounts::compareByCount);
+
+        // ...then merged with unchanged words, which are still sorted
+        int[] newSortedWordIndexes = new int[newWordCounts.size()];
+        int position = 0;
+        int changedPosition = 0;
+        for (int oldIndex : oldSortedWordIndexes) {
+            int newIndex = indexMapping[oldIndex];
+            if (newIndex < 0 || changedWordIndexes.get(newIndex)) continue;
+
+            while (changedPosition < changedSortedIndexes.length
+                    && newWordCounts.compareByCount(changedSortedIndexes[changedPosition], newIndex) < 0) {
+                newSortedWordIndexes[position++] = changedSortedIndexes[changedPosition++];
+            }
+            newSortedWordIndexes[position++] = newIndex;
+        }
+        while (changedPosition < changedSortedIndexes.length) {
+            newSortedWordIndexes[position++] = changedSortedIndexes[changedPosition++];
+        }
+
+        return newSortedWordIndexes;
+    }
+
+}
@@ -0,0 +1,395 @@
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Reads compressed book files without decompressing them to disk.
+ * Decompression runs on pool threads, which hand decompressed chunks over to the tokenizing thread through bounded
+ * queues, so that decompression and tokenization overlap and only a few chunks are in memory at the same time.
+ * <p>
+ * Multi-member gzip files (written by bgzip, or concatenated gzip files) are split at member headers and their parts
+ * are decompressed in parallel, chunks being tokenized in file order so that lines spanning two parts are kept whole.
+ * Member headers are found by scanning compressed bytes, so a part may start at a false header: decompression then
+ * fails and the book is read again sequentially. Single member gzip files and zstd files are decompressed by a single
+ * thread.
+ */
+public class CompressedBookReader {
+
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int QUEUE_CAPACITY = 16;
+    private static final int PARTS_PER_THREAD = 4;
+    private static final long DEFAULT_MINIMUM_PART_SIZE = 1 << 20;
+    private static final ByteBuffer END_OF_PART = ByteBuffer.allocate(0);
+
+    // Pool running tasks in submission order, so that the part being tokenized is always decompressed first
+    private static final ExecutorService DEFAULT_POOL =
+            BookLoaderPools.newBoundedPool(Runtime.getRuntime().availableProcessors());
+
+    private final ExecutorService pool;
+    private final int parallelism;
+    private final long minimumPartSize;
+
+    public CompressedBookReader() {
+        this(DEFAULT_POOL, Runtime.getRuntime().availableProcessors(), DEFAULT_MINIMUM_PART_SIZE);
+    }
+
+    /**
+     * Constructor with decompression pool arguments.
+     *
+     * @param pool            the pool decompressing book parts, running tasks in submission order.
+     * @param parallelism     the number of threads of the pool.
+     * @param minimumPartSize the minimum size in compressed bytes of a part decompressed by a single task.
+     */
+    public CompressedBookReader(ExecutorService pool, int parallelism, long minimumPartSize) {
+        this.pool = pool;
+        this.parallelism = parallelism;
+        this.minimumPartSize = minimumPartSize;
+    }
+
+    /**
+     * Counts the words of the beginning of a compressed book file, decompressing its parts in parallel.
+     * If a part cannot be decompressed on its own, the book is read again sequentially in a new counter.
+     *
+     * @param filePath           the book file path.
+     * @param fileSize           the number of compressed bytes to read.
+     * @param compression        the book file compression format.
+     * @param textNormalizer     the normalizer turning lines into words.
+     * @param wordCounterFactory the factory of the counter.
+     * @return the counter holding the words read.
+     * @throws IOException if the book file cannot be read or decompressed.
+     */
+    public WordCounter readWords(Path filePath, long fileSize, BookCompression compression,
+                                 TextNormalizer textNormalizer, Supplier<WordCounter> wordCounterFactory)
+            throws IOException {
+        List<Long> boundaries;
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            boundaries = compression == BookCompression.GZIP ? splitOnGzipMembers(channel, fileSize) : List.of(0L, fileSize);
+        }
+
+        try {
+            return readWordsInNewCounter(filePath, boundaries, compression, textNormalizer, wordCounterFactory);
+        } catch (ZipException | EOFException ex) {
+            if (boundaries.size() == 2) {
+                throw ex;
+            }
+        }
+
+        return readWordsInNewCounter(filePath, List.of(0L, fileSize), compression, textNormalizer, wordCounterFactory);
+    }
+
+    /**
+     * Counts the words of the beginning of a compressed book file, decompressing it sequentially (but still while
+     * tokenizing), for counters which cannot be filled again from scratch.
+     *
+     * @param filePath       the book file path.
+     * @param fileSize       the number of compressed bytes to read.
+     * @param compression    the book file compression format.
+     * @param textNormalizer the normalizer turning lines into words.
+     * @param sink           the sink receiving the words.
+     * @throws IOException if the book file cannot be read or decompressed.
+     */
+    public void readWords(Path filePath, long fileSize, BookCompression compression, TextNormalizer textNormalizer,
+                          WordSink sink) throws IOException {
+        readWords(filePath, List.of(0L, fileSize), compression, textNormalizer, sink);
+    }
+
+    /**
+     * Counts words in a new counter, which is closed if the book file cannot be read.
+     */
+    private WordCounter readWordsInNewCounter(Path filePath, List<Long> boundaries, BookCompression compression,
+                                              TextNormalizer textNormalizer, Supplier<WordCounter> wordCounterFactory)
+            throws IOException {
+        WordCounter counter = wordCounterFactory.get();
+        boolean isRead = false;
+        try {
+            readWords(filePath, boundaries, compression, textNormalizer, counter);
+            isRead = true;
+            return counter;
+        } finally {
+            if (!isRead) {
+                counter.close();
+            }
+        }
+    }
+
+    private void readWords(Path filePath, List<Long> boundaries, BookCompression compression,
+                           TextNormalizer textNormalizer, WordSink sink) throws IOException {
+        BlockingQueue<byte[]> freeChunks = new ArrayBlockingQueue<>(QUEUE_CAPACITY * parallelism);
+        List<DecompressionTask> tasks = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < boundaries.size() - 1; i++) {
+            DecompressionTask task = new DecompressionTask(filePath, boundaries.get(i), boundaries.get(i + 1),
+                    compression, freeChunks);
+            tasks.add(task);
+            futures.add(pool.submit(task));
+        }
+
+        MappedBookReader bookReader = new MappedBookReader(textNormalizer);
+        byte[] line = new byte[256];
+        int lineLength = 0;
+        try {
+            for (DecompressionTask task : tasks) {
+                ByteBuffer chunk;
+                while ((chunk = task.takeChunk()) != END_OF_PART) {
+                    byte[] bytes = chunk.array();
+                    int length = chunk.limit();
+
+                    // Line started in previous chunks is completed with the beginning of this one
+                    int position = 0;
+                    if (lineLength > 0) {
+                        int lineEnd = indexOfLineFeed(bytes, 0, length);
+                        int copiedLength = lineEnd < 0 ? length : lineEnd + 1;
+                        if (lineLength + copiedLength > line.length) {
+                            line = Arrays.copyOf(line, Math.max(lineLength + copiedLength, line.length * 2));
+                        }
+                        System.arraycopy(bytes, 0, line, lineLength, copiedLength);
+                        lineLength += copiedLength;
+                        position = copiedLength;
+                        if (lineEnd >= 0) {
+                            bookReader.readWords(ByteBuffer.wrap(line), lineLength, sink);
+                            lineLength = 0;
+                        }
+                    }
+
+                    // Complete lines are read from the chunk itself, the last incomplete one being kept for later
+                    if (position < length) {
+                        int linesEnd = lastIndexOfLineFeed(bytes, position, length) + 1;
+                        if (linesEnd > position) {
+                            bookReader.readWords(ByteBuffer.wrap(bytes, position, linesEnd - position).slice(),
+                                    linesEnd - position, sink);
+                        }
+                        if (length - linesEnd > line.length) {
+                            line = new byte[Math.max(length - linesEnd, line.length * 2)];
+                        }
+                        System.arraycopy(bytes, linesEnd, line, 0, length - linesEnd);
+                        lineLength = length - linesEnd;
+                    }
+                    freeChunks.offer(bytes);
+                }
+                task.rethrowFailure();
+            }
+
+            if (lineLength > 0) {
+                bookReader.readWords(ByteBuffer.wrap(line), lineLength, sink);
+            }
+        } finally {
+            // Tasks may be blocked on full queues if reading failed
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Splits a gzip file in parts, each one starting at a member header.
+     *
+     * @return the parts boundaries, from 0 to file size.
+     */
+    private List<Long> splitOnGzipMembers(FileChannel channel, long fileSize) throws IOException {
+        long partSize = Math.max(minimumPartSize, fileSize / ((long) parallelism * PARTS_PER_THREAD));
+
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        long position = partSize;
+        while (position < fileSize) {
+            long memberStart = nextGzipHeader(channel, position, fileSize, buffer);
+            if (memberStart >= fileSize) break;
+
+            boundaries.add(memberStart);
+            position = memberStart + partSize;
+        }
+        boundaries.add(fileSize);
+
+        return boundaries;
+    }
+
+    private static long nextGzipHeader(FileChannel channel, long position, long fileSize, ByteBuffer buffer)
+            throws IOException {
+        while (position + 10 <= fileSize) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), fileSize - position));
+            int readBytes = channel.read(buffer, position);
+            if (readBytes < 10) {
+                return fileSize;
+            }
+
+            for (int i = 0; i + 10 <= readBytes; i++) {
+                if (isGzipHeader(buffer, i)) {
+                    return position + i;
+                }
+            }
+            // Next block overlaps this one, so that headers across blocks are found
+            position += readBytes - 9;
+        }
+        return fileSize;
+    }
+
+    /**
+     * Checks whether a gzip member header (deflate method, no reserved flag, known extra flags) starts at an index.
+     */
+    private static boolean isGzipHeader(ByteBuffer buffer, int index) {
+        int extraFlags = buffer.get(index + 8) & 0xFF;
+        return (buffer.get(index) & 0xFF) == 0x1F && (buffer.get(index + 1) & 0xFF) == 0x8B && buffer.get(index + 2) == 8
+                && (buffer.get(index + 3) & 0xE0) == 0 && (extraFlags == 0 || extraFlags == 2 || extraFlags == 4);
+    }
+
+    private static int indexOfLineFeed(byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == '\n') return i;
+        }
+        return -1;
+    }
+
+    private static int lastIndexOfLineFeed(byte[] bytes, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (bytes[i] == '\n') return i;
+        }
+        return from - 1;
+    }
+
+    /**
+     * Opens a decompressing stream on compressed bytes.
+     */
+    private static InputStream openDecompressingStream(InputStream compressedInput, BookCompression compression)
+            throws IOException {
+        if (compression == BookCompression.GZIP) {
+            return new GZIPInputStream(compressedInput, CHUNK_SIZE);
+        }
+
+        try {
+            return ZstdDecompression.open(compressedInput);
+        } catch (LinkageError linkageError) {
+            throw new IOException("La bibliothèque zstd-jni est nécessaire pour lire les fichiers zstd", linkageError);
+        }
+    }
+
+    /**
+     * Zstd decompression, in its own class so that zstd-jni is only loaded when a zstd book is read.
+     */
+    private static class ZstdDecompression {
+
+        private static InputStream open(InputStream compressedInput) throws IOException {
+            return new com.github.luben.zstd.ZstdInputStream(compressedInput);
+        }
+    }
+
+    /**
+     * Decompresses a part of a book file in chunks, handed over to the tokenizing thread.
+     */
+    private static class DecompressionTask implements Runnable {
+
+        private final Path filePath;
+        private final long start;
+        private final long end;
+        private final BookCompression compression;
+        private final BlockingQueue<byte[]> freeChunks;
+        private final BlockingQueue<ByteBuffer> chunks = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private volatile IOException failure;
+
+        private DecompressionTask(Path filePath, long start, long end, BookCompression compression,
+                                  BlockingQueue<byte[]> freeChunks) {
+            this.filePath = filePath;
+            this.start = start;
+            this.end = end;
+            this.compression = compression;
+            this.freeChunks = freeChunks;
+        }
+
+        @Override
+        public void run() {
+            try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ);
+                 InputStream input = openDecompressingStream(
+                         new RangeInputStream(Channels.newInputStream(channel.position(start)), end - start), compression)) {
+                while (true) {
+                    byte[] chunk = freeChunks.poll();
+                    if (chunk == null) {
+                        chunk = new byte[CHUNK_SIZE];
+                    }
+                    int length = input.readNBytes(chunk, 0, chunk.length);
+                    if (length == 0) break;
+                    chunks.put(ByteBuffer.wrap(chunk, 0, length));
+                }
+            } catch (IOException ioEx) {
+                failure = ioEx;
+            } catch (InterruptedException interruptedEx) {
+                // Reading was stopped, nobody is waiting for the chunks anymore
+                return;
+            }
+
+            try {
+                chunks.put(END_OF_PART);
+            } catch (InterruptedException interruptedEx) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private ByteBuffer takeChunk() throws IOException {
+            try {
+                return chunks.take();
+            } catch (InterruptedException interruptedEx) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Lecture du livre compressé interrompue");
+            }
+        }
+
+        private void rethrowFailure() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Input stream reading a limited number of bytes of another one.
+     */
+    private static class RangeInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        private RangeInputStream(InputStream input, long length) {
+            super(input);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = super.read();
+            if (b >= 0) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) return -1;
+            int readBytes = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (readBytes > 0) remaining -= readBytes;
+            return readBytes;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(remaining, Math.min(super.available(), Integer.MAX_VALUE));
+        }
+
+    }
+
+}
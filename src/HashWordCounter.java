@@ -0,0 +1,40 @@
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+public class HashWordCounter implements WordCounter {
+
+    private final Map<String, Word> wordMap = new HashMap<>();
+
+    @Override
+    public void add(String content) {
+        // A single hash lookup per token: the word object is the mutable counter.
+        Word word = wordMap.get(content);
+        if (word == null) {
+            wordMap.put(content, new Word(content, 1));
+        } else {
+            word.incrementCount();
+        }
+    }
+
+    @Override
+    public void add(String content, int occurrences) {
+        Word word = wordMap.get(content);
+        if (word == null) {
+            wordMap.put(content, new Word(content, occurrences));
+        } else {
+            word.addCount(occurrences);
+        }
+    }
+
+    @Override
+    public int size() {
+        return wordMap.size();
+    }
+
+    @Override
+    public Collection<Word> getWords() {
+        return wordMap.values();
+    }
+
+}
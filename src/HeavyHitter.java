@@ -0,0 +1,54 @@
+public class HeavyHitter {
+
+    private final String content;
+    private final int count;
+    private final int error;
+
+    public HeavyHitter(String content, int count, int error) {
+        this.content = content;
+        this.count = count;
+        this.error = error;
+    }
+
+    /**
+     * Gets the word content.
+     *
+     * @return the word content.
+     */
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * Gets the estimated word count, which is an upper bound of the real count.
+     *
+     * @return the estimated count.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the maximum overestimation of the word count.
+     *
+     * @return the count error bound.
+     */
+    public int getError() {
+        return error;
+    }
+
+    /**
+     * Gets the count the word is guaranteed to have, which is a lower bound of the real count.
+     *
+     * @return the guaranteed count.
+     */
+    public int getGuaranteedCount() {
+        return count - error;
+    }
+
+    @Override
+    public String toString() {
+        return "'" + content + "' : " + count + " occurences (+/- " + error + ")";
+    }
+
+}
@@ -0,0 +1,81 @@
+/**
+ * Distinct words estimator in fixed memory (HyperLogLog algorithm).
+ * Each word hash selects a register, which keeps the maximum rank (position of the first one bit) of the hashes it
+ * got: the harmonic mean of the registers estimates the number of distinct hashes, with a relative error of about
+ * 1.04 / sqrt(number of registers).
+ * Word hashes are 32 bits (see {@link Utf8WordTable#hash(byte[], int, int)}), so estimates stay accurate up to a few
+ * hundred million distinct words.
+ */
+public class HyperLogLog {
+
+    private static final int DEFAULT_PRECISION = 14;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Constructor with precision argument.
+     *
+     * @param precision the number of hash bits selecting a register, from 4 to 18 (2^precision registers).
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("La précision doit être comprise entre 4 et 18 : " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Adds a word hash.
+     *
+     * @param hash the word hash.
+     */
+    public void addHash(int hash) {
+        // Spread the 32 bits hash over 64 bits, so that register index and rank bits are independent
+        long spreadHash = mix(hash);
+        int registerIndex = (int) (spreadHash >>> (64 - precision));
+        int rank = Long.numberOfLeadingZeros((spreadHash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[registerIndex]) {
+            registers[registerIndex] = (byte) rank;
+        }
+    }
+
+    /**
+     * Estimates the number of distinct hashes added.
+     *
+     * @return the estimated number of distinct words.
+     */
+    public long estimate() {
+        int registerCount = registers.length;
+        double inverseSum = 0;
+        int zeroRegisterCount = 0;
+        for (byte register : registers) {
+            inverseSum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeroRegisterCount++;
+            }
+        }
+
+        double alpha = 0.7213 / (1 + 1.079 / registerCount);
+        double estimate = alpha * registerCount * registerCount / inverseSum;
+
+        // Small cardinalities are better estimated by the number of empty registers (linear counting)
+        if (estimate <= 2.5 * registerCount && zeroRegisterCount > 0) {
+            estimate = registerCount * Math.log((double) registerCount / zeroRegisterCount);
+        }
+        return Math.round(estimate);
+    }
+
+    private static long mix(int hash) {
+        long value = hash * 0x9E3779B97F4A7C15L;
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+
+}
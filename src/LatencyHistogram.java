@@ -0,0 +1,110 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations with power of two buckets, recorded concurrently without locking.
+ * Percentiles are given as the upper bound of their bucket, so they are at most twice the actual value.
+ */
+public class LatencyHistogram {
+
+    // Bucket i holds durations d with 2^(i-1) <= d < 2^i nanoseconds, bucket 0 holding null durations
+    private static final int BUCKET_COUNT = 64;
+
+    private final AtomicLongArray bucketCounts;
+    private final AtomicLongArray totals;
+
+    /**
+     * Constructor of an empty histogram.
+     */
+    public LatencyHistogram() {
+        this(new AtomicLongArray(BUCKET_COUNT), new AtomicLongArray(2));
+    }
+
+    private LatencyHistogram(AtomicLongArray bucketCounts, AtomicLongArray totals) {
+        this.bucketCounts = bucketCounts;
+        // Total duration and maximum duration
+        this.totals = totals;
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param durationNanos the duration, in nanoseconds.
+     */
+    public void record(long durationNanos) {
+        long duration = Math.max(durationNanos, 0);
+        bucketCounts.incrementAndGet(Math.min(64 - Long.numberOfLeadingZeros(duration), BUCKET_COUNT - 1));
+        totals.addAndGet(0, duration);
+        totals.accumulateAndGet(1, duration, Math::max);
+    }
+
+    /**
+     * Copies the histogram, the copy not changing when durations are recorded afterwards.
+     *
+     * @return the histogram copy.
+     */
+    public LatencyHistogram copy() {
+        AtomicLongArray bucketCountsCopy = new AtomicLongArray(BUCKET_COUNT);
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            bucketCountsCopy.set(i, bucketCounts.get(i));
+        }
+        return new LatencyHistogram(bucketCountsCopy, new AtomicLongArray(new long[]{totals.get(0), totals.get(1)}));
+    }
+
+    /**
+     * Gets the number of recorded durations.
+     *
+     * @return the number of durations.
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += bucketCounts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the mean duration.
+     *
+     * @return the mean duration in nanoseconds, 0 if no duration was recorded.
+     */
+    public long getMeanNanos() {
+        long count = getCount();
+        return count > 0 ? totals.get(0) / count : 0;
+    }
+
+    /**
+     * Gets the maximum duration.
+     *
+     * @return the maximum duration in nanoseconds, 0 if no duration was recorded.
+     */
+    public long getMaxNanos() {
+        return totals.get(1);
+    }
+
+    /**
+     * Gets a duration percentile.
+     *
+     * @param percentile the percentile, between 0 and 100.
+     * @return the upper bound of the percentile bucket in nanoseconds, 0 if no duration was recorded.
+     */
+    public long getPercentileNanos(double percentile) {
+        long count = getCount();
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long cumulatedCount = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulatedCount += bucketCounts.get(i);
+            if (cumulatedCount >= rank && cumulatedCount > 0) {
+                return Math.min((1L << i) - 1, getMaxNanos());
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%1$d requêtes, moyenne %2$d ns, p50 %3$d ns, p99 %4$d ns, max %5$d ns",
+                getCount(), getMeanNanos(), getPercentileNanos(50), getPercentileNanos(99), getMaxNanos());
+    }
+
+}
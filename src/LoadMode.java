@@ -0,0 +1,18 @@
+public enum LoadMode {
+
+    /**
+     * Reads the book file line by line through a buffered reader.
+     */
+    READER,
+
+    /**
+     * Memory-maps the book file and tokenizes it directly from UTF-8 bytes.
+     */
+    MAPPED,
+
+    /**
+     * Memory-maps the book file and tokenizes line aligned ranges of it in parallel.
+     */
+    PARALLEL
+
+}
@@ -0,0 +1,156 @@
+import java.util.Arrays;
+
+/**
+ * Open-addressing table counting primitive long keys, without boxing.
+ * Memory is bounded: when the table holds its maximum number of keys, the least counted keys are removed to make room,
+ * so that counts of rare keys may then be underestimated while frequent keys are kept.
+ */
+public class LongIntTable {
+
+    private static final long EMPTY_KEY = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int maxSize;
+    private long[] keys;
+    private int[] counts;
+    private int mask;
+    private int size = 0;
+    private int pruneThreshold = 0;
+
+    /**
+     * Constructor of a table holding at most a number of keys.
+     *
+     * @param maxSize the maximum number of keys.
+     */
+    public LongIntTable(int maxSize) {
+        this.maxSize = maxSize;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Counts occurrences of a key.
+     *
+     * @param key         the key, which must not be negative.
+     * @param occurrences the number of occurrences.
+     */
+    public void add(long key, int occurrences) {
+        int index = findSlot(key);
+        if (keys[index] == key) {
+            counts[index] += occurrences;
+            return;
+        }
+
+        if (size == maxSize) {
+            prune();
+            index = findSlot(key);
+        }
+        keys[index] = key;
+        counts[index] = occurrences;
+        size += 1;
+
+        // Keep load factor under 1/2 so that probe sequences stay short
+        if (size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    /**
+     * Gets the number of keys.
+     *
+     * @return the number of keys.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether keys were removed to bound memory, some counts being then underestimated.
+     *
+     * @return true if keys were removed, false if all counts are exact.
+     */
+    public boolean isPruned() {
+        return pruneThreshold > 0;
+    }
+
+    /**
+     * Calls an action for each key, in no particular order.
+     *
+     * @param action the action called with each key and its count.
+     */
+    public void forEach(EntryConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY_KEY) {
+                action.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Action on a table entry.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+
+        /**
+         * Performs the action on an entry.
+         *
+         * @param key   the entry key.
+         * @param count the entry count.
+         */
+        void accept(long key, int count);
+    }
+
+    private int findSlot(long key) {
+        int index = mix(key) & mask;
+        while (keys[index] != EMPTY_KEY && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    /**
+     * Removes the least counted keys until at most half of the maximum number of keys remain.
+     */
+    private void prune() {
+        while (size > maxSize / 2) {
+            pruneThreshold += 1;
+            int remainingSize = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY_KEY && counts[i] <= pruneThreshold) {
+                    keys[i] = EMPTY_KEY;
+                } else if (keys[i] != EMPTY_KEY) {
+                    remainingSize++;
+                }
+            }
+            size = remainingSize;
+        }
+        rehash(keys.length);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                int index = findSlot(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                counts[index] = oldCounts[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY_KEY);
+        counts = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int mix(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+}
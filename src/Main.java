@@ -18,15 +18,21 @@ public class Main {
 
     private final static Scanner inputScanner = new Scanner(System.in);
 
-    private static BookFileList bookFileList = new BookFileList();
+    private static BookFileList bookFileList =
+            new BookFileList(BookLoaderPools.newBoundedPool(Runtime.getRuntime().availableProcessors()));
 
     /**
      * Entry point of the book statistics program.
      *
-     * @param args list of book files.
+     * @param args list of book files, or a batch command (see {@link BatchCommand}).
      */
     public static void main(String[] args) {
 
+        // Batch commands do not use menus, and end with their exit status
+        if (BatchCommand.isCommand(args)) {
+            System.exit(BatchCommand.run(args));
+        }
+
         // Load menus
         initMenus();
 
@@ -39,7 +45,9 @@ public class Main {
                 return;
             }
 
-            bookFileList.addBookFileToList(new BookFile(filePath));
+            BookFile bookFile = new BookFile(filePath);
+            bookFile.setIndexCacheEnabled(true);
+            bookFileList.addBookFileToList(bookFile);
         }
 
         String mainChoice;
@@ -0,0 +1,294 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Zero-copy book tokenizer: the book file is memory-mapped and each line is lower-cased and hashed directly from its
+ * UTF-8 bytes into a reusable buffer, so no String is created for words already known by the counter.
+ * Lines are split like {@link java.io.BufferedReader#readLine()} does ("\n", "\r" or "\r\n").
+ * Lines are lower-cased by the reader itself with the default normalizer, other normalizers get raw lines.
+ */
+public class MappedBookReader {
+
+    private static final int MAX_MAPPED_CHUNK_SIZE = Integer.MAX_VALUE;
+
+    private final TextNormalizer.Tokenizer tokenizer;
+    private byte[] wordBuffer = new byte[256];
+
+    public MappedBookReader() {
+        this(TextNormalizer.DEFAULT);
+    }
+
+    /**
+     * Constructor with text normalizer argument.
+     *
+     * @param textNormalizer the normalizer turning lines into words.
+     */
+    public MappedBookReader(TextNormalizer textNormalizer) {
+        this.tokenizer = textNormalizer.isDefault() ? null : textNormalizer.newTokenizer();
+    }
+
+    /**
+     * Reads all the words (one per line) of a book file in a counter.
+     *
+     * @param filePath the book file path.
+     * @param sink     the sink receiving the words.
+     * @throws IOException if the book file cannot be read.
+     */
+    public void readWords(Path filePath, WordSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            readWords(channel, 0, channel.size(), sink);
+        }
+    }
+
+    /**
+     * Reads the words of a book file byte range in a counter.
+     * The range should start at the beginning of a line and end after a line terminator (or at end of file).
+     *
+     * @param channel the book file channel.
+     * @param start   the range start position.
+     * @param end     the range end position (exclusive).
+     * @param sink    the sink receiving the words.
+     * @throws IOException if the book file cannot be read.
+     */
+    public void readWords(FileChannel channel, long start, long end, WordSink sink) throws IOException {
+        long position = start;
+        while (position < end) {
+            long chunkSize = Math.min(end - position, MAX_MAPPED_CHUNK_SIZE);
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, chunkSize);
+
+            // A chunk which does not reach the range end has to stop after its last complete line
+            int limit = (int) chunkSize;
+            if (position + chunkSize < end) {
+                limit = lastLineEnd(buffer, limit);
+                if (limit == 0) {
+                    throw new IOException("Ligne trop longue à la position " + position);
+                }
+            }
+
+            readWords(buffer, limit, sink);
+            position += limit;
+        }
+    }
+
+    /**
+     * Finds the end of the last complete line (ending with a line feed) in a book file byte range.
+     *
+     * @param channel the book file channel.
+     * @param start   the range start position.
+     * @param end     the range end position (exclusive).
+     * @return the position right after the last line feed of the range, start if there is none.
+     * @throws IOException if the book file cannot be read.
+     */
+    public static long findLastLineEnd(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long blockEnd = end;
+        while (blockEnd > start) {
+            long blockStart = Math.max(start, blockEnd - buffer.capacity());
+            buffer.clear().limit((int) (blockEnd - blockStart));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, blockStart + buffer.position()) < 0) break;
+            }
+
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return blockStart + i + 1;
+                }
+            }
+            blockEnd = blockStart;
+        }
+        return start;
+    }
+
+    private static int lastLineEnd(ByteBuffer buffer, int limit) {
+        for (int i = limit - 1; i >= 0; i--) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Reads the words of the lines held in a buffer, decompressed book content for instance.
+     * The buffer should end after a line terminator, or at the end of the book.
+     *
+     * @param buffer  the buffer, read from index 0 with absolute gets.
+     * @param limit   the number of bytes to read.
+     * @param sink    the sink receiving the words.
+     */
+    public void readWords(ByteBuffer buffer, int limit, WordSink sink) {
+        if (tokenizer != null) {
+            readNormalizedWords(buffer, limit, sink);
+            return;
+        }
+
+        int position = 0;
+        while (position < limit) {
+            int lineStart = position;
+            int length = 0;
+            int hash = Utf8WordTable.hashSeed();
+            boolean isFastPath = true;
+
+            while (position < limit) {
+                byte b = buffer.get(position);
+                if (b == '\n' || b == '\r') break;
+
+                if (b >= 0) {
+                    // ASCII fast path
+                    if (b >= 'A' && b <= 'Z') {
+                        b += 'a' - 'A';
+                    }
+                    ensureWordBufferCapacity(length + 1);
+                    wordBuffer[length++] = b;
+                    hash = Utf8WordTable.hashStep(hash, b);
+                    position += 1;
+                } else {
+                    int sequenceLength = decodedSequenceLength(buffer, position, limit);
+                    if (sequenceLength == 0) {
+                        // Malformed UTF-8, let the String decoder handle the whole line
+                        isFastPath = false;
+                        position += 1;
+                        continue;
+                    }
+
+                    int codePoint = decodeCodePoint(buffer, position, sequenceLength);
+                    position += sequenceLength;
+
+                    // These characters are the only ones lower-cased by String according to their context
+                    if (codePoint == '\u0130' || codePoint == '\u03A3') {
+                        isFastPath = false;
+                        continue;
+                    }
+
+                    ensureWordBufferCapacity(length + 4);
+                    int encodedLength = encodeCodePoint(Character.toLowerCase(codePoint), wordBuffer, length);
+                    for (int i = length; i < length + encodedLength; i++) {
+                        hash = Utf8WordTable.hashStep(hash, wordBuffer[i]);
+                    }
+                    length += encodedLength;
+                }
+            }
+
+            if (isFastPath) {
+                sink.add(wordBuffer, 0, length, hash);
+            } else {
+                byte[] line = new byte[position - lineStart];
+                buffer.get(lineStart, line);
+                sink.add(new String(line, StandardCharsets.UTF_8).toLowerCase(Locale.ROOT));
+            }
+
+            // Skip line terminator ("\r\n" being a single one)
+            if (position < limit) {
+                if (buffer.get(position) == '\r' && position + 1 < limit && buffer.get(position + 1) == '\n') {
+                    position += 1;
+                }
+                position += 1;
+            }
+        }
+    }
+
+    /**
+     * Reads lines with a normalizer other than the default one, its tokenizer getting raw line bytes.
+     */
+    private void readNormalizedWords(ByteBuffer buffer, int limit, WordSink sink) {
+        int position = 0;
+        while (position < limit) {
+            int lineStart = position;
+            while (position < limit && buffer.get(position) != '\n' && buffer.get(position) != '\r') {
+                position++;
+            }
+
+            ensureWordBufferCapacity(position - lineStart);
+            buffer.get(lineStart, wordBuffer, 0, position - lineStart);
+            tokenizer.addWords(wordBuffer, 0, position - lineStart, sink);
+
+            // Skip line terminator ("\r\n" being a single one)
+            if (position < limit) {
+                if (buffer.get(position) == '\r' && position + 1 < limit && buffer.get(position + 1) == '\n') {
+                    position += 1;
+                }
+                position += 1;
+            }
+        }
+    }
+
+    private void ensureWordBufferCapacity(int capacity) {
+        if (capacity > wordBuffer.length) {
+            wordBuffer = Arrays.copyOf(wordBuffer, Math.max(capacity, wordBuffer.length * 2));
+        }
+    }
+
+    /**
+     * Gets the length of the valid UTF-8 sequence starting at a position.
+     *
+     * @return the sequence length, 0 if the sequence is malformed.
+     */
+    private static int decodedSequenceLength(ByteBuffer buffer, int position, int limit) {
+        int leadByte = buffer.get(position) & 0xFF;
+        int sequenceLength;
+        int minimumCodePoint;
+        if ((leadByte & 0xE0) == 0xC0) {
+            sequenceLength = 2;
+            minimumCodePoint = 0x80;
+        } else if ((leadByte & 0xF0) == 0xE0) {
+            sequenceLength = 3;
+            minimumCodePoint = 0x800;
+        } else if ((leadByte & 0xF8) == 0xF0) {
+            sequenceLength = 4;
+            minimumCodePoint = 0x10000;
+        } else {
+            return 0;
+        }
+
+        if (position + sequenceLength > limit) return 0;
+        for (int i = 1; i < sequenceLength; i++) {
+            if ((buffer.get(position + i) & 0xC0) != 0x80) return 0;
+        }
+
+        // Overlong encodings, surrogates and out of range code points are malformed as well
+        int codePoint = decodeCodePoint(buffer, position, sequenceLength);
+        if (codePoint < minimumCodePoint || codePoint > Character.MAX_CODE_POINT
+                || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+            return 0;
+        }
+
+        return sequenceLength;
+    }
+
+    private static int decodeCodePoint(ByteBuffer buffer, int position, int sequenceLength) {
+        int codePoint = buffer.get(position) & (0xFF >>> (sequenceLength + 1));
+        for (int i = 1; i < sequenceLength; i++) {
+            codePoint = (codePoint << 6) | (buffer.get(position + i) & 0x3F);
+        }
+        return codePoint;
+    }
+
+    private static int encodeCodePoint(int codePoint, byte[] target, int offset) {
+        if (codePoint < 0x80) {
+            target[offset] = (byte) codePoint;
+            return 1;
+        } else if (codePoint < 0x800) {
+            target[offset] = (byte) (0xC0 | (codePoint >>> 6));
+            target[offset + 1] = (byte) (0x80 | (codePoint & 0x3F));
+            return 2;
+        } else if (codePoint < 0x10000) {
+            target[offset] = (byte) (0xE0 | (codePoint >>> 12));
+            target[offset + 1] = (byte) (0x80 | ((codePoint >>> 6) & 0x3F));
+            target[offset + 2] = (byte) (0x80 | (codePoint & 0x3F));
+            return 3;
+        } else {
+            target[offset] = (byte) (0xF0 | (codePoint >>> 18));
+            target[offset + 1] = (byte) (0x80 | ((codePoint >>> 12) & 0x3F));
+            target[offset + 2] = (byte) (0x80 | ((codePoint >>> 6) & 0x3F));
+            target[offset + 3] = (byte) (0x80 | (codePoint & 0x3F));
+            return 4;
+        }
+    }
+
+}
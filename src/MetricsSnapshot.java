@@ -0,0 +1,90 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Copy of the measures taken by {@link BookMetrics}, which can be exported as records.
+ */
+public class MetricsSnapshot {
+
+    private final List<BookLoadMetrics> bookLoads;
+    private final Map<String, LatencyHistogram> queryLatencies;
+
+    /**
+     * Constructor of a metrics snapshot.
+     *
+     * @param bookLoads      the last load measures of each book.
+     * @param queryLatencies the latency histogram of each query, which should not change anymore.
+     */
+    public MetricsSnapshot(Collection<BookLoadMetrics> bookLoads, Map<String, LatencyHistogram> queryLatencies) {
+        List<BookLoadMetrics> sortedBookLoads = new ArrayList<>(bookLoads);
+        sortedBookLoads.sort(Comparator.comparing(BookLoadMetrics::getFilePath));
+        this.bookLoads = Collections.unmodifiableList(sortedBookLoads);
+        this.queryLatencies = Collections.unmodifiableMap(new TreeMap<>(queryLatencies));
+    }
+
+    /**
+     * Gets the last load measures of each book.
+     *
+     * @return the book load measures, by book file path.
+     */
+    public List<BookLoadMetrics> getBookLoads() {
+        return bookLoads;
+    }
+
+    /**
+     * Gets the latency histogram of each query.
+     *
+     * @return the latency histograms, by query name.
+     */
+    public Map<String, LatencyHistogram> getQueryLatencies() {
+        return queryLatencies;
+    }
+
+    /**
+     * Writes the measures as records: book load records have the book file path, query latency records have the
+     * query name in the word field. Durations are in nanoseconds.
+     *
+     * @param recordWriter the record writer.
+     * @throws IOException if records cannot be written.
+     */
+    public void writeRecords(BookRecordWriter recordWriter) throws IOException {
+        for (BookLoadMetrics bookLoad : bookLoads) {
+            String book = bookLoad.getFilePath().toString();
+            recordWriter.writeRecord("load_duration_ns", book, 0, null, bookLoad.getDurationNanos());
+            recordWriter.writeRecord("load_bytes", book, 0, null, bookLoad.getByteCount());
+            recordWriter.writeRecord("load_tokens", book, 0, null, bookLoad.getTokenCount());
+            recordWriter.writeRecord("load_distinct_words", book, 0, null, bookLoad.getDistinctWordCount());
+            recordWriter.writeRecord("load_probes", book, 0, null, bookLoad.getProbeCount());
+            recordWriter.writeRecord("load_resizes", book, 0, null, bookLoad.getResizeCount());
+        }
+
+        for (Map.Entry<String, LatencyHistogram> queryLatency : queryLatencies.entrySet()) {
+            String query = queryLatency.getKey();
+            LatencyHistogram histogram = queryLatency.getValue();
+            recordWriter.writeRecord("query_count", null, 0, query, histogram.getCount());
+            recordWriter.writeRecord("query_mean_ns", null, 0, query, histogram.getMeanNanos());
+            recordWriter.writeRecord("query_p50_ns", null, 0, query, histogram.getPercentileNanos(50));
+            recordWriter.writeRecord("query_p99_ns", null, 0, query, histogram.getPercentileNanos(99));
+            recordWriter.writeRecord("query_max_ns", null, 0, query, histogram.getMaxNanos());
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (BookLoadMetrics bookLoad : bookLoads) {
+            builder.append(bookLoad).append(System.lineSeparator());
+        }
+        for (Map.Entry<String, LatencyHistogram> queryLatency : queryLatencies.entrySet()) {
+            builder.append(queryLatency.getKey()).append(" : ").append(queryLatency.getValue()).append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,119 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * MinHash signature of a book vocabulary: for each of a fixed number of hash functions, the minimum hash of the book
+ * word ids. The part of equal values in two signatures estimates the Jaccard similarity of the two vocabularies,
+ * and signatures are split in bands to find similar books without comparing all pairs of books (LSH).
+ */
+public class MinHashSignature {
+
+    /**
+     * Number of hash functions, the estimation error being about 1 / sqrt(SIZE).
+     */
+    public static final int SIZE = 128;
+
+    // Same hash functions for all signatures, so that signatures can be compared
+    private static final int[] HASH_MULTIPLIERS = new int[SIZE];
+    private static final int[] HASH_INCREMENTS = new int[SIZE];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EED);
+        for (int i = 0; i < SIZE; i++) {
+            HASH_MULTIPLIERS[i] = random.nextInt() | 1;
+            HASH_INCREMENTS[i] = random.nextInt();
+        }
+    }
+
+    private final int[] minHashes;
+
+    private MinHashSignature(int[] minHashes) {
+        this.minHashes = minHashes;
+    }
+
+    /**
+     * Computes the signature of book word counts.
+     *
+     * @param wordCounts the book word counts.
+     * @return the signature.
+     */
+    public static MinHashSignature of(WordCounts wordCounts) {
+        int[] minHashes = new int[SIZE];
+        Arrays.fill(minHashes, Integer.MAX_VALUE);
+
+        for (int index = 0; index < wordCounts.size(); index++) {
+            int id = wordCounts.getId(index);
+            for (int i = 0; i < SIZE; i++) {
+                int hash = mix(id * HASH_MULTIPLIERS[i] + HASH_INCREMENTS[i]);
+                if (hash < minHashes[i]) {
+                    minHashes[i] = hash;
+                }
+            }
+        }
+
+        return new MinHashSignature(minHashes);
+    }
+
+    /**
+     * Estimates the Jaccard similarity of two vocabularies.
+     *
+     * @param other the signature of the other vocabulary.
+     * @return the estimated Jaccard similarity, between 0 and 1.
+     */
+    public double estimateJaccard(MinHashSignature other) {
+        int equalHashCount = 0;
+        for (int i = 0; i < SIZE; i++) {
+            if (minHashes[i] == other.minHashes[i]) {
+                equalHashCount++;
+            }
+        }
+        return (double) equalHashCount / SIZE;
+    }
+
+    /**
+     * Gets the hash of a band of the signature: books sharing a band hash are candidates for similarity.
+     *
+     * @param band        the band number, from 0 to SIZE / rowsPerBand - 1.
+     * @param rowsPerBand the number of signature values in each band.
+     * @return the band hash.
+     */
+    public long getBandHash(int band, int rowsPerBand) {
+        long hash = band;
+        for (int i = band * rowsPerBand; i < (band + 1) * rowsPerBand; i++) {
+            hash = hash * 0x9E3779B97F4A7C15L + minHashes[i];
+        }
+        return hash;
+    }
+
+    /**
+     * Gets the number of signature values in each band, so that books of a given similarity are candidates
+     * with a probability of at least about 2/3, more similar books being very likely candidates.
+     *
+     * @param similarityThreshold the Jaccard similarity threshold, between 0 and 1.
+     * @return the number of values in each band, a divisor of SIZE.
+     */
+    public static int getRowsPerBand(double similarityThreshold) {
+        // With b bands of r rows, books of similarity (1/b)^(1/r) are candidates with a probability of 1 - 1/e
+        int bestRowsPerBand = 1;
+        double bestDistance = Double.MAX_VALUE;
+        for (int rowsPerBand = 1; rowsPerBand <= SIZE; rowsPerBand *= 2) {
+            double bandThreshold = Math.pow((double) rowsPerBand / SIZE, 1.0 / rowsPerBand);
+            double distance = Math.abs(bandThreshold - similarityThreshold);
+            if (bandThreshold <= similarityThreshold && distance < bestDistance) {
+                bestRowsPerBand = rowsPerBand;
+                bestDistance = distance;
+            }
+        }
+        return bestRowsPerBand;
+    }
+
+    private static int mix(int hash) {
+        // Murmur3 finalizer, a bijection spreading all input bits
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        return hash ^ (hash >>> 16);
+    }
+
+}
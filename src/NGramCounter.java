@@ -0,0 +1,113 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counter of n-grams (sequences of n consecutive words), fed with the words of a book in reading order.
+ * Each word is replaced by a dense id local to the counter, and the last n ids are packed in a long key counted in a
+ * primitive table, so no String is built for n-grams while counting. Local ids keep keys small whatever the size of
+ * the shared dictionary, which only gives ids to words once counting ends (see {@link NGramCounts}).
+ * N-grams span whole books, so books cannot be split to count n-grams in parallel: counters cannot be merged, which
+ * is why this is only a {@link WordSink} and not a {@link WordCounter}.
+ */
+public class NGramCounter implements WordSink {
+
+    /**
+     * Default maximum number of distinct n-grams counted, bounding memory to about 24 MB.
+     */
+    public static final int DEFAULT_MAX_NGRAM_COUNT = 1 << 20;
+
+    private final int n;
+    private final WordDictionary dictionary;
+    private final LongIntTable table;
+    private final Map<String, Integer> localIds = new HashMap<>();
+    private final List<String> localWords = new ArrayList<>();
+    private final int maxLocalIdCount;
+    private final int[] window;
+    private int windowSize = 0;
+    // True once a book has more distinct words than local ids can hold, n-grams of the extra words being ignored
+    private boolean isLocalIdOverflow = false;
+
+    /**
+     * Constructor of an n-gram counter with the default maximum number of n-grams.
+     *
+     * @param n          the number of words of n-grams (2 or 3).
+     * @param dictionary the dictionary giving the word ids.
+     */
+    public NGramCounter(int n, WordDictionary dictionary) {
+        this(n, dictionary, DEFAULT_MAX_NGRAM_COUNT);
+    }
+
+    /**
+     * Constructor of an n-gram counter.
+     *
+     * @param n             the number of words of n-grams (2 or 3).
+     * @param dictionary    the dictionary giving the word ids.
+     * @param maxNGramCount the maximum number of distinct n-grams counted, the least counted ones being removed
+     *                      beyond it (see {@link LongIntTable}).
+     */
+    public NGramCounter(int n, WordDictionary dictionary, int maxNGramCount) {
+        this.maxLocalIdCount = (int) Math.min(1L << NGramCounts.getBitsPerId(n), Integer.MAX_VALUE);
+        this.n = n;
+        this.dictionary = dictionary;
+        this.table = new LongIntTable(maxNGramCount);
+        this.window = new int[n];
+    }
+
+    @Override
+    public void add(String content) {
+        // Window holds the last n word ids, in reading order
+        if (windowSize == n) {
+            System.arraycopy(window, 1, window, 0, n - 1);
+            windowSize--;
+        }
+        window[windowSize++] = getLocalId(content);
+
+        if (windowSize == n && isPackable()) {
+            table.add(NGramCounts.pack(window, n), 1);
+        }
+    }
+
+    /**
+     * Gets the number of distinct n-grams counted.
+     *
+     * @return the n-gram count.
+     */
+    public int size() {
+        return table.size();
+    }
+
+    /**
+     * Gets the compact n-gram counts.
+     *
+     * @return the n-gram counts.
+     */
+    public NGramCounts getNGramCounts() {
+        return NGramCounts.of(n, table, localWords, dictionary, isLocalIdOverflow);
+    }
+
+    private int getLocalId(String content) {
+        Integer localId = localIds.get(content);
+        if (localId == null) {
+            if (localWords.size() == maxLocalIdCount) {
+                isLocalIdOverflow = true;
+                return -1;
+            }
+            localId = localWords.size();
+            localIds.put(content, localId);
+            localWords.add(content);
+        }
+        return localId;
+    }
+
+    private boolean isPackable() {
+        for (int i = 0; i < n; i++) {
+            if (window[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,309 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact and immutable n-gram counts of a book: sequences of n consecutive words packed in long keys, sorted in
+ * ascending order, with their counts in a parallel array.
+ * Keys do not pack dictionary ids, which would not fit once the shared dictionary grows, but the ranks of the word
+ * ids among the book n-gram words: ranks are dense and ordered like ids, so that keys of different books are sorted
+ * in the same order and can still be merged. Bigrams use 31 bits per rank, trigrams 21 bits per rank.
+ */
+public class NGramCounts {
+
+    private final int n;
+    private final WordDictionary dictionary;
+    // Ids of the words of the book n-grams, in ascending order: the rank of a word is its index
+    private final int[] wordIds;
+    private final long[] keys;
+    private final int[] counts;
+    private final boolean isApproximate;
+
+    private NGramCounts(int n, WordDictionary dictionary, int[] wordIds, long[] keys, int[] counts,
+                        boolean isApproximate) {
+        this.n = n;
+        this.dictionary = dictionary;
+        this.wordIds = wordIds;
+        this.keys = keys;
+        this.counts = counts;
+        this.isApproximate = isApproximate;
+    }
+
+    /**
+     * Builds the compact n-gram counts of a table.
+     *
+     * @param n             the number of words of n-grams.
+     * @param table         the table counting n-grams, packed with counter local word ids.
+     * @param localWords    the words, by counter local id.
+     * @param dictionary    the dictionary giving the word ids.
+     * @param isApproximate true if n-grams were not counted, in addition to those pruned by the table.
+     * @return the n-gram counts.
+     */
+    static NGramCounts of(int n, LongIntTable table, List<String> localWords, WordDictionary dictionary,
+                          boolean isApproximate) {
+        // Words left in the table are ranked by id, so that packed ranks are ordered like dictionary ids
+        int bitsPerId = getBitsPerId(n);
+        long idMask = (1L << bitsPerId) - 1;
+        boolean[] isUsed = new boolean[localWords.size()];
+        table.forEach((key, count) -> {
+            for (int i = 0; i < n; i++) {
+                isUsed[(int) ((key >>> (i * bitsPerId)) & idMask)] = true;
+            }
+        });
+        long[] idLocalIds = new long[localWords.size()];
+        int usedCount = 0;
+        for (int localId = 0; localId < isUsed.length; localId++) {
+            if (isUsed[localId]) {
+                idLocalIds[usedCount++] = ((long) dictionary.getId(localWords.get(localId)) << 32) | localId;
+            }
+        }
+        Arrays.sort(idLocalIds, 0, usedCount);
+        int[] wordIds = new int[usedCount];
+        int[] localIdRanks = new int[localWords.size()];
+        for (int rank = 0; rank < usedCount; rank++) {
+            wordIds[rank] = (int) (idLocalIds[rank] >>> 32);
+            localIdRanks[(int) idLocalIds[rank]] = rank;
+        }
+
+        long[] keys = new long[table.size()];
+        int[] indexes = {0};
+        table.forEach((key, count) -> {
+            long rankKey = 0;
+            for (int i = n - 1; i >= 0; i--) {
+                rankKey = (rankKey << bitsPerId) | localIdRanks[(int) ((key >>> (i * bitsPerId)) & idMask)];
+            }
+            keys[indexes[0]++] = rankKey;
+        });
+        long[] sortedKeys = keys.clone();
+        Arrays.sort(sortedKeys);
+
+        int[] counts = new int[keys.length];
+        indexes[0] = 0;
+        table.forEach((key, count) -> counts[Arrays.binarySearch(sortedKeys, keys[indexes[0]++])] = count);
+
+        return new NGramCounts(n, dictionary, wordIds, sortedKeys, counts, isApproximate || table.isPruned());
+    }
+
+    /**
+     * Packs the ids of an n-gram in a key.
+     *
+     * @param wordIds the word ids, in n-gram order.
+     * @param n       the number of words of the n-gram (2 or 3).
+     * @return the n-gram key.
+     * @throws IllegalArgumentException if a word id does not fit in the key.
+     */
+    public static long pack(int[] wordIds, int n) {
+        int bitsPerId = getBitsPerId(n);
+        long key = 0;
+        for (int i = 0; i < n; i++) {
+            if (wordIds[i] >>> bitsPerId != 0) {
+                throw new IllegalArgumentException("Identifiant de mot trop grand pour un " + n + "-gramme : " + wordIds[i]);
+            }
+            key = (key << bitsPerId) | wordIds[i];
+        }
+        return key;
+    }
+
+    /**
+     * Gets the number of bits of each word id in n-gram keys.
+     *
+     * @param n the number of words of n-grams (2 or 3).
+     * @return the number of bits per word id.
+     */
+    public static int getBitsPerId(int n) {
+        if (n < 2 || n > 3) {
+            throw new IllegalArgumentException("Seuls les bigrammes et les trigrammes sont comptés : " + n);
+        }
+        // Keys stay positive, so that they are sorted like word ids
+        return n == 2 ? 31 : 21;
+    }
+
+    /**
+     * Gets the number of words of n-grams.
+     *
+     * @return n.
+     */
+    public int getN() {
+        return n;
+    }
+
+    /**
+     * Gets the number of distinct n-grams.
+     *
+     * @return the number of n-grams.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Checks whether rare n-grams were removed while counting to bound memory, their counts being then
+     * underestimated.
+     *
+     * @return true if counts may be underestimated, false if they are exact.
+     */
+    public boolean isApproximate() {
+        return isApproximate;
+    }
+
+    /**
+     * Gets the dictionary ids of the words of an n-gram.
+     *
+     * @param index the n-gram index, n-grams being sorted by ascending key.
+     * @return the word ids, in n-gram order.
+     */
+    public int[] getWordIds(int index) {
+        int[] nGramWordIds = new int[n];
+        for (int i = 0; i < n; i++) {
+            nGramWordIds[i] = getWordId(keys[index], i);
+        }
+        return nGramWordIds;
+    }
+
+    /**
+     * Gets the count of an n-gram.
+     *
+     * @param index the n-gram index, n-grams being sorted by ascending key.
+     * @return the n-gram count.
+     */
+    public int getCount(int index) {
+        return counts[index];
+    }
+
+    /**
+     * Gets the content of an n-gram: its words separated by spaces.
+     *
+     * @param index the n-gram index, n-grams being sorted by ascending key.
+     * @return the n-gram content.
+     */
+    public String getContent(int index) {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                content.append(' ');
+            }
+            content.append(dictionary.getContent(getWordId(keys[index], i)));
+        }
+        return content.toString();
+    }
+
+    /**
+     * Gets an n-gram as a word, its content being the n-gram words separated by spaces.
+     *
+     * @param index the n-gram index, n-grams being sorted by ascending key.
+     * @return a new word object.
+     */
+    public Word getWord(int index) {
+        return new Word(getContent(index), counts[index]);
+    }
+
+    /**
+     * Finds the index of an n-gram.
+     *
+     * @param nGramWordIds the dictionary ids of the n-gram words, in n-gram order.
+     * @return the n-gram index, a negative value if the n-gram is not counted.
+     */
+    public int indexOf(int[] nGramWordIds) {
+        int[] ranks = new int[n];
+        for (int i = 0; i < n; i++) {
+            ranks[i] = Arrays.binarySearch(wordIds, nGramWordIds[i]);
+            if (ranks[i] < 0) {
+                return -1;
+            }
+        }
+        int index = Arrays.binarySearch(keys, pack(ranks, n));
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * Finds the n-grams also counted in other n-gram counts.
+     * Both are sorted by key, and keys are ordered like word ids, so finding them is linear.
+     *
+     * @param other            the other n-gram counts, with ids from the same dictionary.
+     * @param isCountedInOther filled with true for the index of each n-gram also counted in the other n-gram counts.
+     */
+    public void markCommonNGrams(NGramCounts other, boolean[] isCountedInOther) {
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            int comparison = compareWordIds(keys[i], other, other.keys[j]);
+            if (comparison < 0) {
+                i++;
+            } else if (comparison > 0) {
+                j++;
+            } else {
+                isCountedInOther[i++] = true;
+                j++;
+            }
+        }
+    }
+
+    /**
+     * Compares two n-grams regarding descending count, then content alphabetical order (as {@link WordComparator}).
+     *
+     * @param index1 n-gram 1 index
+     * @param index2 n-gram 2 index
+     * @return comparison result
+     */
+    public int compareByCount(int index1, int index2) {
+        if (counts[index1] != counts[index2]) {
+            return counts[index1] > counts[index2] ? -1 : 1;
+        }
+        return getContent(index1).compareTo(getContent(index2));
+    }
+
+    /**
+     * Gets the most counted n-grams, without sorting all of them.
+     *
+     * @param count the number of n-grams.
+     * @return the most counted n-grams, by descending count.
+     */
+    public List<Word> getMostCounted(int count) {
+        List<Word> mostCounted = new ArrayList<>();
+        for (int index : TopKSelector.select(keys.length, count, this::compareByCount)) {
+            mostCounted.add(getWord(index));
+        }
+        return mostCounted;
+    }
+
+    /**
+     * Estimates the heap size of the n-gram counts, the dictionary being shared and not counted.
+     *
+     * @return the estimated size, in bytes.
+     */
+    public long getEstimatedSize() {
+        // Object header and fields, then the word ids, keys and counts arrays with their headers
+        return 32 + (16 + 4L * wordIds.length) + (16 + 8L * keys.length) + (16 + 4L * counts.length);
+    }
+
+    /**
+     * Gets the dictionary id of a word of an n-gram.
+     *
+     * @param key      the n-gram key.
+     * @param position the word position in the n-gram.
+     * @return the word id.
+     */
+    private int getWordId(long key, int position) {
+        int bitsPerId = getBitsPerId(n);
+        return wordIds[(int) (key >>> ((n - 1 - position) * bitsPerId)) & ((1 << bitsPerId) - 1)];
+    }
+
+    /**
+     * Compares the words of an n-gram with the words of an n-gram of other n-gram counts, by word ids.
+     *
+     * @param key      the n-gram key.
+     * @param other    the other n-gram counts.
+     * @param otherKey the other n-gram key.
+     * @return the comparison result.
+     */
+    private int compareWordIds(long key, NGramCounts other, long otherKey) {
+        for (int i = 0; i < n; i++) {
+            int comparison = Integer.compare(getWordId(key, i), other.getWordId(otherKey, i));
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,51 @@
+/**
+ * Stages of the text normalization pipeline (see {@link TextNormalizer}), applied in declaration order.
+ */
+public enum NormalizationStage {
+
+    /**
+     * Splits lines into words at whitespace and punctuation, instead of reading one word per line.
+     */
+    TOKENIZATION,
+
+    /**
+     * Lower-cases words, whatever the default locale is.
+     */
+    CASE_FOLDING,
+
+    /**
+     * Composes characters (Unicode NFC), so that "é" is the same word whether it is written as one or two characters.
+     */
+    NFC,
+
+    /**
+     * Removes accents, so that "éthique" and "ethique" are the same word.
+     */
+    ACCENT_STRIPPING,
+
+    /**
+     * Removes the characters which are neither letters nor digits.
+     */
+    PUNCTUATION_FILTERING,
+
+    /**
+     * Removes digits.
+     */
+    DIGIT_FILTERING,
+
+    /**
+     * Removes French stop words ("le", "de", "et"...).
+     */
+    FRENCH_STOP_WORDS,
+
+    /**
+     * Removes English stop words ("the", "of", "and"...).
+     */
+    ENGLISH_STOP_WORDS,
+
+    /**
+     * Removes plural endings ("chevaux" becomes "cheval", "chats" becomes "chat", "studies" becomes "study").
+     */
+    LIGHT_STEMMING
+
+}
@@ -0,0 +1,265 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Open-addressing word counter stored outside of the Java heap, keyed by UTF-8 bytes.
+ * Slots (hash, key offset, key length and count) are stored in a direct buffer, and word contents in a direct buffer
+ * arena, so that counting words creates no object for the garbage collector to trace: Word objects are only created
+ * by {@link #getWords()}.
+ * The counter must be closed once its words are read, which frees its off-heap memory right away: it cannot be used
+ * afterwards.
+ */
+public class OffHeapWordTable implements WordCounter {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_ARENA_SIZE = 16 * 1024;
+
+    // Slot layout: hash, key offset + 1 (0 for an empty slot), key length, count
+    private static final int SLOT_SIZE = 16;
+    private static final int HASH_OFFSET = 0;
+    private static final int KEY_OFFSET_OFFSET = 4;
+    private static final int KEY_LENGTH_OFFSET = 8;
+    private static final int COUNT_OFFSET = 12;
+
+    // Unsafe.invokeCleaner, freeing a direct buffer without waiting for the garbage collector, null if not available
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+            unsafeField.setAccessible(true);
+            unsafe = unsafeField.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private ByteBuffer slots;
+    private ByteBuffer arena;
+    private int arenaSize = 0;
+    private int mask;
+    private int size = 0;
+
+    public OffHeapWordTable() {
+        slots = ByteBuffer.allocateDirect(INITIAL_CAPACITY * SLOT_SIZE);
+        arena = ByteBuffer.allocateDirect(INITIAL_ARENA_SIZE);
+        mask = INITIAL_CAPACITY - 1;
+    }
+
+    @Override
+    public void add(String content) {
+        add(content, 1);
+    }
+
+    @Override
+    public void add(String content, int occurrences) {
+        byte[] utf8 = content.getBytes(StandardCharsets.UTF_8);
+        add(utf8, 0, utf8.length, Utf8WordTable.hash(utf8, 0, utf8.length), occurrences);
+    }
+
+    @Override
+    public void add(byte[] utf8, int offset, int length, int hash) {
+        add(utf8, offset, length, hash, 1);
+    }
+
+    @Override
+    public void addAll(WordCounter other) {
+        if (!(other instanceof OffHeapWordTable)) {
+            WordCounter.super.addAll(other);
+            return;
+        }
+
+        OffHeapWordTable otherTable = (OffHeapWordTable) other;
+        otherTable.checkOpen();
+        byte[] key = new byte[64];
+        for (int slot = 0; slot <= otherTable.mask; slot++) {
+            int slotPosition = slot * SLOT_SIZE;
+            int keyOffset = otherTable.slots.getInt(slotPosition + KEY_OFFSET_OFFSET) - 1;
+            if (keyOffset >= 0) {
+                int keyLength = otherTable.slots.getInt(slotPosition + KEY_LENGTH_OFFSET);
+                if (keyLength > key.length) {
+                    key = new byte[keyLength];
+                }
+                otherTable.arena.get(keyOffset, key, 0, keyLength);
+                add(key, 0, keyLength, otherTable.slots.getInt(slotPosition + HASH_OFFSET),
+                        otherTable.slots.getInt(slotPosition + COUNT_OFFSET));
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Collection<Word> getWords() {
+        checkOpen();
+        List<Word> wordList = new ArrayList<>(size);
+        byte[] key = new byte[64];
+        for (int slot = 0; slot <= mask; slot++) {
+            int slotPosition = slot * SLOT_SIZE;
+            int keyOffset = slots.getInt(slotPosition + KEY_OFFSET_OFFSET) - 1;
+            if (keyOffset >= 0) {
+                int keyLength = slots.getInt(slotPosition + KEY_LENGTH_OFFSET);
+                if (keyLength > key.length) {
+                    key = new byte[keyLength];
+                }
+                arena.get(keyOffset, key, 0, keyLength);
+                wordList.add(new Word(new String(key, 0, keyLength, StandardCharsets.UTF_8),
+                        slots.getInt(slotPosition + COUNT_OFFSET)));
+            }
+        }
+        return wordList;
+    }
+
+    /**
+     * Frees the off-heap memory of the counter, which cannot be used anymore. Closing it again does nothing.
+     * If the JVM does not give access to direct buffer cleaners, memory is only freed once the garbage collector finds
+     * the buffers unreferenced.
+     */
+    @Override
+    public void close() {
+        if (slots == null) return;
+
+        free(slots);
+        free(arena);
+        slots = null;
+        arena = null;
+    }
+
+    /**
+     * Counts occurrences of a word given as UTF-8 bytes.
+     */
+    private void add(byte[] utf8, int offset, int length, int hash, int occurrences) {
+        checkOpen();
+        int slotPosition = findSlot(utf8, offset, length, hash) * SLOT_SIZE;
+        if (slots.getInt(slotPosition + KEY_OFFSET_OFFSET) != 0) {
+            slots.putInt(slotPosition + COUNT_OFFSET, slots.getInt(slotPosition + COUNT_OFFSET) + occurrences);
+            return;
+        }
+
+        int keyOffset = allocateKey(length);
+        arena.put(keyOffset, utf8, offset, length);
+        slots.putInt(slotPosition + HASH_OFFSET, hash);
+        slots.putInt(slotPosition + KEY_OFFSET_OFFSET, keyOffset + 1);
+        slots.putInt(slotPosition + KEY_LENGTH_OFFSET, length);
+        slots.putInt(slotPosition + COUNT_OFFSET, occurrences);
+        size += 1;
+
+        // Keep load factor under 1/2 so that probe sequences stay short
+        if (size * 2 > mask + 1) {
+            resize();
+        }
+    }
+
+    /**
+     * Finds the slot of a key: either the slot holding it, or the empty slot where it should be inserted.
+     */
+    private int findSlot(byte[] utf8, int offset, int length, int hash) {
+        int slot = mix(hash) & mask;
+        while (true) {
+            int slotPosition = slot * SLOT_SIZE;
+            int keyOffset = slots.getInt(slotPosition + KEY_OFFSET_OFFSET) - 1;
+            if (keyOffset < 0) {
+                return slot;
+            }
+            if (slots.getInt(slotPosition + HASH_OFFSET) == hash && slots.getInt(slotPosition + KEY_LENGTH_OFFSET) == length
+                    && keyEquals(keyOffset, utf8, offset, length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean keyEquals(int keyOffset, byte[] utf8, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (arena.get(keyOffset + i) != utf8[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reserves room for a key in the arena, growing it if needed.
+     *
+     * @param length the key length.
+     * @return the key offset in the arena.
+     */
+    private int allocateKey(int length) {
+        if (arenaSize + length > arena.capacity()) {
+            long newCapacity = Math.max((long) arena.capacity() * 2, (long) arenaSize + length);
+            if (newCapacity > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Arena de mots pleine");
+            }
+            ByteBuffer newArena = ByteBuffer.allocateDirect((int) newCapacity);
+            newArena.put(0, arena, 0, arenaSize);
+            free(arena);
+            arena = newArena;
+        }
+
+        int keyOffset = arenaSize;
+        arenaSize += length;
+        return keyOffset;
+    }
+
+    private void resize() {
+        ByteBuffer oldSlots = slots;
+        int oldCapacity = mask + 1;
+
+        slots = ByteBuffer.allocateDirect(oldCapacity * 2 * SLOT_SIZE);
+        mask = oldCapacity * 2 - 1;
+        for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+            int oldSlotPosition = oldSlot * SLOT_SIZE;
+            if (oldSlots.getInt(oldSlotPosition + KEY_OFFSET_OFFSET) != 0) {
+                int slot = mix(oldSlots.getInt(oldSlotPosition + HASH_OFFSET)) & mask;
+                while (slots.getInt(slot * SLOT_SIZE + KEY_OFFSET_OFFSET) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots.put(slot * SLOT_SIZE, oldSlots, oldSlotPosition, SLOT_SIZE);
+            }
+        }
+        free(oldSlots);
+    }
+
+    /**
+     * Frees a direct buffer of the counter, which must not be used anymore.
+     *
+     * @param buffer the direct buffer.
+     */
+    private static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) return;
+
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (IllegalAccessException | InvocationTargetException ex) {
+            // Buffer is then freed by the garbage collector
+        }
+    }
+
+    private void checkOpen() {
+        if (slots == null) {
+            throw new IllegalStateException("Le compteur de mots a été fermé");
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+}
@@ -0,0 +1,204 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Loads a single book file in parallel: the file is split in byte ranges aligned on line boundaries, each range is
+ * counted by a fork/join task in its own counter, and partial counters are merged two by two when tasks are joined.
+ */
+public class ParallelBookLoader {
+
+    private static final long DEFAULT_MINIMUM_CHUNK_SIZE = 1 << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+    private final long minimumChunkSize;
+
+    public ParallelBookLoader() {
+        this(ForkJoinPool.commonPool(), DEFAULT_MINIMUM_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructor with fork/join pool and minimum chunk size arguments.
+     *
+     * @param pool             the pool running the counting tasks.
+     * @param minimumChunkSize the minimum size in bytes of a range counted by a single task.
+     */
+    public ParallelBookLoader(ForkJoinPool pool, long minimumChunkSize) {
+        this.pool = pool;
+        this.minimumChunkSize = minimumChunkSize;
+    }
+
+    /**
+     * Counts all the words (one per line) of a book file.
+     *
+     * @param filePath           the book file path.
+     * @param wordCounterFactory the factory of the counters used by each task.
+     * @return the counter holding all the book words.
+     * @throws IOException if the book file cannot be read.
+     */
+    public WordCounter readWords(Path filePath, Supplier<WordCounter> wordCounterFactory) throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            return readWords(channel, channel.size(), TextNormalizer.DEFAULT, wordCounterFactory);
+        }
+    }
+
+    /**
+     * Counts the words of the beginning of a book file.
+     *
+     * @param filePath           the book file path.
+     * @param fileSize           the number of bytes to read from the book file.
+     * @param textNormalizer     the normalizer turning lines into words.
+     * @param wordCounterFactory the factory of the counters used by each task.
+     * @return the counter holding the words read.
+     * @throws IOException if the book file cannot be read.
+     */
+    public WordCounter readWords(Path filePath, long fileSize, TextNormalizer textNormalizer,
+                                 Supplier<WordCounter> wordCounterFactory) throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            return readWords(channel, fileSize, textNormalizer, wordCounterFactory);
+        }
+    }
+
+    private WordCounter readWords(FileChannel channel, long fileSize, TextNormalizer textNormalizer,
+                                  Supplier<WordCounter> wordCounterFactory) throws IOException {
+        List<Long> boundaries = splitOnLines(channel, fileSize);
+
+        try {
+            return pool.invoke(new CountingTask(channel, boundaries, 0, boundaries.size() - 1, textNormalizer,
+                    wordCounterFactory));
+        } catch (UncheckedIOException uncheckedIoEx) {
+            throw uncheckedIoEx.getCause();
+        }
+    }
+
+    /**
+     * Splits a file in ranges, each one starting right after a line feed.
+     *
+     * @return the ranges boundaries, from 0 to file size.
+     */
+    private List<Long> splitOnLines(FileChannel channel, long fileSize) throws IOException {
+        long chunkSize = Math.max(minimumChunkSize, fileSize / ((long) pool.getParallelism() * CHUNKS_PER_THREAD));
+
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = chunkSize;
+        while (position < fileSize) {
+            long lineStart = nextLineStart(channel, position, fileSize, buffer);
+            if (lineStart >= fileSize) break;
+
+            boundaries.add(lineStart);
+            position = lineStart + chunkSize;
+        }
+        boundaries.add(fileSize);
+
+        return boundaries;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long fileSize, ByteBuffer buffer) throws IOException {
+        while (true) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), fileSize - position));
+            int readBytes = buffer.limit() > 0 ? channel.read(buffer, position) : -1;
+            if (readBytes <= 0) {
+                return fileSize;
+            }
+
+            for (int i = 0; i < readBytes; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += readBytes;
+        }
+    }
+
+    private static class CountingTask extends RecursiveTask<WordCounter> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final List<Long> boundaries;
+        private final int firstRange;
+        private final int lastRange;
+        private final TextNormalizer textNormalizer;
+        private final Supplier<WordCounter> wordCounterFactory;
+
+        private CountingTask(FileChannel channel, List<Long> boundaries, int firstRange, int lastRange,
+                             TextNormalizer textNormalizer, Supplier<WordCounter> wordCounterFactory) {
+            this.channel = channel;
+            this.boundaries = boundaries;
+            this.firstRange = firstRange;
+            this.lastRange = lastRange;
+            this.textNormalizer = textNormalizer;
+            this.wordCounterFactory = wordCounterFactory;
+        }
+
+        @Override
+        protected WordCounter compute() {
+            if (lastRange - firstRange == 1) {
+                WordCounter counter = wordCounterFactory.get();
+                boolean isRead = false;
+                try {
+                    new MappedBookReader(textNormalizer).readWords(channel, boundaries.get(firstRange), boundaries.get(lastRange), counter);
+                    isRead = true;
+                    return counter;
+                } catch (IOException ioEx) {
+                    throw new UncheckedIOException(ioEx);
+                } finally {
+                    if (!isRead) {
+                        counter.close();
+                    }
+                }
+            }
+
+            int middleRange = (firstRange + lastRange) >>> 1;
+            CountingTask firstHalf = new CountingTask(channel, boundaries, firstRange, middleRange, textNormalizer, wordCounterFactory);
+            CountingTask secondHalf = new CountingTask(channel, boundaries, middleRange, lastRange, textNormalizer, wordCounterFactory);
+            firstHalf.fork();
+            WordCounter secondCounter;
+            try {
+                secondCounter = secondHalf.compute();
+            } catch (RuntimeException | Error ex) {
+                // Forked half is still joined, so that its counter is closed too
+                try {
+                    firstHalf.join().close();
+                } catch (RuntimeException | Error firstHalfEx) {
+                    ex.addSuppressed(firstHalfEx);
+                }
+                throw ex;
+            }
+            WordCounter firstCounter;
+            try {
+                firstCounter = firstHalf.join();
+            } catch (RuntimeException | Error ex) {
+                secondCounter.close();
+                throw ex;
+            }
+
+            // Merge the smallest counter in the largest one
+            WordCounter largestCounter = firstCounter.size() >= secondCounter.size() ? firstCounter : secondCounter;
+            WordCounter smallestCounter = largestCounter == firstCounter ? secondCounter : firstCounter;
+            try {
+                largestCounter.addAll(smallestCounter);
+            } catch (RuntimeException | Error ex) {
+                largestCounter.close();
+                throw ex;
+            } finally {
+                smallestCounter.close();
+            }
+            return largestCounter;
+        }
+
+    }
+
+}
@@ -0,0 +1,80 @@
+import java.util.List;
+
+/**
+ * Exact vocabulary similarity of all pairs of books: numbers of common words, from which Jaccard and overlap
+ * coefficients are computed.
+ */
+public class SimilarityMatrix {
+
+    private final List<BookFile> bookFiles;
+    private final int[] wordCounts;
+    private final int[] commonWordCounts;
+
+    /**
+     * Constructor of a similarity matrix.
+     *
+     * @param bookFiles        the book files.
+     * @param wordCounts       the number of distinct words of each book.
+     * @param commonWordCounts the number of common words of each pair of books, row by row (n x n values).
+     */
+    public SimilarityMatrix(List<BookFile> bookFiles, int[] wordCounts, int[] commonWordCounts) {
+        this.bookFiles = List.copyOf(bookFiles);
+        this.wordCounts = wordCounts;
+        this.commonWordCounts = commonWordCounts;
+    }
+
+    /**
+     * Gets the book files, matrix rows and columns being in the same order.
+     *
+     * @return the book files.
+     */
+    public List<BookFile> getBookFiles() {
+        return bookFiles;
+    }
+
+    /**
+     * Gets the similarity of two books.
+     *
+     * @param bookIndex1 the first book index.
+     * @param bookIndex2 the second book index.
+     * @return the book similarity.
+     */
+    public BookSimilarity getSimilarity(int bookIndex1, int bookIndex2) {
+        return new BookSimilarity(bookFiles.get(bookIndex1), bookFiles.get(bookIndex2), getCommonWordCount(bookIndex1, bookIndex2),
+                wordCounts[bookIndex1], wordCounts[bookIndex2], false);
+    }
+
+    /**
+     * Gets the number of words present in two books.
+     *
+     * @param bookIndex1 the first book index.
+     * @param bookIndex2 the second book index.
+     * @return the number of common words.
+     */
+    public int getCommonWordCount(int bookIndex1, int bookIndex2) {
+        return commonWordCounts[bookIndex1 * bookFiles.size() + bookIndex2];
+    }
+
+    /**
+     * Gets the Jaccard similarity of two books.
+     *
+     * @param bookIndex1 the first book index.
+     * @param bookIndex2 the second book index.
+     * @return the Jaccard similarity, between 0 and 1.
+     */
+    public double getJaccard(int bookIndex1, int bookIndex2) {
+        return getSimilarity(bookIndex1, bookIndex2).getJaccard();
+    }
+
+    /**
+     * Gets the overlap coefficient of two books.
+     *
+     * @param bookIndex1 the first book index.
+     * @param bookIndex2 the second book index.
+     * @return the overlap coefficient, between 0 and 1.
+     */
+    public double getOverlap(int bookIndex1, int bookIndex2) {
+        return getSimilarity(bookIndex1, bookIndex2).getOverlap();
+    }
+
+}
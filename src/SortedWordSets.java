@@ -0,0 +1,92 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Set operations on book vocabularies, without vocabulary index: word counts are sorted by word id, so that they are
+ * compared by linear merges (or galloping searches, see {@link WordCounts#markCommonWords(WordCounts, BitSet)}).
+ * Operations comparing a reference book with several books merge each book in parallel, they only read immutable
+ * word counts and can be called from any thread.
+ */
+public final class SortedWordSets {
+
+    private SortedWordSets() {
+    }
+
+    /**
+     * Gets the reference words present in at least one of the other books.
+     * The reference words only present in the reference book are the ones not set.
+     *
+     * @param reference the reference book word counts.
+     * @param others    the word counts of the other books.
+     * @return the indexes of the reference words present in another book.
+     */
+    public static BitSet getWordsInOtherBooks(WordCounts reference, List<WordCounts> others) {
+        return others.parallelStream()
+                .map(other -> {
+                    BitSet commonWords = new BitSet(reference.size());
+                    reference.markCommonWords(other, commonWords);
+                    return commonWords;
+                })
+                .reduce(new BitSet(), (commonWords1, commonWords2) -> {
+                    BitSet commonWords = (BitSet) commonWords1.clone();
+                    commonWords.or(commonWords2);
+                    return commonWords;
+                });
+    }
+
+    /**
+     * Counts the reference words present in each of the other books.
+     *
+     * @param reference the reference book word counts.
+     * @param others    the word counts of the other books.
+     * @return the number of common words of each other book, in the same order.
+     */
+    public static int[] countCommonWords(WordCounts reference, List<WordCounts> others) {
+        return IntStream.range(0, others.size()).parallel()
+                .map(i -> reference.countCommonWords(others.get(i)))
+                .toArray();
+    }
+
+    /**
+     * Gets the words present in at least a number of books, by a k-way merge of the books word ids.
+     *
+     * @param books     the books word counts.
+     * @param bookCount the minimum number of books.
+     * @return the word ids, in ascending order.
+     */
+    public static List<Integer> getWordsInAtLeast(List<WordCounts> books, int bookCount) {
+        // Each cursor is a book index and the index of its next word, cursors being ordered by word id
+        PriorityQueue<int[]> cursors = new PriorityQueue<>(Math.max(books.size(), 1),
+                (cursor1, cursor2) -> Integer.compare(getId(books, cursor1), getId(books, cursor2)));
+        for (int i = 0; i < books.size(); i++) {
+            if (books.get(i).size() > 0) {
+                cursors.add(new int[]{i, 0});
+            }
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        while (!cursors.isEmpty()) {
+            int id = getId(books, cursors.peek());
+            int idBookCount = 0;
+            while (!cursors.isEmpty() && getId(books, cursors.peek()) == id) {
+                int[] cursor = cursors.poll();
+                idBookCount++;
+                if (++cursor[1] < books.get(cursor[0]).size()) {
+                    cursors.add(cursor);
+                }
+            }
+            if (idBookCount >= bookCount) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private static int getId(List<WordCounts> books, int[] cursor) {
+        return books.get(cursor[0]).getId(cursor[1]);
+    }
+
+}
@@ -0,0 +1,238 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Streaming heavy hitters counter (Space-Saving algorithm).
+ * At most capacity words are monitored: when a new word comes and the counter is full, it replaces the word with the
+ * smallest count and inherits this count as its error. Any word count is then overestimated by at most the smallest
+ * monitored count, which is itself at most the number of counted tokens divided by the capacity.
+ * <p>
+ * Monitored words are found by their UTF-8 bytes in an open-addressing table, so that counting a word read as bytes
+ * allocates nothing: word contents are only decoded when words are returned.
+ */
+public class SpaceSavingCounter implements WordCounter {
+
+    private static final Comparator<Counter> COUNTER_COMPARATOR =
+            Comparator.comparingInt((Counter counter) -> counter.count).reversed()
+                    .thenComparing(Counter::getContent);
+
+    private final int capacity;
+    // Monitored words by hash, load factor being kept under 1/2 since the number of words never exceeds capacity
+    private final Counter[] slots;
+    private final int mask;
+    private final Counter[] heap;
+    private int heapSize = 0;
+
+    /**
+     * Constructor with capacity argument.
+     *
+     * @param capacity the maximum number of monitored words.
+     */
+    public SpaceSavingCounter(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.slots = new Counter[Integer.highestOneBit(Math.max(capacity, 2) - 1) << 2];
+        this.mask = slots.length - 1;
+        this.heap = new Counter[capacity];
+    }
+
+    @Override
+    public void add(String content) {
+        add(content, 1);
+    }
+
+    @Override
+    public void add(String content, int occurrences) {
+        byte[] utf8 = content.getBytes(StandardCharsets.UTF_8);
+        Counter counter = add(utf8, 0, utf8.length, Utf8WordTable.hash(utf8, 0, utf8.length), occurrences);
+        if (counter.content == null) {
+            counter.content = content;
+        }
+    }
+
+    @Override
+    public void add(byte[] utf8, int offset, int length, int hash) {
+        add(utf8, offset, length, hash, 1);
+    }
+
+    private Counter add(byte[] utf8, int offset, int length, int hash, int occurrences) {
+        int slotIndex = findSlot(utf8, offset, length, hash);
+        Counter counter = slots[slotIndex];
+
+        if (counter != null) {
+            counter.count += occurrences;
+            siftDown(counter.heapIndex);
+        } else if (heapSize < capacity) {
+            counter = new Counter();
+            counter.setKey(utf8, offset, length, hash);
+            counter.count = occurrences;
+            counter.heapIndex = heapSize;
+            heap[heapSize++] = counter;
+            placeInSlot(counter, slotIndex);
+            siftUp(counter.heapIndex);
+        } else {
+            // Counter is full: the least counted word is replaced, its count becoming the new word error
+            counter = heap[0];
+            removeFromSlots(counter.slotIndex);
+            counter.setKey(utf8, offset, length, hash);
+            counter.error = counter.count;
+            counter.count += occurrences;
+            // Removal may have emptied a slot earlier in the probe sequence of the new word
+            placeInSlot(counter, findSlot(utf8, offset, length, hash));
+            siftDown(0);
+        }
+        return counter;
+    }
+
+    @Override
+    public int size() {
+        return heapSize;
+    }
+
+    @Override
+    public Collection<Word> getWords() {
+        List<Word> words = new ArrayList<>(heapSize);
+        for (int i = 0; i < heapSize; i++) {
+            words.add(new Word(heap[i].getContent(), heap[i].count));
+        }
+        return words;
+    }
+
+    /**
+     * Gets the maximum overestimation of any word count, monitored or not.
+     *
+     * @return the global error bound.
+     */
+    public int getMaximumError() {
+        return heapSize < capacity ? 0 : heap[0].count;
+    }
+
+    /**
+     * Gets the approximate most counted words, with their error bounds.
+     *
+     * @param count the number of heavy hitters to return.
+     * @return the heavy hitters, by descending estimated count.
+     */
+    public List<HeavyHitter> getHeavyHitters(int count) {
+        List<Counter> topCounters = TopKSelector.select(Arrays.asList(heap).subList(0, heapSize), count, COUNTER_COMPARATOR);
+
+        List<HeavyHitter> heavyHitters = new ArrayList<>(topCounters.size());
+        for (Counter counter : topCounters) {
+            heavyHitters.add(new HeavyHitter(counter.getContent(), counter.count, counter.error));
+        }
+
+        return heavyHitters;
+    }
+
+    /**
+     * Finds the slot of a word: either the slot holding it, or the empty slot where it should be placed.
+     */
+    private int findSlot(byte[] utf8, int offset, int length, int hash) {
+        int index = mix(hash) & mask;
+        Counter counter;
+        while ((counter = slots[index]) != null) {
+            if (counter.hash == hash
+                    && Arrays.equals(counter.key, 0, counter.keyLength, utf8, offset, offset + length)) {
+                break;
+            }
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    /**
+     * Empties a slot, moving back the following words of its probe sequence so that they are still found.
+     */
+    private void removeFromSlots(int index) {
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (slots[next] != null) {
+            int home = mix(slots[next].hash) & mask;
+            // Word can fill the hole if the hole is between its home slot and its current slot
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                placeInSlot(slots[next], hole);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        slots[hole] = null;
+    }
+
+    private void placeInSlot(Counter counter, int index) {
+        slots[index] = counter;
+        counter.slotIndex = index;
+    }
+
+    private void siftUp(int index) {
+        Counter counter = heap[index];
+        while (index > 0) {
+            int parentIndex = (index - 1) >>> 1;
+            Counter parent = heap[parentIndex];
+            if (parent.count <= counter.count) break;
+            place(parent, index);
+            index = parentIndex;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(int index) {
+        Counter counter = heap[index];
+        int half = heapSize >>> 1;
+        while (index < half) {
+            int childIndex = 2 * index + 1;
+            int rightIndex = childIndex + 1;
+            if (rightIndex < heapSize && heap[rightIndex].count < heap[childIndex].count) {
+                childIndex = rightIndex;
+            }
+            if (counter.count <= heap[childIndex].count) break;
+            place(heap[childIndex], index);
+            index = childIndex;
+        }
+        place(counter, index);
+    }
+
+    private void place(Counter counter, int index) {
+        heap[index] = counter;
+        counter.heapIndex = index;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static class Counter {
+        private byte[] key = new byte[0];
+        private int keyLength;
+        private int hash;
+        // Decoded from the key when first needed
+        private String content;
+        private int count;
+        private int error;
+        private int heapIndex;
+        private int slotIndex;
+
+        private void setKey(byte[] utf8, int offset, int length, int hash) {
+            if (key.length < length) {
+                key = new byte[length];
+            }
+            System.arraycopy(utf8, offset, key, 0, length);
+            keyLength = length;
+            this.hash = hash;
+            content = null;
+        }
+
+        private String getContent() {
+            if (content == null) {
+                content = new String(key, 0, keyLength, StandardCharsets.UTF_8);
+            }
+            return content;
+        }
+    }
+
+}
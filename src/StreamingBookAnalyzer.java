@@ -0,0 +1,340 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Analyzes a text stream (standard input, pipe, gzip stream...) as it is read, in bounded memory: the stream is never
+ * stored, words are counted by a Space-Saving counter monitoring a fixed number of words (see
+ * {@link SpaceSavingCounter}) and distinct words are estimated by a HyperLogLog (see {@link HyperLogLog}).
+ * <p>
+ * Snapshots are published periodically, after a number of words or a delay, and at the end of the stream: to the
+ * snapshot listeners, and to the streamed book (see {@link #getBookFile()}), which can be added to a
+ * {@link BookFileList} to compare the stream with books. The streamed book only holds the monitored words, with
+ * their estimated counts.
+ * <p>
+ * Monitored words change as the stream is read, and the shared dictionary never forgets a word: a stream only adds
+ * as many new words to it as it monitors, the most counted ones first. Monitored words which are not in the
+ * dictionary once this budget is spent are left out of the streamed book.
+ */
+public class StreamingBookAnalyzer {
+
+    /**
+     * Default number of monitored words.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final int MAX_LINE_LENGTH = 1 << 16;
+    private static final int DEFAULT_TOP_COUNT = 50;
+    private static final long DEFAULT_SNAPSHOT_WORD_INTERVAL = 100_000;
+    private static final long DEFAULT_SNAPSHOT_MILLIS_INTERVAL = 1000;
+
+    private final BookFile bookFile;
+    private final int capacity;
+    private final List<Consumer<StreamingSnapshot>> snapshotListeners = new CopyOnWriteArrayList<>();
+    private TextNormalizer textNormalizer = TextNormalizer.DEFAULT;
+    private int topCount = DEFAULT_TOP_COUNT;
+    private long snapshotWordInterval = DEFAULT_SNAPSHOT_WORD_INTERVAL;
+    private long snapshotMillisInterval = DEFAULT_SNAPSHOT_MILLIS_INTERVAL;
+    private volatile StreamingSnapshot latestSnapshot;
+
+    /**
+     * Constructor of a stream analyzer.
+     *
+     * @param name     the stream name, used as path of the streamed book.
+     * @param capacity the number of monitored words, the larger the more accurate.
+     */
+    public StreamingBookAnalyzer(String name, int capacity) {
+        this.bookFile = BookFile.ofStream(name);
+        this.capacity = capacity;
+        this.latestSnapshot = new StreamingSnapshot(0, 0, 0, 0, List.of(), false);
+    }
+
+    /**
+     * Opens an input stream, uncompressing it if it is gzip compressed.
+     *
+     * @param input the raw input stream.
+     * @return the text input stream.
+     * @throws IOException if the input stream cannot be read.
+     */
+    public static InputStream openInput(InputStream input) throws IOException {
+        BufferedInputStream bufferedInput = new BufferedInputStream(input, READ_BUFFER_SIZE);
+        bufferedInput.mark(2);
+        int firstByte = bufferedInput.read();
+        int secondByte = bufferedInput.read();
+        bufferedInput.reset();
+
+        if (firstByte == 0x1F && secondByte == 0x8B) {
+            return new GZIPInputStream(bufferedInput, READ_BUFFER_SIZE);
+        }
+        return bufferedInput;
+    }
+
+    /**
+     * Sets the normalizer turning the stream lines into words. It should be set before the stream is analyzed.
+     *
+     * @param textNormalizer the text normalizer.
+     */
+    public void setTextNormalizer(TextNormalizer textNormalizer) {
+        this.textNormalizer = textNormalizer;
+    }
+
+    /**
+     * Sets the number of most used words of snapshots.
+     *
+     * @param topCount the number of most used words.
+     */
+    public void setTopCount(int topCount) {
+        this.topCount = topCount;
+    }
+
+    /**
+     * Sets how often snapshots are published while the stream is read.
+     *
+     * @param wordInterval   the number of words read between snapshots.
+     * @param millisInterval the delay between snapshots, in milliseconds, for streams which arrive slowly.
+     */
+    public void setSnapshotInterval(long wordInterval, long millisInterval) {
+        this.snapshotWordInterval = wordInterval;
+        this.snapshotMillisInterval = millisInterval;
+    }
+
+    /**
+     * Adds a listener called with each published snapshot, on the thread analyzing the stream.
+     *
+     * @param snapshotListener the snapshot listener.
+     */
+    public void addSnapshotListener(Consumer<StreamingSnapshot> snapshotListener) {
+        snapshotListeners.add(snapshotListener);
+    }
+
+    /**
+     * Gets the streamed book, whose snapshot is replaced with each published snapshot.
+     *
+     * @return the streamed book.
+     */
+    public BookFile getBookFile() {
+        return bookFile;
+    }
+
+    /**
+     * Gets the latest published snapshot.
+     * This method can be called from any thread while the stream is analyzed.
+     *
+     * @return the latest snapshot.
+     */
+    public StreamingSnapshot getLatestSnapshot() {
+        return latestSnapshot;
+    }
+
+    /**
+     * Analyzes a text stream until its end.
+     *
+     * @param input the text stream (see {@link #openInput(InputStream)} for compressed streams).
+     * @return the last snapshot.
+     * @throws IOException if the stream cannot be read.
+     */
+    public StreamingSnapshot analyze(InputStream input) throws IOException {
+        return analyze(Channels.newChannel(input));
+    }
+
+    /**
+     * Analyzes a text channel until its end.
+     * Lines are split like {@link java.io.BufferedReader#readLine()} does ("\n", "\r" or "\r\n"). Longer lines than
+     * the line buffer are counted in parts, cut between words when possible, so that a stream without line
+     * terminators is still read in bounded memory.
+     *
+     * @param channel the text channel.
+     * @return the last snapshot.
+     * @throws IOException if the channel cannot be read.
+     */
+    public StreamingSnapshot analyze(ReadableByteChannel channel) throws IOException {
+        StreamCounter streamCounter = new StreamCounter(new SpaceSavingCounter(capacity), new HyperLogLog());
+        TextNormalizer.Tokenizer tokenizer = textNormalizer.newTokenizer();
+        ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        byte[] line = new byte[256];
+        int lineLength = 0;
+        boolean isAfterCarriageReturn = false;
+        long byteCount = 0;
+        long nextSnapshotWordCount = snapshotWordInterval;
+        long nextSnapshotTime = System.currentTimeMillis() + snapshotMillisInterval;
+
+        while (channel.read(readBuffer.clear()) >= 0) {
+            byte[] bytes = readBuffer.array();
+            for (int i = 0; i < readBuffer.position(); i++) {
+                byte b = bytes[i];
+                if (b == '\n' && isAfterCarriageReturn) {
+                    // Second byte of a "\r\n" line terminator
+                    isAfterCarriageReturn = false;
+                } else if (b == '\n' || b == '\r') {
+                    tokenizer.addWords(line, 0, lineLength, streamCounter);
+                    lineLength = 0;
+                    isAfterCarriageReturn = b == '\r';
+                } else {
+                    if (lineLength == MAX_LINE_LENGTH) {
+                        lineLength = addLineStartWords(tokenizer, line, lineLength, streamCounter);
+                    } else if (lineLength == line.length) {
+                        line = Arrays.copyOf(line, line.length * 2);
+                    }
+                    line[lineLength++] = b;
+                    isAfterCarriageReturn = false;
+                }
+            }
+            byteCount += readBuffer.position();
+
+            if (streamCounter.wordCount >= nextSnapshotWordCount || System.currentTimeMillis() >= nextSnapshotTime) {
+                publishSnapshot(streamCounter, byteCount, false);
+                nextSnapshotWordCount = streamCounter.wordCount + snapshotWordInterval;
+                nextSnapshotTime = System.currentTimeMillis() + snapshotMillisInterval;
+            }
+        }
+
+        if (lineLength > 0) {
+            tokenizer.addWords(line, 0, lineLength, streamCounter);
+        }
+        publishSnapshot(streamCounter, byteCount, true);
+        return latestSnapshot;
+    }
+
+    /**
+     * Counts the words at the start of a full line buffer, and moves the rest of the line to the buffer start.
+     * Line is cut after its last ASCII whitespace, or before its last character when this would keep more than half
+     * of the buffer, the word being then split, so that each cut frees at least half of the buffer.
+     *
+     * @param tokenizer  the tokenizer.
+     * @param line       the line buffer.
+     * @param lineLength the line length, the buffer length.
+     * @param sink       the sink receiving the words.
+     * @return the length of the rest of the line.
+     */
+    private static int addLineStartWords(TextNormalizer.Tokenizer tokenizer, byte[] line, int lineLength,
+                                         WordSink sink) {
+        int cutLength = lineLength;
+        while (cutLength > 0 && (line[cutLength - 1] < 0 || line[cutLength - 1] > ' ')) {
+            cutLength--;
+        }
+        if (cutLength < lineLength / 2) {
+            // Last character may be incomplete, its UTF-8 bytes are kept together
+            cutLength = lineLength - 1;
+            while (cutLength > 0 && (line[cutLength] & 0xC0) == 0x80) {
+                cutLength--;
+            }
+            if (cutLength == 0) {
+                cutLength = lineLength;
+            }
+        }
+
+        tokenizer.addWords(line, 0, cutLength, sink);
+        System.arraycopy(line, cutLength, line, 0, lineLength - cutLength);
+        return lineLength - cutLength;
+    }
+
+    private void publishSnapshot(StreamCounter streamCounter, long byteCount, boolean isEndOfStream) {
+        bookFile.publishSnapshot(getMonitoredWordCounts(streamCounter), byteCount);
+
+        StreamingSnapshot snapshot = new StreamingSnapshot(bookFile.getSnapshot().getVersion(), byteCount,
+                streamCounter.wordCount, streamCounter.distinctWords.estimate(),
+                streamCounter.spaceSavingCounter.getHeavyHitters(topCount), isEndOfStream);
+        latestSnapshot = snapshot;
+        for (Consumer<StreamingSnapshot> snapshotListener : snapshotListeners) {
+            snapshotListener.accept(snapshot);
+        }
+    }
+
+    /**
+     * Gets the counts of the monitored words, only adding new words to the shared dictionary while the stream budget
+     * of new words is not spent.
+     *
+     * @param streamCounter the stream counter.
+     * @return the word counts.
+     */
+    private WordCounts getMonitoredWordCounts(StreamCounter streamCounter) {
+        WordDictionary dictionary = WordDictionary.getSharedDictionary();
+        Collection<Word> monitoredWords = streamCounter.spaceSavingCounter.getWords();
+        int[] ids = new int[monitoredWords.size()];
+        int[] counts = new int[monitoredWords.size()];
+        int size = 0;
+        List<Word> newWords = new ArrayList<>();
+        for (Word word : monitoredWords) {
+            int id = dictionary.findId(word.getContent());
+            if (id >= 0) {
+                ids[size] = id;
+                counts[size++] = word.getCount();
+            } else {
+                newWords.add(word);
+            }
+        }
+
+        int newWordBudget = capacity - streamCounter.newWordCount;
+        if (newWords.size() > newWordBudget) {
+            newWords = TopKSelector.select(newWords, newWordBudget, new WordComparator());
+        }
+        for (Word word : newWords) {
+            ids[size] = dictionary.getId(word.getContent());
+            counts[size++] = word.getCount();
+        }
+        streamCounter.newWordCount += newWords.size();
+
+        return WordCounts.of(Arrays.copyOf(ids, size), Arrays.copyOf(counts, size), dictionary);
+    }
+
+    /**
+     * Counts the words of the stream in both the Space-Saving counter and the distinct words estimator.
+     */
+    private static class StreamCounter implements WordCounter {
+
+        private final SpaceSavingCounter spaceSavingCounter;
+        private final HyperLogLog distinctWords;
+        private long wordCount = 0;
+        // Number of words of the stream added to the shared dictionary
+        private int newWordCount = 0;
+
+        private StreamCounter(SpaceSavingCounter spaceSavingCounter, HyperLogLog distinctWords) {
+            this.spaceSavingCounter = spaceSavingCounter;
+            this.distinctWords = distinctWords;
+        }
+
+        @Override
+        public void add(String content) {
+            add(content, 1);
+        }
+
+        @Override
+        public void add(String content, int occurrences) {
+            byte[] utf8 = content.getBytes(StandardCharsets.UTF_8);
+            distinctWords.addHash(Utf8WordTable.hash(utf8, 0, utf8.length));
+            spaceSavingCounter.add(content, occurrences);
+            wordCount += occurrences;
+        }
+
+        @Override
+        public void add(byte[] utf8, int offset, int length, int hash) {
+            distinctWords.addHash(hash);
+            spaceSavingCounter.add(utf8, offset, length, hash);
+            wordCount++;
+        }
+
+        @Override
+        public int size() {
+            return spaceSavingCounter.size();
+        }
+
+        @Override
+        public Collection<Word> getWords() {
+            return spaceSavingCounter.getWords();
+        }
+
+    }
+
+}
@@ -0,0 +1,85 @@
+import java.util.List;
+
+/**
+ * Immutable statistics of a stream at some point of its analysis (see {@link StreamingBookAnalyzer}).
+ * Counts are approximate once the stream has more distinct words than the analyzer monitors.
+ */
+public class StreamingSnapshot {
+
+    private final long version;
+    private final long byteCount;
+    private final long wordCount;
+    private final long distinctWordCount;
+    private final List<HeavyHitter> mostUsedWords;
+    private final boolean isEndOfStream;
+
+    public StreamingSnapshot(long version, long byteCount, long wordCount, long distinctWordCount,
+                             List<HeavyHitter> mostUsedWords, boolean isEndOfStream) {
+        this.version = version;
+        this.byteCount = byteCount;
+        this.wordCount = wordCount;
+        this.distinctWordCount = distinctWordCount;
+        this.mostUsedWords = List.copyOf(mostUsedWords);
+        this.isEndOfStream = isEndOfStream;
+    }
+
+    /**
+     * Gets the snapshot version, incremented with each snapshot of the stream.
+     *
+     * @return the snapshot version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the number of bytes read from the stream.
+     *
+     * @return the number of bytes.
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Gets the number of words read from the stream, distinct or not.
+     *
+     * @return the number of words.
+     */
+    public long getWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * Gets the estimated number of distinct words read from the stream (see {@link HyperLogLog}).
+     *
+     * @return the estimated number of distinct words.
+     */
+    public long getDistinctWordCount() {
+        return distinctWordCount;
+    }
+
+    /**
+     * Gets the approximate most used words of the stream, with their count error bounds.
+     *
+     * @return the most used words, by descending estimated count.
+     */
+    public List<HeavyHitter> getMostUsedWords() {
+        return mostUsedWords;
+    }
+
+    /**
+     * Checks whether the whole stream was read.
+     *
+     * @return true for the last snapshot of the stream, false otherwise.
+     */
+    public boolean isEndOfStream() {
+        return isEndOfStream;
+    }
+
+    @Override
+    public String toString() {
+        return "Instantané " + version + " : " + wordCount + " mots lus, environ " + distinctWordCount + " mots distincts";
+    }
+
+}
@@ -0,0 +1,471 @@
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Configurable text normalization pipeline, turning the lines of a book file into the counted words.
+ * The default normalizer reads one word per line and only lower-cases it, the way books have always been read; the
+ * other stages (see {@link NormalizationStage}) are enabled on demand.
+ * A normalizer is immutable and thread-safe, lines are normalized by its tokenizers (see {@link #newTokenizer()}).
+ */
+public final class TextNormalizer {
+
+    /**
+     * Default normalizer: one word per line, lower-cased.
+     */
+    public static final TextNormalizer DEFAULT = new TextNormalizer(EnumSet.of(NormalizationStage.CASE_FOLDING));
+
+    private static final String[] FRENCH_STOP_WORDS = {
+            "a", "à", "ai", "au", "aux", "avec", "c", "ce", "ces", "cet", "cette", "d", "dans", "de", "des", "du",
+            "elle", "elles", "en", "est", "et", "été", "être", "eu", "il", "ils", "j", "je", "l", "la", "le", "les",
+            "leur", "leurs", "lui", "m", "ma", "mais", "me", "même", "mes", "moi", "mon", "n", "ne", "ni", "nos",
+            "notre", "nous", "on", "ont", "ou", "où", "par", "pas", "pour", "qu", "que", "qui", "s", "sa", "sans",
+            "se", "ses", "si", "son", "sont", "sur", "t", "ta", "te", "tes", "toi", "ton", "tu", "un", "une", "vos",
+            "votre", "vous", "y"
+    };
+
+    private static final String[] ENGLISH_STOP_WORDS = {
+            "a", "an", "and", "are", "as", "at", "be", "been", "but", "by", "do", "does", "for", "from", "had", "has",
+            "have", "he", "her", "him", "his", "i", "if", "in", "into", "is", "it", "its", "me", "my", "no", "not",
+            "of", "on", "or", "our", "she", "so", "such", "than", "that", "the", "their", "them", "then", "there",
+            "these", "they", "this", "those", "to", "us", "was", "we", "were", "what", "when", "which", "who", "will",
+            "with", "would", "you", "your"
+    };
+
+    private final Set<NormalizationStage> stages;
+    private final boolean isTokenizing;
+    private final boolean isCaseFolding;
+    private final boolean isFilteringPunctuation;
+    private final boolean isFilteringDigits;
+    private final boolean isStemming;
+    private final Set<String> stopWords = new HashSet<>();
+    private final byte[][] asciiStopWordTable;
+
+    /**
+     * Constructor of a normalizer applying some stages.
+     *
+     * @param stages the normalization stages, applied in {@link NormalizationStage} declaration order.
+     */
+    public TextNormalizer(Set<NormalizationStage> stages) {
+        this.stages = stages.isEmpty() ? EnumSet.noneOf(NormalizationStage.class) : EnumSet.copyOf(stages);
+        isTokenizing = this.stages.contains(NormalizationStage.TOKENIZATION);
+        isCaseFolding = this.stages.contains(NormalizationStage.CASE_FOLDING);
+        isFilteringPunctuation = this.stages.contains(NormalizationStage.PUNCTUATION_FILTERING);
+        isFilteringDigits = this.stages.contains(NormalizationStage.DIGIT_FILTERING);
+        isStemming = this.stages.contains(NormalizationStage.LIGHT_STEMMING);
+
+        // Stop words go through the stages applied before them, so that they match normalized words
+        if (this.stages.contains(NormalizationStage.FRENCH_STOP_WORDS)) {
+            addStopWords(FRENCH_STOP_WORDS);
+        }
+        if (this.stages.contains(NormalizationStage.ENGLISH_STOP_WORDS)) {
+            addStopWords(ENGLISH_STOP_WORDS);
+        }
+        asciiStopWordTable = buildAsciiStopWordTable(stopWords);
+    }
+
+    /**
+     * Parses a normalizer description: stage names separated by commas (case does not matter), or "none".
+     *
+     * @param description the normalizer description.
+     * @return the normalizer.
+     * @throws IllegalArgumentException if a stage name is unknown.
+     */
+    public static TextNormalizer parse(String description) {
+        Set<NormalizationStage> stages = EnumSet.noneOf(NormalizationStage.class);
+        if (!description.equalsIgnoreCase("none")) {
+            for (String stageName : description.split(",")) {
+                stages.add(NormalizationStage.valueOf(stageName.trim().toUpperCase(Locale.ROOT)));
+            }
+        }
+        return new TextNormalizer(stages);
+    }
+
+    /**
+     * Gets the normalization stages.
+     *
+     * @return the stages, in the order they are applied.
+     */
+    public Set<NormalizationStage> getStages() {
+        return Collections.unmodifiableSet(stages);
+    }
+
+    /**
+     * Checks whether the normalizer is the default one, which book readers apply without tokenizer.
+     *
+     * @return true if the normalizer only lower-cases one word per line.
+     */
+    public boolean isDefault() {
+        return stages.equals(DEFAULT.stages);
+    }
+
+    /**
+     * Gets a code identifying the normalizer stages, stored in index files so that an index is only used by books
+     * normalized the same way.
+     *
+     * @return the normalizer code.
+     */
+    public int getCode() {
+        int code = 0;
+        for (NormalizationStage stage : stages) {
+            code |= 1 << stage.ordinal();
+        }
+        return code;
+    }
+
+    /**
+     * Normalizes a single word, applying all stages but tokenization.
+     * Useful to look up a word typed by a user in books read with this normalizer.
+     *
+     * @param word the word.
+     * @return the normalized word, null if the word is removed (stop word, or nothing left after filtering).
+     */
+    public String normalize(String word) {
+        String normalizedWord = word;
+        if (isCaseFolding) {
+            normalizedWord = normalizedWord.toLowerCase(Locale.ROOT);
+        }
+        if (stages.contains(NormalizationStage.NFC)) {
+            normalizedWord = Normalizer.normalize(normalizedWord, Normalizer.Form.NFC);
+        }
+        if (stages.contains(NormalizationStage.ACCENT_STRIPPING)) {
+            normalizedWord = stripAccents(normalizedWord);
+        }
+        if (isFilteringPunctuation || isFilteringDigits) {
+            normalizedWord = filterCharacters(normalizedWord);
+        }
+
+        if (normalizedWord.isEmpty() || stopWords.contains(normalizedWord)) {
+            return null;
+        }
+        return isStemming ? stem(normalizedWord) : normalizedWord;
+    }
+
+    /**
+     * Creates a tokenizer, reading lines with this normalizer.
+     * A tokenizer is not thread-safe: each reading thread needs its own.
+     *
+     * @return a new tokenizer.
+     */
+    public Tokenizer newTokenizer() {
+        return new Tokenizer();
+    }
+
+    /**
+     * Splits lines into normalized words and counts them.
+     * Pure ASCII words are normalized in place in a reusable buffer, without creating any object. Other words go
+     * through {@link #normalize(String)}, their normalized forms being cached for the words which come again.
+     */
+    public final class Tokenizer {
+
+        private static final int CACHE_SIZE = 4096;
+
+        private byte[] wordBuffer = new byte[256];
+        private final CachedWord[] cache = new CachedWord[CACHE_SIZE];
+
+        private Tokenizer() {
+        }
+
+        /**
+         * Counts the normalized words of a line.
+         *
+         * @param line    the line, without line terminator.
+         * @param sink    the sink receiving the words.
+         */
+        public void addWords(String line, WordSink sink) {
+            byte[] utf8 = line.getBytes(StandardCharsets.UTF_8);
+            addWords(utf8, 0, utf8.length, sink);
+        }
+
+        /**
+         * Counts the normalized words of a line given as UTF-8 bytes.
+         * Empty words are not counted.
+         *
+         * @param utf8    the line bytes, without line terminator.
+         * @param offset  the line offset.
+         * @param length  the line length.
+         * @param sink    the sink receiving the words.
+         */
+        public void addWords(byte[] utf8, int offset, int length, WordSink sink) {
+            int end = offset + length;
+            if (!isTokenizing) {
+                addWord(utf8, offset, end, sink);
+                return;
+            }
+
+            // Non ASCII separators are only found once words are decoded
+            int position = offset;
+            while (position < end) {
+                while (position < end && isAsciiSeparator(utf8[position])) {
+                    position++;
+                }
+                int wordStart = position;
+                while (position < end && !isAsciiSeparator(utf8[position])) {
+                    position++;
+                }
+                if (position > wordStart) {
+                    addWord(utf8, wordStart, position, sink);
+                }
+            }
+        }
+
+        private void addWord(byte[] utf8, int start, int end, WordSink sink) {
+            if (end - start > wordBuffer.length) {
+                wordBuffer = new byte[Math.max(end - start, wordBuffer.length * 2)];
+            }
+
+            int length = 0;
+            int hash = Utf8WordTable.hashSeed();
+            for (int i = start; i < end; i++) {
+                byte b = utf8[i];
+                if (b < 0) {
+                    addUnicodeWord(utf8, start, end, sink);
+                    return;
+                }
+
+                if (isCaseFolding && b >= 'A' && b <= 'Z') {
+                    b += 'a' - 'A';
+                }
+                if ((isFilteringPunctuation && !isAsciiLetterOrDigit(b)) || (isFilteringDigits && b >= '0' && b <= '9')) {
+                    continue;
+                }
+                wordBuffer[length++] = b;
+                hash = Utf8WordTable.hashStep(hash, b);
+            }
+
+            if (length == 0 || isAsciiStopWord(wordBuffer, length, hash)) {
+                return;
+            }
+            if (isStemming) {
+                int stemLength = stemAscii(wordBuffer, length);
+                if (stemLength != length) {
+                    hash = Utf8WordTable.hash(wordBuffer, 0, stemLength);
+                }
+                length = stemLength;
+            }
+            sink.add(wordBuffer, 0, length, hash);
+        }
+
+        private void addUnicodeWord(byte[] utf8, int start, int end, WordSink sink) {
+            int hash = Utf8WordTable.hash(utf8, start, end - start);
+            int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+
+            CachedWord cachedWord = cache[slot];
+            if (cachedWord == null || !Arrays.equals(cachedWord.word, 0, cachedWord.word.length, utf8, start, end)) {
+                cachedWord = new CachedWord(Arrays.copyOfRange(utf8, start, end),
+                        normalizeWords(new String(utf8, start, end - start, StandardCharsets.UTF_8)));
+                cache[slot] = cachedWord;
+            }
+
+            for (int i = 0; i < cachedWord.normalizedWords.length; i++) {
+                byte[] normalizedWord = cachedWord.normalizedWords[i];
+                sink.add(normalizedWord, 0, normalizedWord.length, cachedWord.hashes[i]);
+            }
+        }
+
+    }
+
+    /**
+     * Normalizes a word read by a tokenizer, split first at non ASCII separators when tokenizing.
+     */
+    private List<String> normalizeWords(String text) {
+        List<String> normalizedWords = new ArrayList<>(1);
+        if (!isTokenizing) {
+            addNormalizedWord(text, normalizedWords);
+            return normalizedWords;
+        }
+
+        int wordStart = -1;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (isWordCharacter(codePoint)) {
+                if (wordStart < 0) wordStart = i;
+            } else if (wordStart >= 0) {
+                addNormalizedWord(text.substring(wordStart, i), normalizedWords);
+                wordStart = -1;
+            }
+            i += Character.charCount(codePoint);
+        }
+        if (wordStart >= 0) {
+            addNormalizedWord(text.substring(wordStart), normalizedWords);
+        }
+        return normalizedWords;
+    }
+
+    private void addNormalizedWord(String word, List<String> normalizedWords) {
+        String normalizedWord = normalize(word);
+        if (normalizedWord != null) {
+            normalizedWords.add(normalizedWord);
+        }
+    }
+
+    private void addStopWords(String[] words) {
+        for (String word : words) {
+            String normalizedWord = normalizeStopWord(word);
+            if (!normalizedWord.isEmpty()) {
+                stopWords.add(normalizedWord);
+            }
+        }
+    }
+
+    /**
+     * Applies to a stop word the stages applied to words before stop words are removed.
+     */
+    private String normalizeStopWord(String word) {
+        String normalizedWord = word;
+        if (stages.contains(NormalizationStage.NFC)) {
+            normalizedWord = Normalizer.normalize(normalizedWord, Normalizer.Form.NFC);
+        }
+        if (stages.contains(NormalizationStage.ACCENT_STRIPPING)) {
+            normalizedWord = stripAccents(normalizedWord);
+        }
+        if (isFilteringPunctuation || isFilteringDigits) {
+            normalizedWord = filterCharacters(normalizedWord);
+        }
+        return normalizedWord;
+    }
+
+    private static String stripAccents(String word) {
+        // Accents are combining marks once characters are decomposed
+        String decomposedWord = Normalizer.normalize(word, Normalizer.Form.NFD);
+        StringBuilder strippedWord = new StringBuilder(decomposedWord.length());
+        for (int i = 0; i < decomposedWord.length(); i++) {
+            char c = decomposedWord.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                strippedWord.append(c);
+            }
+        }
+        return strippedWord.toString();
+    }
+
+    private String filterCharacters(String word) {
+        StringBuilder filteredWord = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); ) {
+            int codePoint = word.codePointAt(i);
+            if (!(isFilteringPunctuation && !isWordCharacter(codePoint))
+                    && !(isFilteringDigits && Character.isDigit(codePoint))) {
+                filteredWord.appendCodePoint(codePoint);
+            }
+            i += Character.charCount(codePoint);
+        }
+        return filteredWord.toString();
+    }
+
+    private static boolean isWordCharacter(int codePoint) {
+        if (Character.isLetterOrDigit(codePoint)) {
+            return true;
+        }
+        int type = Character.getType(codePoint);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK
+                || type == Character.ENCLOSING_MARK;
+    }
+
+    private static boolean isAsciiLetterOrDigit(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9');
+    }
+
+    private static boolean isAsciiSeparator(byte b) {
+        return b >= 0 && !isAsciiLetterOrDigit(b);
+    }
+
+    /**
+     * Removes the plural ending of a word, {@link #stemAscii(byte[], int)} applying the same rules.
+     */
+    private static String stem(String word) {
+        int length = word.length();
+        if (length > 4 && word.endsWith("ies")) {
+            return word.substring(0, length - 3) + "y";
+        }
+        if (length > 5 && word.endsWith("aux") && word.charAt(length - 4) != 'e') {
+            return word.substring(0, length - 3) + "al";
+        }
+        if (length > 3 && (word.charAt(length - 1) == 's' || word.charAt(length - 1) == 'x')
+                && word.charAt(length - 2) != 's') {
+            return word.substring(0, length - 1);
+        }
+        return word;
+    }
+
+    /**
+     * Removes the plural ending of an ASCII word in place.
+     *
+     * @return the stem length.
+     */
+    private static int stemAscii(byte[] word, int length) {
+        if (length > 4 && word[length - 3] == 'i' && word[length - 2] == 'e' && word[length - 1] == 's') {
+            word[length - 3] = 'y';
+            return length - 2;
+        }
+        if (length > 5 && word[length - 3] == 'a' && word[length - 2] == 'u' && word[length - 1] == 'x'
+                && word[length - 4] != 'e') {
+            word[length - 2] = 'l';
+            return length - 1;
+        }
+        if (length > 3 && (word[length - 1] == 's' || word[length - 1] == 'x') && word[length - 2] != 's') {
+            return length - 1;
+        }
+        return length;
+    }
+
+    /**
+     * Builds an open-addressing table of the ASCII stop words, so that ASCII words are looked up without creating
+     * a String.
+     */
+    private static byte[][] buildAsciiStopWordTable(Set<String> stopWords) {
+        int capacity = Integer.highestOneBit(Math.max(1, stopWords.size()) * 4);
+        byte[][] table = new byte[capacity][];
+        for (String stopWord : stopWords) {
+            byte[] utf8 = stopWord.getBytes(StandardCharsets.UTF_8);
+            if (utf8.length == stopWord.length()) {
+                int slot = Utf8WordTable.hash(utf8, 0, utf8.length) & (capacity - 1);
+                while (table[slot] != null) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                table[slot] = utf8;
+            }
+        }
+        return table;
+    }
+
+    private boolean isAsciiStopWord(byte[] word, int length, int hash) {
+        if (stopWords.isEmpty()) {
+            return false;
+        }
+        int mask = asciiStopWordTable.length - 1;
+        for (int slot = hash & mask; asciiStopWordTable[slot] != null; slot = (slot + 1) & mask) {
+            byte[] stopWord = asciiStopWordTable[slot];
+            if (Arrays.equals(stopWord, 0, stopWord.length, word, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Normalized words of a word read by a tokenizer, as UTF-8 bytes with their hash.
+     */
+    private static class CachedWord {
+
+        private final byte[] word;
+        private final byte[][] normalizedWords;
+        private final int[] hashes;
+
+        private CachedWord(byte[] word, List<String> normalizedWords) {
+            this.word = word;
+            this.normalizedWords = new byte[normalizedWords.size()][];
+            this.hashes = new int[normalizedWords.size()];
+            for (int i = 0; i < normalizedWords.size(); i++) {
+                this.normalizedWords[i] = normalizedWords.get(i).getBytes(StandardCharsets.UTF_8);
+                this.hashes[i] = Utf8WordTable.hash(this.normalizedWords[i], 0, this.normalizedWords[i].length);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+import java.util.Arrays;
+
+/**
+ * TF-IDF weights of a book vocabulary, as a sparse vector of unit length: word ids sorted in ascending order, with
+ * their weights in a parallel array, indexes matching the indexes of the book {@link WordCounts}.
+ * A word weighs more the more it is used in the book (TF, 1 + log of its count) and the less books contain it (IDF,
+ * log of the number of books plus one over the number of books containing it, so that words present in all books
+ * keep a small weight). The cosine of two vectors then compares word frequencies rather than bare vocabularies.
+ */
+public class TfIdfVector {
+
+    private final int[] ids;
+    private final double[] weights;
+
+    private TfIdfVector(int[] ids, double[] weights) {
+        this.ids = ids;
+        this.weights = weights;
+    }
+
+    /**
+     * Computes the TF-IDF vector of book word counts, document frequencies being read from a vocabulary index.
+     *
+     * @param wordCounts      the book word counts.
+     * @param vocabularyIndex the vocabulary index of the compared books, including this book.
+     * @return the TF-IDF vector.
+     */
+    public static TfIdfVector of(WordCounts wordCounts, VocabularyIndex vocabularyIndex) {
+        int size = wordCounts.size();
+        int[] ids = new int[size];
+        double[] weights = new double[size];
+        double bookCount = vocabularyIndex.getBookCount();
+        double squaredNorm = 0;
+        for (int i = 0; i < size; i++) {
+            ids[i] = wordCounts.getId(i);
+            // Words of books missing from the index have no document frequency, they are then ignored
+            int wordBookCount = vocabularyIndex.getBookCount(ids[i]);
+            double idf = wordBookCount > 0 ? Math.log((1 + bookCount) / wordBookCount) : 0;
+            weights[i] = (1 + Math.log(wordCounts.getCount(i))) * idf;
+            squaredNorm += weights[i] * weights[i];
+        }
+
+        double norm = Math.sqrt(squaredNorm);
+        for (int i = 0; i < size && norm > 0; i++) {
+            weights[i] /= norm;
+        }
+        return new TfIdfVector(ids, weights);
+    }
+
+    /**
+     * Gets the number of words of the vector.
+     *
+     * @return the word count.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Gets the word id at an index.
+     *
+     * @param index the word index.
+     * @return the word id.
+     */
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Gets the weight of the word at an index.
+     *
+     * @param index the word index, the same as in the book word counts.
+     * @return the word weight.
+     */
+    public double getWeight(int index) {
+        return weights[index];
+    }
+
+    /**
+     * Gets the largest word id of the vector, plus one.
+     *
+     * @return the word id upper bound.
+     */
+    public int getIdBound() {
+        return ids.length > 0 ? ids[ids.length - 1] + 1 : 0;
+    }
+
+    /**
+     * Computes the cosine similarity with another vector, by a linear merge of the word ids.
+     *
+     * @param other the other vector.
+     * @return the cosine similarity, between 0 and 1.
+     */
+    public double cosine(TfIdfVector other) {
+        double dotProduct = 0;
+        int i = 0;
+        int j = 0;
+        while (i < ids.length && j < other.ids.length) {
+            if (ids[i] < other.ids[j]) {
+                i++;
+            } else if (ids[i] > other.ids[j]) {
+                j++;
+            } else {
+                dotProduct += weights[i++] * other.weights[j++];
+            }
+        }
+        return dotProduct;
+    }
+
+    /**
+     * Writes the weights in a dense array indexed by word id, to compute cosines with {@link #cosine(double[])}.
+     * Words of other vectors are compared with it by id, so it only needs to be {@link #getIdBound()} long.
+     *
+     * @param denseWeights the dense weights, at least {@link #getIdBound()} long, other words being left unchanged.
+     */
+    public void scatter(double[] denseWeights) {
+        for (int i = 0; i < ids.length; i++) {
+            denseWeights[ids[i]] = weights[i];
+        }
+    }
+
+    /**
+     * Computes the cosine similarity with a vector written in a dense array. The loop has no branch, so that it stays
+     * fast when a single vector is compared with many others.
+     *
+     * @param denseWeights the dense weights of the other vector, words with an id beyond its length not being in it.
+     * @return the cosine similarity, between 0 and 1.
+     */
+    public double cosine(double[] denseWeights) {
+        // Ids are sorted, so words of the other vector are the ones before the first id beyond the dense weights
+        int end = Arrays.binarySearch(ids, denseWeights.length);
+        end = end >= 0 ? end : -end - 1;
+        double dotProduct = 0;
+        for (int i = 0; i < end; i++) {
+            dotProduct += denseWeights[ids[i]] * weights[i];
+        }
+        return dotProduct;
+    }
+
+    /**
+     * Gets the indexes of the words with the highest weights, the most distinctive words of the book.
+     *
+     * @param count the number of words.
+     * @return the word indexes, by descending weight (then ascending index for equal weights).
+     */
+    public int[] getHighestWeightIndexes(int count) {
+        return TopKSelector.select(ids.length, count, (index1, index2) -> weights[index1] != weights[index2]
+                ? Double.compare(weights[index2], weights[index1]) : Integer.compare(index1, index2));
+    }
+
+}
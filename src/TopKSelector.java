@@ -0,0 +1,124 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+public final class TopKSelector {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private TopKSelector() {
+    }
+
+    /**
+     * Selects the k first elements regarding a comparator, without sorting all the elements.
+     * A bounded heap keeps the k best elements seen so far, so the cost is O(n log k) and only k elements are kept.
+     *
+     * @param elements   the elements to select from.
+     * @param k          the number of elements to select.
+     * @param comparator the ordering, first elements being the best ones.
+     * @param <T>        the element type.
+     * @return the k first elements (or less if there are not enough elements), sorted regarding the comparator.
+     */
+    public static <T> List<T> select(Iterable<? extends T> elements, int k, Comparator<? super T> comparator) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+
+        // Heap grows with the elements kept, k may be much larger than the number of elements
+        int heapCapacity = elements instanceof Collection
+                ? Math.min(k, ((Collection<?>) elements).size()) : DEFAULT_CAPACITY;
+
+        // Heap head is the worst element kept, so it is the one to evict when a better element comes.
+        PriorityQueue<T> heap = new PriorityQueue<>(Math.max(heapCapacity, 1), comparator.reversed());
+        for (T element : elements) {
+            if (heap.size() < k) {
+                heap.add(element);
+            } else if (comparator.compare(element, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(element);
+            }
+        }
+
+        List<T> selectedElements = new ArrayList<>(heap);
+        selectedElements.sort(comparator);
+
+        return selectedElements;
+    }
+
+    /**
+     * Selects the k first indexes regarding a comparator, without sorting all the indexes.
+     * Same as {@link #select(Iterable, int, Comparator)} for elements held in primitive arrays: no object is created.
+     *
+     * @param n          the number of indexes to select from (0 to n - 1).
+     * @param k          the number of indexes to select.
+     * @param comparator the ordering of indexes, first indexes being the best ones.
+     * @return the k first indexes (or less if there are not enough indexes), sorted regarding the comparator.
+     */
+    public static int[] select(int n, int k, IndexComparator comparator) {
+        int heapCapacity = Math.max(0, Math.min(n, k));
+
+        // Heap root is the worst index kept, so it is the one to evict when a better index comes.
+        int[] heap = new int[heapCapacity];
+        int heapSize = 0;
+        for (int index = 0; index < n && heapCapacity > 0; index++) {
+            if (heapSize < heapCapacity) {
+                heap[heapSize] = index;
+                siftUp(heap, heapSize++, comparator);
+            } else if (comparator.compare(index, heap[0]) < 0) {
+                heap[0] = index;
+                siftDown(heap, heapSize, comparator);
+            }
+        }
+
+        // Pop worst indexes one after another, filling the result from the end
+        int[] selectedIndexes = new int[heapSize];
+        while (heapSize > 0) {
+            selectedIndexes[heapSize - 1] = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize, comparator);
+        }
+
+        return selectedIndexes;
+    }
+
+    private static void siftUp(int[] heap, int position, IndexComparator comparator) {
+        int index = heap[position];
+        while (position > 0) {
+            int parentPosition = (position - 1) >>> 1;
+            if (comparator.compare(heap[parentPosition], index) >= 0) break;
+            heap[position] = heap[parentPosition];
+            position = parentPosition;
+        }
+        heap[position] = index;
+    }
+
+    private static void siftDown(int[] heap, int heapSize, IndexComparator comparator) {
+        if (heapSize == 0) return;
+
+        int index = heap[0];
+        int position = 0;
+        int half = heapSize >>> 1;
+        while (position < half) {
+            int childPosition = 2 * position + 1;
+            int rightPosition = childPosition + 1;
+            if (rightPosition < heapSize && comparator.compare(heap[rightPosition], heap[childPosition]) > 0) {
+                childPosition = rightPosition;
+            }
+            if (comparator.compare(index, heap[childPosition]) >= 0) break;
+            heap[position] = heap[childPosition];
+            position = childPosition;
+        }
+        heap[position] = index;
+    }
+
+    /**
+     * Comparison of two elements held in primitive arrays, given by their indexes.
+     */
+    @FunctionalInterface
+    public interface IndexComparator {
+        int compare(int index1, int index2);
+    }
+
+}
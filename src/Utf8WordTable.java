@@ -0,0 +1,214 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Open-addressing word counter keyed by UTF-8 bytes.
+ * A word already in the table is counted without any allocation, its String content is only created the first time
+ * the word is seen.
+ */
+public class Utf8WordTable implements WordCounter {
+
+    private static final int FNV_OFFSET_BASIS = 0x811C9DC5;
+    private static final int FNV_PRIME = 0x01000193;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int[] hashes;
+    private byte[][] keys;
+    private Word[] words;
+    private int mask;
+    private int size = 0;
+    private long probeCount = 0;
+    private int resizeCount = 0;
+
+    public Utf8WordTable() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Computes the hash of UTF-8 bytes (32 bits FNV-1a).
+     *
+     * @param utf8   the buffer holding the bytes.
+     * @param offset the bytes offset in buffer.
+     * @param length the bytes length.
+     * @return the bytes hash.
+     */
+    public static int hash(byte[] utf8, int offset, int length) {
+        int hash = FNV_OFFSET_BASIS;
+        for (int i = offset; i < offset + length; i++) {
+            hash = hashStep(hash, utf8[i]);
+        }
+        return hash;
+    }
+
+    /**
+     * Gets the hash initial value, to compute a hash byte after byte with {@link #hashStep(int, byte)}.
+     *
+     * @return the hash initial value.
+     */
+    public static int hashSeed() {
+        return FNV_OFFSET_BASIS;
+    }
+
+    /**
+     * Adds one byte to a hash being computed.
+     *
+     * @param hash the current hash value.
+     * @param b    the next byte.
+     * @return the new hash value.
+     */
+    public static int hashStep(int hash, byte b) {
+        return (hash ^ (b & 0xFF)) * FNV_PRIME;
+    }
+
+    @Override
+    public void add(String content) {
+        byte[] utf8 = content.getBytes(StandardCharsets.UTF_8);
+        add(utf8, 0, utf8.length, hash(utf8, 0, utf8.length));
+    }
+
+    @Override
+    public void add(String content, int occurrences) {
+        byte[] utf8 = content.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(utf8, 0, utf8.length);
+        int index = findSlot(utf8, 0, utf8.length, hash);
+        if (words[index] != null) {
+            words[index].addCount(occurrences);
+        } else {
+            insert(index, hash, utf8, new Word(content, occurrences));
+        }
+    }
+
+    @Override
+    public void add(byte[] utf8, int offset, int length, int hash) {
+        int index = findSlot(utf8, offset, length, hash);
+        if (words[index] != null) {
+            words[index].incrementCount();
+        } else {
+            insert(index, hash, Arrays.copyOfRange(utf8, offset, offset + length),
+                    new Word(new String(utf8, offset, length, StandardCharsets.UTF_8), 1));
+        }
+    }
+
+    @Override
+    public void addAll(WordCounter other) {
+        if (!(other instanceof Utf8WordTable)) {
+            WordCounter.super.addAll(other);
+            return;
+        }
+
+        // Keys and words of the other table are moved, not copied, since it is not used anymore afterwards
+        Utf8WordTable otherTable = (Utf8WordTable) other;
+        probeCount += otherTable.probeCount;
+        resizeCount += otherTable.resizeCount;
+        for (int i = 0; i < otherTable.words.length; i++) {
+            Word otherWord = otherTable.words[i];
+            if (otherWord != null) {
+                byte[] key = otherTable.keys[i];
+                int index = findSlot(key, 0, key.length, otherTable.hashes[i]);
+                if (words[index] != null) {
+                    words[index].addCount(otherWord.getCount());
+                } else {
+                    insert(index, otherTable.hashes[i], key, otherWord);
+                }
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Collection<Word> getWords() {
+        List<Word> wordList = new ArrayList<>(size);
+        for (Word word : words) {
+            if (word != null) {
+                wordList.add(word);
+            }
+        }
+        return wordList;
+    }
+
+    /**
+     * Gets the number of slots probed to find words, the ratio to added words telling how long probe sequences are.
+     *
+     * @return the number of probed slots.
+     */
+    public long getProbeCount() {
+        return probeCount;
+    }
+
+    /**
+     * Gets the number of times the table was resized.
+     *
+     * @return the number of resizes.
+     */
+    public int getResizeCount() {
+        return resizeCount;
+    }
+
+    /**
+     * Finds the slot of a key: either the slot holding it, or the empty slot where it should be inserted.
+     */
+    private int findSlot(byte[] utf8, int offset, int length, int hash) {
+        int index = mix(hash) & mask;
+        int probes = 1;
+        while (words[index] != null) {
+            if (hashes[index] == hash && Arrays.equals(keys[index], 0, keys[index].length, utf8, offset, offset + length)) {
+                break;
+            }
+            index = (index + 1) & mask;
+            probes++;
+        }
+        probeCount += probes;
+        return index;
+    }
+
+    private void insert(int index, int hash, byte[] key, Word word) {
+        hashes[index] = hash;
+        keys[index] = key;
+        words[index] = word;
+        size += 1;
+
+        // Keep load factor under 1/2 so that probe sequences stay short
+        if (size * 2 > words.length) {
+            resize();
+        }
+    }
+
+    private void resize() {
+        int[] oldHashes = hashes;
+        byte[][] oldKeys = keys;
+        Word[] oldWords = words;
+
+        allocate(oldWords.length * 2);
+        resizeCount += 1;
+        for (int i = 0; i < oldWords.length; i++) {
+            if (oldWords[i] != null) {
+                int index = mix(oldHashes[i]) & mask;
+                while (words[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                hashes[index] = oldHashes[i];
+                keys[index] = oldKeys[i];
+                words[index] = oldWords[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        hashes = new int[capacity];
+        keys = new byte[capacity][];
+        words = new Word[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+}
@@ -0,0 +1,197 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index from each word (by id) to the set of books containing it.
+ * Each indexed book gets an ordinal, and the books containing a word are stored as a bit set of ordinals, so that
+ * questions like "only in this book" or "in at least n books" are answered with bit set operations.
+ */
+public class VocabularyIndex {
+
+    private static final BitSet NO_BOOKS = new BitSet();
+
+    private final Map<BookFile, Integer> bookOrdinals = new HashMap<>();
+    private final BitSet usedOrdinals = new BitSet();
+    private BitSet[] wordBooks = new BitSet[1024];
+    // Number of books containing each word, kept along with the bit sets so that IDF weights do not count bits
+    private int[] wordBookCounts = new int[1024];
+    private long modificationCount;
+
+    /**
+     * Adds a book vocabulary to the index.
+     *
+     * @param bookFile   the book file.
+     * @param wordCounts the book word counts.
+     * @return the book ordinal.
+     */
+    public int addBook(BookFile bookFile, WordCounts wordCounts) {
+        int ordinal = usedOrdinals.nextClearBit(0);
+        usedOrdinals.set(ordinal);
+        bookOrdinals.put(bookFile, ordinal);
+
+        for (int i = 0; i < wordCounts.size(); i++) {
+            int id = wordCounts.getId(i);
+            if (id >= wordBooks.length) {
+                wordBooks = Arrays.copyOf(wordBooks, Math.max(id + 1, wordBooks.length * 2));
+                wordBookCounts = Arrays.copyOf(wordBookCounts, wordBooks.length);
+            }
+            if (wordBooks[id] == null) {
+                wordBooks[id] = new BitSet();
+            }
+            wordBooks[id].set(ordinal);
+            wordBookCounts[id]++;
+        }
+        modificationCount++;
+
+        return ordinal;
+    }
+
+    /**
+     * Removes a book vocabulary from the index, its ordinal may then be given to another book.
+     *
+     * @param bookFile   the book file.
+     * @param wordCounts the book word counts, as they were when the book was added.
+     */
+    public void removeBook(BookFile bookFile, WordCounts wordCounts) {
+        Integer ordinal = bookOrdinals.remove(bookFile);
+        if (ordinal == null) return;
+
+        for (int i = 0; i < wordCounts.size(); i++) {
+            int id = wordCounts.getId(i);
+            BitSet books = wordBooks[id];
+            books.clear(ordinal);
+            wordBookCounts[id]--;
+            if (books.isEmpty()) {
+                wordBooks[id] = null;
+            }
+        }
+        usedOrdinals.clear(ordinal);
+        modificationCount++;
+    }
+
+    /**
+     * Removes a book vocabulary from the index when its word counts are not known anymore, looking for the book in
+     * the books of every word.
+     *
+     * @param bookFile the book file.
+     */
+    public void removeBook(BookFile bookFile) {
+        Integer ordinal = bookOrdinals.remove(bookFile);
+        if (ordinal == null) return;
+
+        for (int id = 0; id < wordBooks.length; id++) {
+            BitSet books = wordBooks[id];
+            if (books != null && books.get(ordinal)) {
+                books.clear(ordinal);
+                wordBookCounts[id]--;
+                if (books.isEmpty()) {
+                    wordBooks[id] = null;
+                }
+            }
+        }
+        usedOrdinals.clear(ordinal);
+        modificationCount++;
+    }
+
+    /**
+     * Checks whether a book is indexed.
+     *
+     * @param bookFile the book file.
+     * @return true if the book is indexed, false otherwise.
+     */
+    public boolean containsBook(BookFile bookFile) {
+        return bookOrdinals.containsKey(bookFile);
+    }
+
+    /**
+     * Gets the ordinal of an indexed book.
+     *
+     * @param bookFile the book file.
+     * @return the book ordinal, -1 if the book is not indexed.
+     */
+    public int getOrdinal(BookFile bookFile) {
+        return bookOrdinals.getOrDefault(bookFile, -1);
+    }
+
+    /**
+     * Gets the largest ordinal given to a book, plus one.
+     *
+     * @return the ordinal upper bound.
+     */
+    public int getOrdinalBound() {
+        return usedOrdinals.length();
+    }
+
+    /**
+     * Gets the books containing a word. Returned bit set should not be modified.
+     *
+     * @param id the word id.
+     * @return the ordinals of the books containing the word (empty if no book contains it).
+     */
+    public BitSet getBooks(int id) {
+        BitSet books = id >= 0 && id < wordBooks.length ? wordBooks[id] : null;
+        return books != null ? books : NO_BOOKS;
+    }
+
+    /**
+     * Gets the number of indexed books.
+     *
+     * @return the book count.
+     */
+    public int getBookCount() {
+        return bookOrdinals.size();
+    }
+
+    /**
+     * Gets the number of books containing a word (its document frequency).
+     *
+     * @param id the word id.
+     * @return the number of books containing the word.
+     */
+    public int getBookCount(int id) {
+        return id >= 0 && id < wordBookCounts.length ? wordBookCounts[id] : 0;
+    }
+
+    /**
+     * Gets the number of books added to or removed from the index so far, so that values computed from the index
+     * know when they are outdated.
+     *
+     * @return the modification count.
+     */
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Checks whether a word is contained in a single book.
+     *
+     * @param id      the word id.
+     * @param ordinal the book ordinal.
+     * @return true if this book is the only one containing the word, false otherwise.
+     */
+    public boolean isOnlyInBook(int id, int ordinal) {
+        BitSet books = getBooks(id);
+        return books.get(ordinal) && books.cardinality() == 1;
+    }
+
+    /**
+     * Gets the words contained in at least a number of books.
+     *
+     * @param bookCount the minimum number of books.
+     * @return the word ids.
+     */
+    public List<Integer> getWordsInAtLeast(int bookCount) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < wordBooks.length; id++) {
+            if (wordBooks[id] != null && wordBooks[id].cardinality() >= bookCount) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+}
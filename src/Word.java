@@ -35,6 +35,15 @@ public class Word {
         count += 1;
     }
 
+    /**
+     * Adds a number of occurrences to word count.
+     *
+     * @param occurrences the number of occurrences to add.
+     */
+    public void addCount(int occurrences) {
+        count += occurrences;
+    }
+
     @Override
     public boolean equals(Object o) {
         // If o ref is null or is not the same class, we should return false directly.
@@ -45,6 +54,11 @@ public class Word {
         return Objects.equals(content, word.content);
     }
 
+    @Override
+    public int hashCode() {
+        return content != null ? content.hashCode() : 0;
+    }
+
     @Override
     public String toString() {
         return "'" + content + "' : " + count + " occurences";
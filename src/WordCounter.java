@@ -0,0 +1,50 @@
+import java.util.Collection;
+
+/**
+ * Counting engine of book words: each word received as a {@link WordSink} counts one more occurrence.
+ */
+public interface WordCounter extends WordSink, AutoCloseable {
+
+    /**
+     * Counts several occurrences of a word.
+     *
+     * @param content     the word content.
+     * @param occurrences the number of occurrences.
+     */
+    void add(String content, int occurrences);
+
+    /**
+     * Adds all the counts of another counter, for instance to merge counters filled in parallel.
+     * The other counter should not be used anymore afterwards.
+     *
+     * @param other the counter to merge in this one.
+     */
+    default void addAll(WordCounter other) {
+        for (Word word : other.getWords()) {
+            add(word.getContent(), word.getCount());
+        }
+    }
+
+    /**
+     * Gets the number of distinct words counted so far.
+     *
+     * @return the number of distinct words.
+     */
+    int size();
+
+    /**
+     * Gets the counted words, in no particular order.
+     *
+     * @return the counted words.
+     */
+    Collection<Word> getWords();
+
+    /**
+     * Releases the resources held by the counter (such as off-heap memory), which cannot be used anymore afterwards.
+     * Counters only using heap memory have nothing to release.
+     */
+    @Override
+    default void close() {
+    }
+
+}
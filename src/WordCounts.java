@@ -0,0 +1,320 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Compact and immutable word counts of a book: word ids (from a {@link WordDictionary}) sorted in ascending order,
+ * with their counts in a parallel array. Word objects are only created when asked for.
+ */
+public class WordCounts {
+
+    // Size ratio from which common words are searched by galloping rather than merging
+    private static final int GALLOPING_SIZE_RATIO = 16;
+
+    private final WordDictionary dictionary;
+    private final int[] ids;
+    private final int[] counts;
+
+    private WordCounts(WordDictionary dictionary, int[] ids, int[] counts) {
+        this.dictionary = dictionary;
+        this.ids = ids;
+        this.counts = counts;
+    }
+
+    /**
+     * Builds the compact word counts of a counter.
+     *
+     * @param counter    the counter holding the words.
+     * @param dictionary the dictionary giving the word ids.
+     * @return the word counts.
+     */
+    public static WordCounts of(WordCounter counter, WordDictionary dictionary) {
+        long[] idCounts = new long[counter.size()];
+        int index = 0;
+        for (Word word : counter.getWords()) {
+            idCounts[index++] = pack(dictionary.getId(word.getContent()), word.getCount());
+        }
+
+        return of(idCounts, dictionary);
+    }
+
+    /**
+     * Builds the compact word counts of words given by ids, in any order.
+     *
+     * @param ids        the word ids (each id should be given once).
+     * @param counts     the word counts, in the same order.
+     * @param dictionary the dictionary giving the word ids.
+     * @return the word counts.
+     */
+    public static WordCounts of(int[] ids, int[] counts, WordDictionary dictionary) {
+        long[] idCounts = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            idCounts[i] = pack(ids[i], counts[i]);
+        }
+
+        return of(idCounts, dictionary);
+    }
+
+    private static WordCounts of(long[] idCounts, WordDictionary dictionary) {
+        // Id is in the high bits, so that sorting by id is a primitive sort
+        Arrays.sort(idCounts);
+
+        int[] ids = new int[idCounts.length];
+        int[] counts = new int[idCounts.length];
+        for (int i = 0; i < idCounts.length; i++) {
+            ids[i] = (int) (idCounts[i] >>> 32);
+            counts[i] = (int) idCounts[i];
+        }
+
+        return new WordCounts(dictionary, ids, counts);
+    }
+
+    private static long pack(int id, int count) {
+        return ((long) id << 32) | (count & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the dictionary giving the word ids.
+     *
+     * @return the dictionary.
+     */
+    public WordDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Gets the number of distinct words.
+     *
+     * @return the number of words.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Estimates the heap size of the word counts, the dictionary being shared and not counted.
+     *
+     * @return the estimated size, in bytes.
+     */
+    public long getEstimatedSize() {
+        // Object header and fields, then two int arrays with their headers
+        return 24 + 2 * (16 + 4L * ids.length);
+    }
+
+    /**
+     * Gets the id of a word.
+     *
+     * @param index the word index, words being sorted by ascending id.
+     * @return the word id.
+     */
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Gets the count of a word.
+     *
+     * @param index the word index, words being sorted by ascending id.
+     * @return the word count.
+     */
+    public int getCount(int index) {
+        return counts[index];
+    }
+
+    /**
+     * Gets a word.
+     *
+     * @param index the word index, words being sorted by ascending id.
+     * @return a new word object.
+     */
+    public Word getWord(int index) {
+        return new Word(dictionary.getContent(ids[index]), counts[index]);
+    }
+
+    /**
+     * Finds the index of a word.
+     *
+     * @param id the word id.
+     * @return the word index, a negative value if the word is not counted.
+     */
+    public int indexOf(int id) {
+        return Arrays.binarySearch(ids, id);
+    }
+
+    /**
+     * Gets the count of a word.
+     *
+     * @param id the word id.
+     * @return the word count, 0 if the word is not counted.
+     */
+    public int countOf(int id) {
+        int index = indexOf(id);
+        return index >= 0 ? counts[index] : 0;
+    }
+
+    /**
+     * Counts the words present both in these word counts and in other ones.
+     * Both are sorted by id, so counting them is linear (see {@link #markCommonWords(WordCounts, BitSet)}).
+     *
+     * @param other the other word counts, with ids from the same dictionary.
+     * @return the number of common words.
+     */
+    public int countCommonWords(WordCounts other) {
+        return markCommonWords(other, null);
+    }
+
+    /**
+     * Marks the words of these word counts also present in other ones.
+     * Both are sorted by id, so they are merged linearly. When one of them is much smaller, each of its words is
+     * searched in the other one by galloping from the previous word found (exponential then binary search), which
+     * only reads a few words of the larger one.
+     *
+     * @param other       the other word counts, with ids from the same dictionary.
+     * @param commonWords set with the index of each common word of these word counts, or null to only count them.
+     * @return the number of common words.
+     */
+    public int markCommonWords(WordCounts other, BitSet commonWords) {
+        int[] otherIds = other.ids;
+        if ((long) otherIds.length * GALLOPING_SIZE_RATIO < ids.length) {
+            return gallopCommonWords(otherIds, ids, commonWords, false);
+        }
+        if ((long) ids.length * GALLOPING_SIZE_RATIO < otherIds.length) {
+            return gallopCommonWords(ids, otherIds, commonWords, true);
+        }
+
+        int commonWordCount = 0;
+        int i = 0;
+        int j = 0;
+        while (i < ids.length && j < otherIds.length) {
+            if (ids[i] < otherIds[j]) {
+                i++;
+            } else if (ids[i] > otherIds[j]) {
+                j++;
+            } else {
+                if (commonWords != null) {
+                    commonWords.set(i);
+                }
+                commonWordCount++;
+                i++;
+                j++;
+            }
+        }
+        return commonWordCount;
+    }
+
+    /**
+     * Searches the ids of a small sorted array in a large one, by galloping.
+     *
+     * @param smallIds          the small sorted ids.
+     * @param largeIds          the large sorted ids.
+     * @param commonWords       set with the index of each common word, or null.
+     * @param isSmallIdsIndexed true to mark common words by their small ids index, false by their large ids index.
+     * @return the number of common words.
+     */
+    private static int gallopCommonWords(int[] smallIds, int[] largeIds, BitSet commonWords, boolean isSmallIdsIndexed) {
+        int commonWordCount = 0;
+        int low = 0;
+        for (int i = 0; i < smallIds.length && low < largeIds.length; i++) {
+            int id = smallIds[i];
+            // Exponential search of a range ending after the id, then binary search in it
+            int step = 1;
+            int high = low;
+            while (high < largeIds.length && largeIds[high] < id) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            int index = Arrays.binarySearch(largeIds, low, Math.min(high + 1, largeIds.length), id);
+            if (index >= 0) {
+                if (commonWords != null) {
+                    commonWords.set(isSmallIdsIndexed ? i : index);
+                }
+                commonWordCount++;
+                low = index + 1;
+            } else {
+                low = -index - 1;
+            }
+        }
+        return commonWordCount;
+    }
+
+    /**
+     * Merges count changes into new word counts, this one being left unchanged.
+     * Both are sorted by id, so merging them is linear. Words whose count falls to 0 are removed.
+     *
+     * @param delta        the count changes, which may be negative.
+     * @param indexMapping filled with the new index of each word of this word counts (-1 if the word is removed),
+     *                     its length should be at least this word counts size.
+     * @return the merged word counts.
+     */
+    public WordCounts merge(WordCounts delta, int[] indexMapping) {
+        int[] mergedIds = new int[ids.length + delta.ids.length];
+        int[] mergedCounts = new int[mergedIds.length];
+        int mergedSize = 0;
+
+        int index = 0;
+        int deltaIndex = 0;
+        while (index < ids.length || deltaIndex < delta.ids.length) {
+            int id;
+            int count;
+            if (deltaIndex == delta.ids.length || (index < ids.length && ids[index] < delta.ids[deltaIndex])) {
+                id = ids[index];
+                count = counts[index];
+                indexMapping[index++] = mergedSize;
+            } else if (index == ids.length || delta.ids[deltaIndex] < ids[index]) {
+                id = delta.ids[deltaIndex];
+                count = delta.counts[deltaIndex++];
+            } else {
+                id = ids[index];
+                count = counts[index] + delta.counts[deltaIndex++];
+                indexMapping[index++] = count != 0 ? mergedSize : -1;
+            }
+
+            if (count != 0) {
+                mergedIds[mergedSize] = id;
+                mergedCounts[mergedSize++] = count;
+            }
+        }
+
+        return new WordCounts(dictionary, Arrays.copyOf(mergedIds, mergedSize), Arrays.copyOf(mergedCounts, mergedSize));
+    }
+
+    /**
+     * Compares two words regarding descending count, then content alphabetical order (as {@link WordComparator}).
+     *
+     * @param index1 word 1 index
+     * @param index2 word 2 index
+     * @return comparison result
+     */
+    public int compareByCount(int index1, int index2) {
+        if (counts[index1] != counts[index2]) {
+            return counts[index1] > counts[index2] ? -1 : 1;
+        }
+        return dictionary.getContent(ids[index1]).compareTo(dictionary.getContent(ids[index2]));
+    }
+
+    /**
+     * Gets the word indexes sorted by descending count.
+     *
+     * @return all the word indexes, sorted as {@link WordComparator} does.
+     */
+    public int[] sortByCount() {
+        Integer[] sortedIndexes = new Integer[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            sortedIndexes[i] = i;
+        }
+        Arrays.sort(sortedIndexes, this::compareByCount);
+
+        return Arrays.stream(sortedIndexes).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Gets the indexes of the most counted words, without sorting all the words.
+     *
+     * @param count the number of words.
+     * @return the word indexes, sorted as {@link WordComparator} does.
+     */
+    public int[] selectMostCounted(int count) {
+        return TopKSelector.select(ids.length, count, this::compareByCount);
+    }
+
+}
@@ -0,0 +1,87 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe dictionary giving each distinct word a dense int id (0, 1, 2...).
+ * Books sharing a dictionary can be compared with word ids instead of word contents.
+ */
+public class WordDictionary {
+
+    private static final WordDictionary sharedDictionary = new WordDictionary();
+
+    private final Map<String, Integer> wordIds = new ConcurrentHashMap<>();
+    private volatile String[] contents = new String[1024];
+    private volatile int size = 0;
+
+    /**
+     * Gets the dictionary shared by all book files.
+     *
+     * @return the shared dictionary.
+     */
+    public static WordDictionary getSharedDictionary() {
+        return sharedDictionary;
+    }
+
+    /**
+     * Gets the id of a word, a new id being given to the word if it is not in the dictionary yet.
+     *
+     * @param content the word content.
+     * @return the word id.
+     */
+    public int getId(String content) {
+        Integer id = wordIds.get(content);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (this) {
+            // Another thread may have added the word while this one was waiting for the lock
+            id = wordIds.get(content);
+            if (id != null) {
+                return id;
+            }
+
+            int newId = size;
+            if (newId == contents.length) {
+                contents = Arrays.copyOf(contents, newId * 2);
+            }
+            contents[newId] = content;
+            size = newId + 1;
+            wordIds.put(content, newId);
+
+            return newId;
+        }
+    }
+
+    /**
+     * Finds the id of a word, without adding the word to the dictionary.
+     *
+     * @param content the word content.
+     * @return the word id, -1 if the word is not in the dictionary.
+     */
+    public int findId(String content) {
+        Integer id = wordIds.get(content);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Gets the content of a word.
+     *
+     * @param id the word id.
+     * @return the word content.
+     */
+    public String getContent(int id) {
+        return contents[id];
+    }
+
+    /**
+     * Gets the number of words in the dictionary, which is also the largest word id plus one.
+     *
+     * @return the number of words.
+     */
+    public int size() {
+        return size;
+    }
+
+}
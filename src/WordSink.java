@@ -0,0 +1,29 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Receiver of the words of a book, in reading order. Book readers and tokenizers feed a sink, which either counts
+ * words (see {@link WordCounter}) or uses their sequence, such as {@link NGramCounter}.
+ */
+public interface WordSink {
+
+    /**
+     * Receives the next word.
+     *
+     * @param content the word content.
+     */
+    void add(String content);
+
+    /**
+     * Receives the next word, given as UTF-8 bytes.
+     * Sinks able to look up words by bytes should override it to avoid decoding already known words.
+     *
+     * @param utf8   the buffer holding the word content, encoded in UTF-8.
+     * @param offset the word content offset in buffer.
+     * @param length the word content length in bytes.
+     * @param hash   the word content hash, as computed by {@link Utf8WordTable#hash(byte[], int, int)}.
+     */
+    default void add(byte[] utf8, int offset, int length, int hash) {
+        add(new String(utf8, offset, length, StandardCharsets.UTF_8));
+    }
+
+}
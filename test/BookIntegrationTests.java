@@ -1,7 +1,40 @@
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -42,14 +75,1063 @@ public class BookIntegrationTests {
         assertEquals(traiteBookFile.getMostUsedWords(1).get(0).getCount(), 1814);
     }
 
+    @Test
+    public void ethiqueWordListOrderingTest() {
+        List<Word> wordList = ethiqueBookFile.getWordList();
+        WordComparator wordComparator = new WordComparator();
+
+        assertEquals(ethiqueBookFile.getWordCount(), wordList.size());
+        for (int i = 1; i < wordList.size(); i++) {
+            assertTrue(wordComparator.compare(wordList.get(i - 1), wordList.get(i)) < 0);
+        }
+    }
+
+    @Test
+    public void missingBookFileTest() {
+        BookFile missingBookFile = new BookFile(Path.of("resources/books/livre-absent.txt"));
+        assertEquals(0, missingBookFile.getWordCount());
+        assertTrue(missingBookFile.getMostUsedWords(10).isEmpty());
+        assertTrue(missingBookFile.getMostUsedNGrams(2, 10).isEmpty());
+        assertFalse(missingBookFile.getSnapshot().isRead());
+        assertFalse(missingBookFile.isBookLoadedInMemory());
+
+        // Missing book is compared as a book without words
+        List<Word> uniqueWords = bookFileList.getWordsOnlyPresentInReferenceFile();
+        bookFileList.setConsoleMessagesEnabled(false);
+        bookFileList.addBookFileToList(missingBookFile);
+        assertEquals(0.0, bookFileList.getCommonWordsRates().get(missingBookFile));
+        assertEquals(uniqueWords, bookFileList.getWordsOnlyPresentInReferenceFile());
+    }
+
+    @Test
+    public void mostUsedWordsMatchWordListTest() {
+        assertEquals(ethiqueBookFile.getMostUsedWords(50), ethiqueBookFile.getWordList().subList(0, 50));
+    }
+
+    @Test
+    public void snapshotViewsMatchWordListTest() {
+        BookSnapshot snapshot = ethiqueBookFile.getSnapshot();
+        List<Word> wordList = ethiqueBookFile.getWordList();
+
+        assertEquals(wordList.size(), snapshot.size());
+        assertWordCountsEquals(wordList.subList(10, 20), snapshot.asWordList().subList(10, 20));
+        for (Word word : snapshot) {
+            assertEquals(word.getCount(), snapshot.countOf(word.getContent()));
+        }
+        assertTrue(snapshot.contains("accompagnement"));
+        assertFalse(snapshot.contains("motabsentdulivre"));
+        assertEquals(0, snapshot.countOf("motabsentdulivre"));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.asWordList().remove(0));
+    }
+
+    @Test
+    public void approximateMostUsedWordsTest() {
+        List<Word> mostUsedWords = traiteBookFile.getMostUsedWords(10);
+        List<HeavyHitter> heavyHitters = traiteBookFile.getApproximateMostUsedWords(10, 1000);
+
+        assertEquals(mostUsedWords.size(), heavyHitters.size());
+        for (int i = 0; i < heavyHitters.size(); i++) {
+            // Real count should always be between guaranteed and estimated counts
+            assertTrue(heavyHitters.get(i).getGuaranteedCount() <= mostUsedWords.get(i).getCount());
+            assertTrue(heavyHitters.get(i).getCount() >= mostUsedWords.get(i).getCount());
+            assertEquals(mostUsedWords.get(i).getContent(), heavyHitters.get(i).getContent());
+        }
+    
+        // Selected count may be larger than the number of words, selection only keeps the words there are
+        assertEquals(1000, traiteBookFile.getApproximateMostUsedWords(Integer.MAX_VALUE, 1000).size());
+        assertEquals(traiteBookFile.getWordCount(), traiteBookFile.getMostUsedWords(Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    public void mappedLoadMatchesReaderLoadTest() {
+        for (String bookName : List.of("ethique", "reforme", "traite")) {
+            Path bookPath = Path.of("resources/books/" + bookName + "-line.txt");
+            assertWordCountsEquals(
+                    new BookFile(bookPath, LoadMode.READER, HashWordCounter::new).getWordList(),
+                    new BookFile(bookPath, LoadMode.MAPPED, Utf8WordTable::new).getWordList());
+        }
+    }
+
+    @Test
+    public void mappedLoadLineTerminatorsAndCaseTest(@TempDir Path tempDir) throws IOException {
+        Path bookPath = tempDir.resolve("book-line.txt");
+        Files.write(bookPath, "Éthique\r\néthique\rÉTHIQUE\n\nΣοφΊΑ\nİ\nfin".getBytes(StandardCharsets.UTF_8));
+
+        assertWordCountsEquals(
+                new BookFile(bookPath, LoadMode.READER, HashWordCounter::new).getWordList(),
+                new BookFile(bookPath, LoadMode.MAPPED, Utf8WordTable::new).getWordList());
+        assertEquals(3, new BookFile(bookPath).getMostUsedWords(1).get(0).getCount());
+    }
+
+    @Test
+    public void parallelLoadMatchesSerialLoadTest() throws IOException, InterruptedException {
+        Path bookPath = Path.of("resources/books/ethique-line.txt");
+        List<Word> serialWordList = new BookFile(bookPath, LoadMode.MAPPED, Utf8WordTable::new).getWordList();
+
+        // Small chunks so that the book is actually split in many ranges
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelBookLoader parallelBookLoader = new ParallelBookLoader(pool, 4096);
+            for (Supplier<WordCounter> wordCounterFactory : List.<Supplier<WordCounter>>of(Utf8WordTable::new, HashWordCounter::new)) {
+                List<Word> parallelWordList = new ArrayList<>(parallelBookLoader.readWords(bookPath, wordCounterFactory).getWords());
+                parallelWordList.sort(new WordComparator());
+
+                assertWordCountsEquals(serialWordList, parallelWordList);
+            }
+        } finally {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+        assertWordCountsEquals(serialWordList, new BookFile(bookPath, LoadMode.PARALLEL, Utf8WordTable::new).getWordList());
+    }
+
+    @Test
+    public void offHeapWordTableMatchesHeapTableTest() throws IOException, InterruptedException {
+        Path bookPath = Path.of("resources/books/ethique-line.txt");
+        List<Word> heapWordList = new BookFile(bookPath, LoadMode.MAPPED, Utf8WordTable::new).getWordList();
+
+        for (LoadMode loadMode : LoadMode.values()) {
+            assertWordCountsEquals(heapWordList, new BookFile(bookPath, loadMode, OffHeapWordTable::new).getWordList());
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try (WordCounter mergedWordTable = new ParallelBookLoader(pool, 4096).readWords(bookPath, OffHeapWordTable::new)) {
+            List<Word> mergedWordList = new ArrayList<>(mergedWordTable.getWords());
+            mergedWordList.sort(new WordComparator());
+            assertWordCountsEquals(heapWordList, mergedWordList);
+        } finally {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        OffHeapWordTable offHeapWordTable = new OffHeapWordTable();
+        offHeapWordTable.add("mot", 2);
+        offHeapWordTable.add("mot", -2);
+        offHeapWordTable.add("");
+        assertEquals(2, offHeapWordTable.size());
+        offHeapWordTable.close();
+        assertThrows(IllegalStateException.class, () -> offHeapWordTable.add("mot"));
+    }
+
+    @Test
+    public void offHeapWordTableCloseTest() throws IOException, InterruptedException {
+        // Closing frees the direct buffers right away
+        BufferPoolMXBean directBufferPool = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(bufferPool -> bufferPool.getName().equals("direct")).findFirst().orElseThrow();
+        long usedDirectMemory = directBufferPool.getMemoryUsed();
+        OffHeapWordTable offHeapWordTable = new OffHeapWordTable();
+        for (int i = 0; i < 100_000; i++) {
+            offHeapWordTable.add("mot" + i);
+        }
+        assertTrue(directBufferPool.getMemoryUsed() > usedDirectMemory + 1_000_000);
+        offHeapWordTable.close();
+        offHeapWordTable.close();
+        assertTrue(directBufferPool.getMemoryUsed() < usedDirectMemory + 1_000_000);
+
+        // Counters are closed even when reading fails, by the failing task or by one of its siblings
+        List<OffHeapWordTable> failingTables = Collections.synchronizedList(new ArrayList<>());
+        Supplier<WordCounter> failingFactory = () -> {
+            OffHeapWordTable failingTable = new OffHeapWordTable() {
+                @Override
+                public void add(byte[] utf8, int offset, int length, int hash) {
+                    if (size() >= 300) {
+                        throw new IllegalStateException("échec de lecture simulé");
+                    }
+                    super.add(utf8, offset, length, hash);
+                }
+            };
+            failingTables.add(failingTable);
+            return failingTable;
+        };
+        Path bookPath = Path.of("resources/books/ethique-line.txt");
+        assertThrows(IllegalStateException.class, () -> new BookFile(bookPath, LoadMode.MAPPED, failingFactory).getWordCount());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertThrows(IllegalStateException.class, () -> new ParallelBookLoader(pool, 4096).readWords(bookPath, failingFactory));
+        } finally {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+        assertTrue(failingTables.size() > 2);
+        for (OffHeapWordTable failingTable : failingTables) {
+            assertThrows(IllegalStateException.class, failingTable::getWords);
+        }
+    }
+
+    @Test
+    public void concurrentFirstAccessLoadsOnceTest() throws InterruptedException {
+        AtomicInteger loadCount = new AtomicInteger();
+        BookFile bookFile = new BookFile(Path.of("resources/books/traite-line.txt"), LoadMode.MAPPED, () -> {
+            loadCount.incrementAndGet();
+            return new Utf8WordTable();
+        });
+
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executorService.execute(bookFile::getWordCount);
+        }
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertTrue(bookFile.isBookLoadedInMemory());
+        assertEquals(1, loadCount.get());
+    }
+
+    @Test
+    public void preloadBookFilesTest() {
+        BookFileList preloadedBookFileList = new BookFileList(BookLoaderPools.newVirtualThreadPool());
+        preloadedBookFileList.addBookFileToList(new BookFile(Path.of("resources/books/ethique-line.txt")));
+        preloadedBookFileList.addBookFileToList(new BookFile(Path.of("resources/books/reforme-line.txt")));
+        preloadedBookFileList.addBookFileToList(new BookFile(Path.of("resources/books/traite-line.txt")));
+        preloadedBookFileList.preloadBookFiles().join();
+
+        assertTrue(preloadedBookFileList.getBookFileLoading(traiteBookFile).join().isBookLoadedInMemory());
+        assertEquals(1814, preloadedBookFileList.getBookFileLoading(traiteBookFile).join().getMostUsedWords(1).get(0).getCount());
+    }
+
+    @Test
+    public void indexCacheTest(@TempDir Path tempDir) throws IOException {
+        Path bookPath = tempDir.resolve("traite-line.txt");
+        Files.copy(Path.of("resources/books/traite-line.txt"), bookPath);
+        AtomicInteger readCount = new AtomicInteger();
+        Supplier<WordCounter> countingFactory = () -> {
+            readCount.incrementAndGet();
+            return new Utf8WordTable();
+        };
+
+        BookFile firstBookFile = new BookFile(bookPath, LoadMode.MAPPED, countingFactory);
+        firstBookFile.setIndexCacheEnabled(true);
+        List<Word> wordList = firstBookFile.getWordList();
+        assertTrue(Files.exists(BookIndexFile.getIndexFilePath(bookPath)));
+
+        // Book file is unchanged: its index is used
+        BookFile secondBookFile = new BookFile(bookPath, LoadMode.MAPPED, countingFactory);
+        secondBookFile.setIndexCacheEnabled(true);
+        assertWordCountsEquals(wordList, secondBookFile.getWordList());
+        assertEquals(1, readCount.get());
+
+        // Book file has changed: it is read again
+        Files.writeString(bookPath, "motajoutealafin\n", StandardOpenOption.APPEND);
+        BookFile thirdBookFile = new BookFile(bookPath, LoadMode.MAPPED, countingFactory);
+        thirdBookFile.setIndexCacheEnabled(true);
+        assertEquals(wordList.size() + 1, thirdBookFile.getWordCount());
+        assertEquals(2, readCount.get());
+
+        // Book file grows while being read: no index is written for its older content
+        Files.delete(BookIndexFile.getIndexFilePath(bookPath));
+        Supplier<WordCounter> appendingFactory = () -> {
+            try {
+                Files.writeString(bookPath, "motajoutependantlalecture\n", StandardOpenOption.APPEND);
+            } catch (IOException ioEx) {
+                throw new UncheckedIOException(ioEx);
+            }
+            return new Utf8WordTable();
+        };
+        BookFile growingBookFile = new BookFile(bookPath, LoadMode.MAPPED, appendingFactory);
+        growingBookFile.setIndexCacheEnabled(true);
+        assertEquals(wordList.size() + 1, growingBookFile.getWordCount());
+        assertFalse(Files.exists(BookIndexFile.getIndexFilePath(bookPath)));
+    }
+
+    @Test
+    public void corruptIndexFileTest(@TempDir Path tempDir) throws IOException {
+        Path bookPath = tempDir.resolve("reforme-line.txt");
+        Files.copy(Path.of("resources/books/reforme-line.txt"), bookPath);
+        BookFile indexedBookFile = new BookFile(bookPath);
+        indexedBookFile.setIndexCacheEnabled(true);
+        List<Word> wordList = indexedBookFile.getWordList();
+        Path indexFilePath = BookIndexFile.getIndexFilePath(bookPath);
+        byte[] index = Files.readAllBytes(indexFilePath);
+
+        // Truncated index: book file is read again
+        Files.write(indexFilePath, Arrays.copyOf(index, 60));
+        assertNull(BookIndexFile.read(bookPath, WordDictionary.getSharedDictionary(), TextNormalizer.DEFAULT));
+        BookFile truncatedIndexBookFile = new BookFile(bookPath);
+        truncatedIndexBookFile.setIndexCacheEnabled(true);
+        assertWordCountsEquals(wordList, truncatedIndexBookFile.getWordList());
+
+        // Corrupt prefix and suffix lengths, after the header and the word count
+        byte[] corruptIndex = index.clone();
+        Arrays.fill(corruptIndex, 40, corruptIndex.length, (byte) 0x7F);
+        Files.write(indexFilePath, corruptIndex);
+        assertNull(BookIndexFile.read(bookPath, WordDictionary.getSharedDictionary(), TextNormalizer.DEFAULT));
+        BookFile corruptIndexBookFile = new BookFile(bookPath);
+        corruptIndexBookFile.setIndexCacheEnabled(true);
+        assertWordCountsEquals(wordList, corruptIndexBookFile.getWordList());
+        assertArrayEquals(index, Files.readAllBytes(indexFilePath));
+    }
+
+    @Test
+    public void incrementalRefreshTest(@TempDir Path tempDir) throws IOException {
+        Path bookPath = tempDir.resolve("reforme-line.txt");
+        Files.copy(Path.of("resources/books/reforme-line.txt"), bookPath);
+        BookFile growingBookFile = new BookFile(bookPath);
+        BookSnapshot firstSnapshot = growingBookFile.getSnapshot();
+        growingBookFile.getWordList();
+
+        BookFileList growingBookFileList = new BookFileList();
+        growingBookFileList.addBookFileToList(growingBookFile);
+        growingBookFileList.addBookFileToList(traiteBookFile);
+        growingBookFileList.chooseReferenceFile(1);
+        assertFalse(growingBookFileList.getWordsOnlyPresentInReferenceFile().contains(new Word("motajoute", 1)));
+
+        // Last line is incomplete after the first append, then completed by the second one
+        Files.writeString(bookPath, "De\nmotajoute\nmotincom", StandardOpenOption.APPEND);
+        assertTrue(growingBookFile.refresh());
+        Files.writeString(bookPath, "plet\n", StandardOpenOption.APPEND);
+        assertTrue(growingBookFile.refresh());
+        assertFalse(growingBookFile.refresh());
+
+        assertWordCountsEquals(new BookFile(bookPath).getWordList(), growingBookFile.getWordList());
+        assertTrue(growingBookFileList.getWordsOnlyPresentInReferenceFile().contains(new Word("motajoute", 1)));
+        assertFalse(growingBookFile.getWordList().contains(new Word("motincom", 1)));
+        assertTrue(growingBookFile.getSnapshot().getVersion() > firstSnapshot.getVersion());
+        assertEquals(reformeBookFile.getWordCount(), firstSnapshot.getWordCounts().size());
+    }
+
+    @Test
+    public void bookFileWatcherTest(@TempDir Path tempDir) throws IOException, InterruptedException {
+        Path bookPath = tempDir.resolve("traite-line.txt");
+        Files.copy(Path.of("resources/books/traite-line.txt"), bookPath);
+        BookFile watchedBookFile = new BookFile(bookPath);
+        int wordCount = watchedBookFile.getWordCount();
+
+        CountDownLatch refreshLatch = new CountDownLatch(1);
+        try (BookFileWatcher bookFileWatcher = new BookFileWatcher(bookFile -> refreshLatch.countDown())) {
+            bookFileWatcher.watch(watchedBookFile);
+            Files.writeString(bookPath, "motajoutealafin\n", StandardOpenOption.APPEND);
+
+            assertTrue(refreshLatch.await(1, TimeUnit.MINUTES));
+            assertEquals(wordCount + 1, watchedBookFile.getWordCount());
+        }
+    }
+
     @Test
     public void accompagnementOnlyInEthique() {
         assertTrue(bookFileList.getWordsOnlyPresentInReferenceFile().contains(new Word("accompagnement", 1)));
     }
 
+    @Test
+    public void sharedDictionaryIdsTest() {
+        WordDictionary dictionary = WordDictionary.getSharedDictionary();
+        int deId = dictionary.getId("de");
+
+        assertEquals("de", dictionary.getContent(deId));
+        assertEquals(7098, ethiqueBookFile.getWordCounts().countOf(deId));
+        assertTrue(reformeBookFile.getWordCounts().countOf(deId) > 0);
+        assertEquals(0, reformeBookFile.getWordCounts().countOf(dictionary.getId("accompagnement")));
+    }
+
+    @Test
+    public void vocabularyIndexQueriesTest() {
+        assertTrue(bookFileList.getWordsPresentInAtLeast(3).contains("de"));
+        assertFalse(bookFileList.getWordsPresentInAtLeast(2).contains("accompagnement"));
+        assertTrue(bookFileList.getCommonWordsWithReferenceFile(reformeBookFile).contains(new Word("de", 1)));
+        assertFalse(bookFileList.getCommonWordsWithReferenceFile(reformeBookFile).contains(new Word("accompagnement", 1)));
+    }
+
+    @Test
+    public void sortedWordSetsTest() {
+        WordCounts ethiqueWordCounts = ethiqueBookFile.getWordCounts();
+        List<WordCounts> otherWordCounts = List.of(reformeBookFile.getWordCounts(), traiteBookFile.getWordCounts());
+
+        BitSet wordsInOtherBooks = SortedWordSets.getWordsInOtherBooks(ethiqueWordCounts, otherWordCounts);
+        List<Word> uniqueWords = new ArrayList<>();
+        for (int wordIndex : ethiqueBookFile.getSnapshot().getSortedWordIndexes()) {
+            if (!wordsInOtherBooks.get(wordIndex)) {
+                uniqueWords.add(ethiqueWordCounts.getWord(wordIndex));
+            }
+        }
+        assertWordCountsEquals(bookFileList.getWordsOnlyPresentInReferenceFile(), uniqueWords);
+
+        int[] commonWordCounts = SortedWordSets.countCommonWords(ethiqueWordCounts, otherWordCounts);
+        List<Double> commonWordsRates = new ArrayList<>(bookFileList.getCommonWordsRates().values());
+        for (int i = 0; i < commonWordCounts.length; i++) {
+            assertEquals(commonWordsRates.get(i), (double) commonWordCounts[i] / ethiqueWordCounts.size());
+        }
+
+        WordDictionary dictionary = WordDictionary.getSharedDictionary();
+        List<String> wordsInTwoBooks = new ArrayList<>();
+        for (int id : SortedWordSets.getWordsInAtLeast(List.of(ethiqueWordCounts, otherWordCounts.get(0), otherWordCounts.get(1)), 2)) {
+            wordsInTwoBooks.add(dictionary.getContent(id));
+        }
+        Collections.sort(wordsInTwoBooks);
+        assertEquals(bookFileList.getWordsPresentInAtLeast(2), wordsInTwoBooks);
+
+        // Small word counts are searched by galloping in large ones, with the same results as a merge
+        int[] smallIds = {dictionary.getId("de"), dictionary.getId("accompagnement"), dictionary.getId("motabsentdeslivres")};
+        WordCounts smallWordCounts = WordCounts.of(smallIds, new int[]{1, 1, 1}, dictionary);
+        BitSet smallCommonWords = new BitSet();
+        BitSet largeCommonWords = new BitSet();
+        assertEquals(1, smallWordCounts.markCommonWords(reformeBookFile.getWordCounts(), smallCommonWords));
+        assertEquals(1, reformeBookFile.getWordCounts().markCommonWords(smallWordCounts, largeCommonWords));
+        assertEquals(dictionary.getId("de"), smallWordCounts.getId(smallCommonWords.nextSetBit(0)));
+        assertEquals(dictionary.getId("de"), reformeBookFile.getWordCounts().getId(largeCommonWords.nextSetBit(0)));
+        assertEquals(2, smallWordCounts.countCommonWords(ethiqueWordCounts));
+    }
+
+    @Test
+    public void vocabularyIndexUpdateTest() {
+        int uniqueWordCount = bookFileList.getWordsOnlyPresentInReferenceFile().size();
+
+        // Removing a book can only make more reference words unique, and adding it back restores the previous state
+        bookFileList.removeBookFileFromList(new BookFile(Path.of("resources/books/traite-line.txt")));
+        assertTrue(bookFileList.getWordsOnlyPresentInReferenceFile().size() > uniqueWordCount);
+        bookFileList.removeBookFileFromList(reformeBookFile);
+        assertEquals(ethiqueBookFile.getWordCount(), bookFileList.getWordsOnlyPresentInReferenceFile().size());
+
+        bookFileList.addBookFileToList(reformeBookFile);
+        bookFileList.addBookFileToList(traiteBookFile);
+        assertEquals(uniqueWordCount, bookFileList.getWordsOnlyPresentInReferenceFile().size());
+    }
+
+    @Test
+    public void tfIdfCosineTest() {
+        Map<BookFile, Double> cosineSimilarities = bookFileList.getCosineSimilarities();
+        assertEquals(List.of(reformeBookFile, traiteBookFile), new ArrayList<>(cosineSimilarities.keySet()));
+        TfIdfVector ethiqueVector = bookFileList.getTfIdfVector(ethiqueBookFile);
+        TfIdfVector reformeVector = bookFileList.getTfIdfVector(reformeBookFile);
+        assertEquals(1, ethiqueVector.cosine(ethiqueVector), 1e-9);
+        assertEquals(ethiqueVector.cosine(reformeVector), reformeVector.cosine(ethiqueVector), 1e-12);
+        assertEquals(ethiqueVector.cosine(reformeVector), cosineSimilarities.get(reformeBookFile), 1e-12);
+        // Dense weights only cover the ids of their vector, larger ids of other vectors being ignored
+        boolean isEthiqueSmaller = ethiqueVector.getIdBound() < reformeVector.getIdBound();
+        TfIdfVector smallerVector = isEthiqueSmaller ? ethiqueVector : reformeVector;
+        TfIdfVector largerVector = isEthiqueSmaller ? reformeVector : ethiqueVector;
+        double[] smallerWeights = new double[smallerVector.getIdBound()];
+        smallerVector.scatter(smallerWeights);
+        assertTrue(largerVector.getIdBound() > smallerWeights.length);
+        assertEquals(largerVector.cosine(smallerVector), largerVector.cosine(smallerWeights), 1e-12);
+        int[] highestWeightIndexes = ethiqueVector.getHighestWeightIndexes(10);
+        for (int i = 1; i < highestWeightIndexes.length; i++) {
+            assertTrue(ethiqueVector.getWeight(highestWeightIndexes[i - 1]) >= ethiqueVector.getWeight(highestWeightIndexes[i]));
+        }
+        for (double cosineSimilarity : cosineSimilarities.values()) {
+            assertTrue(cosineSimilarity > 0 && cosineSimilarity < 1);
+        }
+
+        // Distinctive words are used often in the book and rarely in the others
+        List<Word> distinctiveWords = bookFileList.getDistinctiveWords(ethiqueBookFile, 10);
+        assertEquals(10, distinctiveWords.size());
+        assertFalse(distinctiveWords.contains(new Word("de", 1)));
+        assertFalse(reformeBookFile.getSnapshot().contains(distinctiveWords.get(0).getContent())
+                && traiteBookFile.getSnapshot().contains(distinctiveWords.get(0).getContent()));
+
+        // Vectors of evicted books are forgotten with them, and computed again when books are loaded again
+        BookFileList boundedBookFileList = new BookFileList();
+        boundedBookFileList.setConsoleMessagesEnabled(false);
+        boundedBookFileList.setMaxLoadedBytes(1);
+        for (BookFile bookFile : bookFileList.getBookFiles()) {
+            boundedBookFileList.addBookFileToList(new BookFile(bookFile.getFilePath()));
+        }
+        boundedBookFileList.chooseReferenceFile(1);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(new ArrayList<>(cosineSimilarities.values()),
+                    new ArrayList<>(boundedBookFileList.getCosineSimilarities().values()));
+            assertEquals(1, boundedBookFileList.getBookCacheStatistics().getLoadedBookCount());
+        }
+        assertEquals(distinctiveWords, boundedBookFileList.getDistinctiveWords(
+                boundedBookFileList.getReferenceBookFile(), 10));
+
+        // Document frequencies follow removed and added books, as if the list was built again
+        bookFileList.removeBookFileFromList(traiteBookFile);
+        BookFileList twoBookFileList = new BookFileList();
+        twoBookFileList.setConsoleMessagesEnabled(false);
+        twoBookFileList.addBookFileToList(ethiqueBookFile);
+        twoBookFileList.addBookFileToList(reformeBookFile);
+        twoBookFileList.chooseReferenceFile(1);
+        assertEquals(twoBookFileList.getCosineSimilarities().get(reformeBookFile),
+                bookFileList.getCosineSimilarities().get(reformeBookFile), 1e-12);
+        assertNotEquals(cosineSimilarities.get(reformeBookFile), bookFileList.getCosineSimilarities().get(reformeBookFile));
+        bookFileList.addBookFileToList(traiteBookFile);
+        assertEquals(cosineSimilarities.get(traiteBookFile), bookFileList.getCosineSimilarities().get(traiteBookFile), 1e-12);
+
+        // Without reference file, nothing is compared
+        bookFileList.chooseReferenceFile(0);
+        assertTrue(bookFileList.getCosineSimilarities().isEmpty());
+
+        // Words missing from the index get no weight rather than an infinite one
+        TfIdfVector unindexedVector = TfIdfVector.of(ethiqueBookFile.getWordCounts(), new VocabularyIndex());
+        for (int i = 0; i < unindexedVector.size(); i++) {
+            assertEquals(0, unindexedVector.getWeight(i));
+        }
+    }
+
+    @Test
+    public void referenceComparisonCacheTest() {
+        List<Word> uniqueWords = bookFileList.getWordsOnlyPresentInReferenceFile();
+        Map<BookFile, Double> commonWordsRates = bookFileList.getCommonWordsRates();
+        bookFileList.chooseReferenceFile(1);
+        assertSame(uniqueWords, bookFileList.getWordsOnlyPresentInReferenceFile());
+        assertThrows(UnsupportedOperationException.class, () -> uniqueWords.add(new Word("mot", 1)));
+
+        // A book added after the comparison is compared alone, with the same results as a comparison from scratch
+        BookFileList growingBookFileList = new BookFileList();
+        growingBookFileList.setConsoleMessagesEnabled(false);
+        growingBookFileList.addBookFileToList(ethiqueBookFile);
+        growingBookFileList.addBookFileToList(reformeBookFile);
+        growingBookFileList.chooseReferenceFile(1);
+        assertTrue(growingBookFileList.getWordsOnlyPresentInReferenceFile().size() > uniqueWords.size());
+        growingBookFileList.addBookFileToList(traiteBookFile);
+        assertWordCountsEquals(uniqueWords, growingBookFileList.getWordsOnlyPresentInReferenceFile());
+        assertEquals(commonWordsRates, growingBookFileList.getCommonWordsRates());
+
+        growingBookFileList.removeBookFileFromList(reformeBookFile);
+        assertEquals(List.of(traiteBookFile), new ArrayList<>(growingBookFileList.getCommonWordsRates().keySet()));
+        growingBookFileList.chooseReferenceFile(2);
+        assertFalse(growingBookFileList.getWordsOnlyPresentInReferenceFile().contains(new Word("de", 1)));
+        assertTrue(growingBookFileList.getCommonWordsRates().containsKey(ethiqueBookFile));
+    }
+
+    @Test
+    public void bookSimilarityTest(@TempDir Path tempDir) throws IOException {
+        SimilarityMatrix similarityMatrix = bookFileList.getSimilarityMatrix();
+
+        assertEquals(ethiqueBookFile.getWordCount(), similarityMatrix.getCommonWordCount(0, 0));
+        assertEquals(bookFileList.getCommonWordsWithReferenceFile(reformeBookFile).size(), similarityMatrix.getCommonWordCount(0, 1));
+        assertEquals(similarityMatrix.getJaccard(0, 2), similarityMatrix.getJaccard(2, 0));
+        assertTrue(similarityMatrix.getOverlap(0, 1) >= similarityMatrix.getJaccard(0, 1));
+
+        // Near duplicate: ethique with its last lines removed
+        List<String> lines = Files.readAllLines(Path.of("resources/books/ethique-line.txt"), StandardCharsets.UTF_8);
+        Path nearDuplicatePath = tempDir.resolve("ethique-copie.txt");
+        Files.write(nearDuplicatePath, lines.subList(0, lines.size() - lines.size() / 50), StandardCharsets.UTF_8);
+        BookFile nearDuplicateBookFile = new BookFile(nearDuplicatePath);
+        bookFileList.addBookFileToList(nearDuplicateBookFile);
+
+        List<BookSimilarity> similarBookFiles = bookFileList.getSimilarBookFiles(0.8);
+        assertEquals(1, similarBookFiles.size());
+        assertEquals(ethiqueBookFile, similarBookFiles.get(0).getBookFile1());
+        assertEquals(nearDuplicateBookFile, similarBookFiles.get(0).getBookFile2());
+        double exactJaccard = bookFileList.getSimilarityMatrix().getJaccard(0, 3);
+        assertEquals(exactJaccard, similarBookFiles.get(0).getJaccard(), 0.1);
+    }
+
+    @Test
+    public void boundedBookCacheTest() {
+        List<Word> expectedUniqueWords = bookFileList.getWordsOnlyPresentInReferenceFile();
+        Map<BookFile, Double> expectedCommonWordsRates = bookFileList.getCommonWordsRates();
+
+        // Only the last accessed book stays loaded
+        BookFileList boundedBookFileList = new BookFileList();
+        boundedBookFileList.setMaxLoadedBytes(1);
+        BookFile boundedEthiqueBookFile = new BookFile(ethiqueBookFile.getFilePath());
+        boundedBookFileList.addBookFileToList(boundedEthiqueBookFile);
+        boundedBookFileList.addBookFileToList(new BookFile(reformeBookFile.getFilePath()));
+        boundedBookFileList.addBookFileToList(new BookFile(traiteBookFile.getFilePath()));
+        boundedBookFileList.chooseReferenceFile(1);
+
+        assertWordCountsEquals(expectedUniqueWords, boundedBookFileList.getWordsOnlyPresentInReferenceFile());
+        assertEquals(expectedCommonWordsRates.values().stream().toList(),
+                boundedBookFileList.getCommonWordsRates().values().stream().toList());
+        assertEquals(boundedBookFileList.getCommonWordsPercentage().size(), 2);
+
+        BookCacheStatistics statistics = boundedBookFileList.getBookCacheStatistics();
+        assertEquals(1, statistics.getLoadedBookCount());
+        assertTrue(statistics.getEvictionCount() >= 2);
+        assertTrue(statistics.getHitCount() > 0);
+
+        // Evicted book is loaded again with the same version, since its file did not change
+        BookSnapshot snapshot = boundedEthiqueBookFile.getSnapshot();
+        boundedEthiqueBookFile.unload();
+        assertFalse(boundedEthiqueBookFile.isBookLoadedInMemory());
+        assertEquals(snapshot.getVersion(), boundedEthiqueBookFile.getSnapshot().getVersion());
+
+        // Index only queries do not load evicted books again
+        long missCount = boundedBookFileList.getBookCacheStatistics().getMissCount();
+        assertEquals(bookFileList.getWordsPresentInAtLeast(3), boundedBookFileList.getWordsPresentInAtLeast(3));
+        assertEquals(missCount, boundedBookFileList.getBookCacheStatistics().getMissCount());
+
+        boundedBookFileList.setMaxLoadedBytes(Long.MAX_VALUE);
+        boundedBookFileList.getSimilarityMatrix();
+        assertEquals(3, boundedBookFileList.getBookCacheStatistics().getLoadedBookCount());
+    }
+
+    @Test
+    public void bookCacheScanTest(@TempDir Path tempDir) throws IOException {
+        List<BookFile> bookFiles = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Path bookPath = tempDir.resolve("livre-" + i + ".txt");
+            Files.copy(Path.of("resources/books/reforme-line.txt"), bookPath);
+            bookFiles.add(new BookFile(bookPath));
+        }
+        long bookSize = bookFiles.get(0).getSnapshot().getEstimatedSize();
+
+        // Books are scanned in order while only half of them fit: frequent books are kept instead of the last ones
+        BookCache bookCache = new BookCache(3 * bookSize, bookFile -> {
+        });
+        for (int scan = 0; scan < 5; scan++) {
+            for (BookFile bookFile : bookFiles) {
+                bookCache.recordAccess(bookFile, bookFile.getSnapshot());
+            }
+        }
+        BookCacheStatistics statistics = bookCache.getStatistics();
+        assertEquals(2 * 4, statistics.getHitCount());
+        assertTrue(statistics.getLoadedBytes() <= 3 * bookSize);
+        assertEquals(statistics.getLoadedBookCount(), bookFiles.stream().filter(BookFile::isBookLoadedInMemory).count());
+
+        // Streamed books are never unloaded, so they stay counted
+        BookFile streamedBookFile = BookFile.ofStream("flux");
+        bookCache.setMaxLoadedBytes(1);
+        bookCache.recordAccess(streamedBookFile, streamedBookFile.getSnapshot());
+        bookCache.recordAccess(bookFiles.get(0), bookFiles.get(0).getSnapshot());
+        assertEquals(2, bookCache.getStatistics().getLoadedBookCount());
+        assertEquals(bookSize + streamedBookFile.getSnapshot().getEstimatedSize(), bookCache.getStatistics().getLoadedBytes());
+    }
+
+    @Test
+    public void nGramCountsTest(@TempDir Path tempDir) throws IOException {
+        Path bookPath = tempDir.resolve("ngrammes.txt");
+        Files.write(bookPath, List.of("Le", "chat", "le", "chat", "noir"), StandardCharsets.UTF_8);
+        BookFile bookFile = new BookFile(bookPath);
+
+        assertEquals(List.of(new Word("le chat", 2), new Word("chat le", 1), new Word("chat noir", 1)),
+                bookFile.getMostUsedNGrams(2, 10));
+        assertEquals(List.of(2, 1, 1), bookFile.getMostUsedNGrams(2, 10).stream().map(Word::getCount).toList());
+        assertEquals(3, bookFile.getNGramCounts(3).size());
+        assertFalse(bookFile.getNGramCounts(3).isApproximate());
+
+        // Most used bigrams match bigrams counted with strings
+        List<String> words = Files.readAllLines(ethiqueBookFile.getFilePath(), StandardCharsets.UTF_8);
+        HashWordCounter bigramCounter = new HashWordCounter();
+        for (int i = 1; i < words.size(); i++) {
+            bigramCounter.add(words.get(i - 1).toLowerCase(Locale.ROOT) + " " + words.get(i).toLowerCase(Locale.ROOT));
+        }
+        List<Word> expectedBigrams = TopKSelector.select(bigramCounter.getWords(), 20, new WordComparator());
+        assertWordCountsEquals(expectedBigrams, ethiqueBookFile.getMostUsedNGrams(2, 20));
+
+        // Bounded memory keeps the most used bigrams
+        NGramCounter boundedCounter = new NGramCounter(2, WordDictionary.getSharedDictionary(), 10_000);
+        for (String word : words) {
+            boundedCounter.add(word.toLowerCase(Locale.ROOT));
+        }
+        assertTrue(boundedCounter.size() <= 10_000);
+        assertTrue(boundedCounter.getNGramCounts().isApproximate());
+        assertWordCountsEquals(expectedBigrams.subList(0, 5), boundedCounter.getNGramCounts().getMostCounted(5));
+    }
+
+    @Test
+    public void nGramsOnlyInReferenceTest() {
+        List<Word> uniqueBigrams = bookFileList.getNGramsOnlyPresentInReferenceFile(2);
+
+        NGramCounts reformeBigrams = reformeBookFile.getNGramCounts(2);
+        NGramCounts traiteBigrams = traiteBookFile.getNGramCounts(2);
+        NGramCounts ethiqueBigrams = ethiqueBookFile.getNGramCounts(2);
+        int expectedUniqueBigramCount = 0;
+        for (int i = 0; i < ethiqueBigrams.size(); i++) {
+            int[] wordIds = ethiqueBigrams.getWordIds(i);
+            if (reformeBigrams.indexOf(wordIds) < 0 && traiteBigrams.indexOf(wordIds) < 0) {
+                expectedUniqueBigramCount++;
+            }
+        }
+        assertEquals(expectedUniqueBigramCount, uniqueBigrams.size());
+        for (int i = 1; i < uniqueBigrams.size(); i++) {
+            assertTrue(new WordComparator().compare(uniqueBigrams.get(i - 1), uniqueBigrams.get(i)) < 0);
+        }
+    }
+
+    @Test
+    public void nGramLargeDictionaryTest() {
+        // Word ids beyond 21 bits do not fit in trigram keys, n-grams are packed with book local ids instead
+        WordDictionary largeDictionary = new WordDictionary();
+        for (int i = 0; i < (1 << 21) + 10; i++) {
+            largeDictionary.getId(Integer.toString(i));
+        }
+        NGramCounter trigramCounter = new NGramCounter(3, largeDictionary);
+        NGramCounter otherTrigramCounter = new NGramCounter(3, largeDictionary);
+        for (String word : List.of("le", "chat", "le", "chat", "le", "1", "2097160")) {
+            trigramCounter.add(word);
+        }
+        for (String word : List.of("2097160", "chat", "le", "chat", "le")) {
+            otherTrigramCounter.add(word);
+        }
+        NGramCounts trigrams = trigramCounter.getNGramCounts();
+        NGramCounts otherTrigrams = otherTrigramCounter.getNGramCounts();
+        assertEquals(List.of(new Word("le chat le", 2), new Word("chat le 1", 1), new Word("chat le chat", 1),
+                new Word("le 1 2097160", 1)), trigrams.getMostCounted(10));
+        assertTrue(largeDictionary.findId("2097160") >= 1 << 21);
+
+        // Keys of different books are ordered alike, so common trigrams are still found
+        boolean[] isInOther = new boolean[trigrams.size()];
+        trigrams.markCommonNGrams(otherTrigrams, isInOther);
+        int commonTrigramCount = 0;
+        for (int i = 0; i < trigrams.size(); i++) {
+            assertEquals(otherTrigrams.indexOf(trigrams.getWordIds(i)) >= 0, isInOther[i]);
+            commonTrigramCount += isInOther[i] ? 1 : 0;
+        }
+        assertEquals(2, commonTrigramCount);
+
+        // N-gram counts are part of the loaded book size
+        BookFileList nGramBookFileList = new BookFileList();
+        nGramBookFileList.addBookFileToList(new BookFile(ethiqueBookFile.getFilePath()));
+        nGramBookFileList.addBookFileToList(new BookFile(reformeBookFile.getFilePath()));
+        nGramBookFileList.chooseReferenceFile(1);
+        nGramBookFileList.getNGramsOnlyPresentInReferenceFile(2);
+        long expectedLoadedBytes = 0;
+        for (BookFile bookFile : nGramBookFileList.getBookFiles()) {
+            assertTrue(bookFile.getNGramCountsEstimatedSize() > 0);
+            expectedLoadedBytes += bookFile.getSnapshot().getEstimatedSize() + bookFile.getNGramCountsEstimatedSize();
+        }
+        assertEquals(expectedLoadedBytes, nGramBookFileList.getBookCacheStatistics().getLoadedBytes());
+    }
+
+    @Test
+    public void metricsTest() {
+        BookMetrics.reset();
+        BookMetrics.setEnabled(true);
+        try {
+            BookFile bookFile = new BookFile(Path.of("resources/books/reforme-line.txt"));
+            bookFile.getMostUsedWords(10);
+            bookFile.getMostUsedWords(10);
+            bookFileList.getWordsOnlyPresentInReferenceFile();
+
+            MetricsSnapshot metricsSnapshot = BookMetrics.getSnapshot();
+            BookLoadMetrics bookLoad = metricsSnapshot.getBookLoads().stream()
+                    .filter(load -> load.getFilePath().equals(bookFile.getFilePath())).findFirst().orElseThrow();
+            assertEquals(bookFile.getWordCount(), bookLoad.getDistinctWordCount());
+            assertTrue(bookLoad.getTokenCount() >= bookLoad.getDistinctWordCount());
+            assertTrue(bookLoad.getProbeCount() >= bookLoad.getTokenCount());
+            assertTrue(bookLoad.getResizeCount() > 0);
+            assertEquals(2, metricsSnapshot.getQueryLatencies().get("getMostUsedWords").getCount());
+            assertEquals(1, metricsSnapshot.getQueryLatencies().get("getWordsOnlyPresentInReferenceFile").getCount());
+        } finally {
+            BookMetrics.setEnabled(false);
+            BookMetrics.reset();
+        }
+
+        bookFileList.getWordsOnlyPresentInReferenceFile();
+        assertTrue(BookMetrics.getSnapshot().getQueryLatencies().isEmpty());
+    }
+
+    @Test
+    public void batchStatsCommandTest() {
+        StringWriter jsonOutput = new StringWriter();
+        int exitStatus = BatchCommand.run(new String[]{"stats", "--top", "1", "--reference", "resources/books/ethique-line.txt",
+                "resources/books/reforme-line.txt", "resources/books/traite-line.txt"}, jsonOutput);
+
+        assertEquals(BatchCommand.EXIT_SUCCESS, exitStatus);
+        List<String> records = jsonOutput.toString().lines().toList();
+        assertEquals("{\"type\":\"words\",\"book\":\"resources/books/ethique-line.txt\",\"value\":"
+                + ethiqueBookFile.getWordCount() + "}", records.get(0));
+        assertEquals("{\"type\":\"top\",\"book\":\"resources/books/ethique-line.txt\",\"rank\":1,\"word\":\"de\",\"value\":7098}",
+                records.get(1));
+        assertEquals(bookFileList.getWordsOnlyPresentInReferenceFile().size(),
+                records.stream().filter(r -> r.startsWith("{\"type\":\"only_in_reference\"")).count());
+        assertEquals(2, records.stream().filter(r -> r.startsWith("{\"type\":\"common_rate\"")).count());
+        assertTrue(records.stream().noneMatch(r -> r.startsWith("{\"type\":\"cosine\"")));
+
+        // TF-IDF records are only written on demand
+        StringWriter tfIdfOutput = new StringWriter();
+        assertEquals(BatchCommand.EXIT_SUCCESS, BatchCommand.run(new String[]{"stats", "--top", "2", "--tfidf",
+                "resources/books/ethique-line.txt", "resources/books/reforme-line.txt"}, tfIdfOutput));
+        List<String> tfIdfRecords = tfIdfOutput.toString().lines().toList();
+        assertEquals(1, tfIdfRecords.stream().filter(r -> r.startsWith("{\"type\":\"cosine\"")).count());
+        assertEquals(4, tfIdfRecords.stream().filter(r -> r.startsWith("{\"type\":\"distinctive\"")).count());
+
+        StringWriter csvOutput = new StringWriter();
+        BatchCommand.run(new String[]{"stats", "--format", "csv", "--top", "1", "resources/books/traite-line.txt"}, csvOutput);
+        assertTrue(csvOutput.toString().startsWith("type,book,rank,word,value\nwords,resources/books/traite-line.txt,,,"));
+
+        assertEquals(BatchCommand.EXIT_USAGE, BatchCommand.run(new String[]{"stats", "--top"}, new StringWriter()));
+        assertEquals(BatchCommand.EXIT_FAILURE, BatchCommand.run(new String[]{"stats", "livre-absent.txt"}, new StringWriter()));
+    }
+
+    @Test
+    public void textNormalizationTest(@TempDir Path tempDir) throws IOException {
+        TextNormalizer textNormalizer = TextNormalizer.parse("tokenization,case_folding,accent_stripping,"
+                + "punctuation_filtering,digit_filtering,french_stop_words,english_stop_words,light_stemming");
+        assertEquals("ethique", textNormalizer.normalize("Éthique"));
+        assertEquals("cheval", textNormalizer.normalize("chevaux"));
+        assertEquals("chapeau", textNormalizer.normalize("chapeaux"));
+        assertEquals("study", textNormalizer.normalize("studies"));
+        assertNull(textNormalizer.normalize("Le"));
+        assertNull(textNormalizer.normalize("1677"));
+        assertThrows(IllegalArgumentException.class, () -> TextNormalizer.parse("case_folding,inconnue"));
+
+        // Free-form lines give the same words whatever the load mode
+        Path bookPath = tempDir.resolve("libre.txt");
+        Files.write(bookPath, List.of("L'Éthique de Spinoza, 1677.", "Les chevaux et le cheval", "The studies of ÉTHIQUE"),
+                StandardCharsets.UTF_8);
+        for (LoadMode loadMode : LoadMode.values()) {
+            BookFile bookFile = new BookFile(bookPath, loadMode, Utf8WordTable::new);
+            bookFile.setTextNormalizer(textNormalizer);
+            assertEquals(List.of(new Word("cheval", 2), new Word("ethique", 2), new Word("spinoza", 1), new Word("study", 1)),
+                    bookFile.getWordList());
+            assertEquals(List.of(2, 2, 1, 1), bookFile.getWordList().stream().map(Word::getCount).toList());
+        }
+
+        // ASCII fast path and cached Unicode words match the normalization of each word
+        TextNormalizer wordNormalizer = TextNormalizer.parse("case_folding,accent_stripping,french_stop_words,light_stemming");
+        HashWordCounter expectedWordCounter = new HashWordCounter();
+        for (String line : Files.readAllLines(ethiqueBookFile.getFilePath(), StandardCharsets.UTF_8)) {
+            String word = wordNormalizer.normalize(line);
+            if (word != null) {
+                expectedWordCounter.add(word);
+            }
+        }
+        BookFile normalizedBookFile = new BookFile(ethiqueBookFile.getFilePath());
+        normalizedBookFile.setTextNormalizer(wordNormalizer);
+        List<Word> expectedWordList = new ArrayList<>(expectedWordCounter.getWords());
+        expectedWordList.sort(new WordComparator());
+        assertWordCountsEquals(expectedWordList, normalizedBookFile.getWordList());
+        assertTrue(normalizedBookFile.getWordCount() < ethiqueBookFile.getWordCount());
+
+        // Index files are only used by books read with the same normalizer
+        Path indexedBookPath = tempDir.resolve("indexe.txt");
+        Files.copy(ethiqueBookFile.getFilePath(), indexedBookPath);
+        BookFile indexedBookFile = new BookFile(indexedBookPath);
+        indexedBookFile.setIndexCacheEnabled(true);
+        assertEquals(ethiqueBookFile.getWordCount(), indexedBookFile.getWordCount());
+        BookFile normalizedIndexedBookFile = new BookFile(indexedBookPath);
+        normalizedIndexedBookFile.setIndexCacheEnabled(true);
+        normalizedIndexedBookFile.setTextNormalizer(wordNormalizer);
+        assertEquals(normalizedBookFile.getWordCount(), normalizedIndexedBookFile.getWordCount());
+    }
+
+    @Test
+    public void streamingAnalyzerTest() throws IOException {
+        ByteArrayOutputStream compressedBook = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutput = new GZIPOutputStream(compressedBook)) {
+            Files.copy(ethiqueBookFile.getFilePath(), gzipOutput);
+        }
+
+        // Capacity larger than the vocabulary, so that counts are exact
+        StreamingBookAnalyzer streamingBookAnalyzer = new StreamingBookAnalyzer("flux-ethique", 1 << 16);
+        streamingBookAnalyzer.setTopCount(10);
+        streamingBookAnalyzer.setSnapshotInterval(10_000, Long.MAX_VALUE);
+        List<StreamingSnapshot> snapshots = new ArrayList<>();
+        streamingBookAnalyzer.addSnapshotListener(snapshots::add);
+        StreamingSnapshot lastSnapshot = streamingBookAnalyzer.analyze(
+                StreamingBookAnalyzer.openInput(new ByteArrayInputStream(compressedBook.toByteArray())));
+
+        assertTrue(snapshots.size() > 10);
+        for (int i = 1; i < snapshots.size(); i++) {
+            assertTrue(snapshots.get(i).getWordCount() >= snapshots.get(i - 1).getWordCount());
+        }
+        assertSame(lastSnapshot, snapshots.get(snapshots.size() - 1));
+        assertTrue(lastSnapshot.isEndOfStream());
+        assertEquals(Files.size(ethiqueBookFile.getFilePath()), lastSnapshot.getByteCount());
+        assertEquals(Files.readAllLines(ethiqueBookFile.getFilePath()).size(), lastSnapshot.getWordCount());
+        assertEquals(ethiqueBookFile.getWordCount(), lastSnapshot.getDistinctWordCount(), ethiqueBookFile.getWordCount() * 0.03);
+        List<Word> mostUsedWords = ethiqueBookFile.getMostUsedWords(10);
+        for (int i = 0; i < mostUsedWords.size(); i++) {
+            assertEquals(mostUsedWords.get(i).getContent(), lastSnapshot.getMostUsedWords().get(i).getContent());
+            assertEquals(mostUsedWords.get(i).getCount(), lastSnapshot.getMostUsedWords().get(i).getCount());
+        }
+
+        // Streamed book is compared with books like the book file it was read from
+        BookFileList streamBookFileList = new BookFileList();
+        streamBookFileList.setConsoleMessagesEnabled(false);
+        streamBookFileList.addBookFileToList(streamingBookAnalyzer.getBookFile());
+        streamBookFileList.addBookFileToList(reformeBookFile);
+        streamBookFileList.addBookFileToList(traiteBookFile);
+        streamBookFileList.chooseReferenceFile(1);
+        assertEquals(new ArrayList<>(bookFileList.getCommonWordsRates().values()),
+                new ArrayList<>(streamBookFileList.getCommonWordsRates().values()));
+        assertEquals(bookFileList.getWordsOnlyPresentInReferenceFile().size(),
+                streamBookFileList.getWordsOnlyPresentInReferenceFile().size());
+        streamingBookAnalyzer.getBookFile().unload();
+        assertTrue(streamingBookAnalyzer.getBookFile().isBookLoadedInMemory());
+
+        // Stream command writes records for each snapshot
+        StringWriter output = new StringWriter();
+        int exitStatus = BatchCommand.run(new String[]{"stream", "--top", "2", "--interval", "50000",
+                "resources/books/reforme-line.txt"}, new ByteArrayInputStream(compressedBook.toByteArray()), output);
+        assertEquals(BatchCommand.EXIT_SUCCESS, exitStatus);
+        List<String> records = output.toString().lines().toList();
+        assertTrue(records.stream().filter(r -> r.startsWith("{\"type\":\"snapshot\"")).count() >= 3);
+        assertTrue(records.contains("{\"type\":\"top\",\"book\":\"stdin\",\"rank\":1,\"word\":\"de\",\"value\":7098}"));
+        assertTrue(records.get(records.size() - 1).startsWith("{\"type\":\"common_rate\",\"book\":\"resources/books/reforme-line.txt\""));
+    }
+
+    @Test
+    public void streamingDictionaryBoundTest() throws IOException {
+        // Each line is a new word, so that monitored words keep changing
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            text.append("de\n").append("motdeflux").append(i).append('\n');
+        }
+        StreamingBookAnalyzer streamingBookAnalyzer = new StreamingBookAnalyzer("flux-mots-nouveaux", 64);
+        streamingBookAnalyzer.setSnapshotInterval(1000, Long.MAX_VALUE);
+        int dictionarySize = WordDictionary.getSharedDictionary().size();
+        streamingBookAnalyzer.analyze(new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8)));
+
+        // Only as many words as monitored are added to the dictionary, known words are still counted
+        assertTrue(WordDictionary.getSharedDictionary().size() - dictionarySize <= 64);
+        BookSnapshot snapshot = streamingBookAnalyzer.getBookFile().getSnapshot();
+        assertEquals(20_000, snapshot.countOf("de"));
+        assertTrue(snapshot.getWordCounts().size() <= 64);
+    }
+
+    @Test
+    public void streamingLongLineTest() throws IOException {
+        // Stream without line terminator is counted in parts, cut between words
+        String text = "de mot ".repeat(50_000) + "é".repeat(100_000) + "\nde\n";
+        StreamingBookAnalyzer streamingBookAnalyzer = new StreamingBookAnalyzer("flux-sans-lignes", 16);
+        streamingBookAnalyzer.setTextNormalizer(TextNormalizer.parse("tokenization,case_folding"));
+        StreamingSnapshot lastSnapshot = streamingBookAnalyzer.analyze(
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+
+        BookSnapshot snapshot = streamingBookAnalyzer.getBookFile().getSnapshot();
+        assertEquals(50_001, snapshot.countOf("de"));
+        assertEquals(50_000, snapshot.countOf("mot"));
+        // Word longer than the line buffer is split, on character boundaries
+        long splitWordCount = lastSnapshot.getWordCount() - 100_001;
+        assertTrue(splitWordCount > 1);
+        for (Word word : snapshot.getMostUsedWords(Integer.MAX_VALUE)) {
+            assertTrue(word.getContent().chars().allMatch(c -> c == 'é') || word.getContent().matches("de|mot"));
+            assertTrue(word.getContent().getBytes(StandardCharsets.UTF_8).length <= 1 << 16);
+        }
+    }
+
+    @Test
+    public void syntheticCorpusTest(@TempDir Path tempDir) throws IOException {
+        SyntheticCorpus syntheticCorpus = new SyntheticCorpus(42, 5000, 1.0, 0.5);
+        List<Path> bookPaths = syntheticCorpus.writeBooks(tempDir.resolve("corpus"), 2, 100_000);
+        Path sameSeedBookPath = tempDir.resolve("same-seed-line.txt");
+        new SyntheticCorpus(42, 5000, 1.0, 0.5).writeBook(sameSeedBookPath, 0, 100_000);
+        assertEquals(-1, Files.mismatch(bookPaths.get(0), sameSeedBookPath));
+
+        // Word counts follow the Zipf distribution: the rank 1 word is about twice as frequent as the rank 2 word
+        BookFile syntheticBookFile = new BookFile(bookPaths.get(0));
+        List<Word> mostUsedWords = syntheticBookFile.getMostUsedWords(2);
+        assertEquals(syntheticCorpus.getWord(0, 1), mostUsedWords.get(0).getContent());
+        assertEquals(2.0, (double) mostUsedWords.get(0).getCount() / mostUsedWords.get(1).getCount(), 0.2);
+
+        // Books only share the shared vocabulary ranks
+        BookFileList syntheticBookFileList = new BookFileList();
+        syntheticBookFileList.setConsoleMessagesEnabled(false);
+        syntheticBookFileList.addBookFileToList(syntheticBookFile);
+        syntheticBookFileList.addBookFileToList(new BookFile(bookPaths.get(1)));
+        syntheticBookFileList.chooseReferenceFile(1);
+        double commonWordsRate = syntheticBookFileList.getCommonWordsRates().values().iterator().next();
+        assertTrue(commonWordsRate > 0.3 && commonWordsRate < 0.7);
+    }
+
+    @Test
+    public void compressedBookTest(@TempDir Path tempDir) throws IOException, InterruptedException {
+        byte[] book = Files.readAllBytes(ethiqueBookFile.getFilePath());
+
+        // Gzip members split in the middle of lines, like parallel gzip tools write them
+        Path multiMemberBookPath = tempDir.resolve("ethique-line.txt.gz");
+        try (var output = Files.newOutputStream(multiMemberBookPath)) {
+            int memberSize = 10_007;
+            for (int start = 0; start < book.length; start += memberSize) {
+                ByteArrayOutputStream member = new ByteArrayOutputStream();
+                try (GZIPOutputStream gzipOutput = new GZIPOutputStream(member)) {
+                    gzipOutput.write(book, start, Math.min(memberSize, book.length - start));
+                }
+                member.writeTo(output);
+            }
+        }
+        Path zstdBookPath = tempDir.resolve("ethique-line.txt.zst");
+        try (var output = new com.github.luben.zstd.ZstdOutputStream(Files.newOutputStream(zstdBookPath))) {
+            output.write(book);
+        }
+
+        for (Path compressedBookPath : List.of(multiMemberBookPath, zstdBookPath)) {
+            BookFile compressedBookFile = new BookFile(compressedBookPath);
+            assertEquals(ethiqueBookFile.getWordCount(), compressedBookFile.getWordCount());
+            assertEquals(ethiqueBookFile.getMostUsedWords(20), compressedBookFile.getMostUsedWords(20));
+            assertFalse(compressedBookFile.refresh());
+        }
+
+        // Members decompressed in parallel give the same counts as the sequential decompression
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            CompressedBookReader compressedBookReader = new CompressedBookReader(pool, 4, 4096);
+            WordCounter parallelCounter = compressedBookReader.readWords(multiMemberBookPath,
+                    Files.size(multiMemberBookPath), BookCompression.GZIP, TextNormalizer.DEFAULT, Utf8WordTable::new);
+            WordCounter sequentialCounter = new Utf8WordTable();
+            compressedBookReader.readWords(multiMemberBookPath, Files.size(multiMemberBookPath), BookCompression.GZIP,
+                    TextNormalizer.DEFAULT, sequentialCounter);
+            assertEquals(ethiqueBookFile.getWordCount(), parallelCounter.size());
+            Map<String, Integer> sequentialCounts = new java.util.HashMap<>();
+            sequentialCounter.getWords().forEach(word -> sequentialCounts.put(word.getContent(), word.getCount()));
+            for (Word word : parallelCounter.getWords()) {
+                assertEquals(sequentialCounts.get(word.getContent()), word.getCount());
+            }
+        } finally {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void bookQueryServerTest(@TempDir Path tempDir) throws IOException, InterruptedException {
+        Path growingBookPath = tempDir.resolve("ethique-line.txt");
+        Files.copy(ethiqueBookFile.getFilePath(), growingBookPath);
+        BookFile growingBookFile = new BookFile(growingBookPath);
+        BookFileList serverBookFileList = new BookFileList(BookLoaderPools.newBoundedPool(2));
+        serverBookFileList.setConsoleMessagesEnabled(false);
+        serverBookFileList.addBookFileToList(growingBookFile);
+        serverBookFileList.addBookFileToList(reformeBookFile);
+        serverBookFileList.addBookFileToList(traiteBookFile);
+
+        try (BookQueryServer bookQueryServer = new BookQueryServer(serverBookFileList,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), Executors.newFixedThreadPool(16))) {
+            bookQueryServer.start();
+            HttpClient httpClient = HttpClient.newHttpClient();
+            URI serverUri = URI.create("http://localhost:" + bookQueryServer.getPort());
+
+            // Concurrent identical requests share a single computation
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                responses.add(httpClient.sendAsync(HttpRequest.newBuilder(serverUri.resolve("/common-rates?reference=1")).build(),
+                        HttpResponse.BodyHandlers.ofString()));
+            }
+            String commonRates = responses.get(0).join().body();
+            for (CompletableFuture<HttpResponse<String>> response : responses) {
+                assertEquals(200, response.join().statusCode());
+                assertEquals(commonRates, response.join().body());
+            }
+            assertEquals(1, bookQueryServer.getComputationCount());
+            List<String> commonRateRecords = commonRates.lines().toList();
+            List<Double> expectedRates = new ArrayList<>(bookFileList.getCommonWordsRates().values());
+            assertEquals(expectedRates.size(), commonRateRecords.size());
+            for (int i = 0; i < expectedRates.size(); i++) {
+                assertTrue(commonRateRecords.get(i).endsWith("\"value\":" + expectedRates.get(i) + "}"));
+            }
+
+            String wordsUri = "/words?book=1";
+            assertEquals("{\"type\":\"words\",\"book\":\"" + growingBookFile + "\",\"value\":"
+                    + ethiqueBookFile.getWordCount() + "}", get(httpClient, serverUri.resolve(wordsUri)).body().strip());
+            assertEquals(10, get(httpClient, serverUri.resolve("/top?book=2&count=10")).body().lines().count());
+            assertEquals(400, get(httpClient, serverUri.resolve("/words?book=4")).statusCode());
+            assertEquals(400, get(httpClient, serverUri.resolve("/top?book=1&count=dix")).statusCode());
+            assertEquals(400, get(httpClient, serverUri.resolve("/top?book=1&count=1001")).statusCode());
+            assertEquals(404, get(httpClient, serverUri.resolve("/mots")).statusCode());
+
+            // Cached responses are computed again once their book changed, book accesses being still recorded
+            long computationCount = bookQueryServer.getComputationCount();
+            long hitCount = serverBookFileList.getBookCacheStatistics().getHitCount();
+            get(httpClient, serverUri.resolve(wordsUri));
+            assertEquals(computationCount, bookQueryServer.getComputationCount());
+            assertEquals(hitCount + 1, serverBookFileList.getBookCacheStatistics().getHitCount());
+            Files.writeString(growingBookPath, "motajoutealethique\n", StandardOpenOption.APPEND);
+            assertTrue(growingBookFile.refresh());
+            assertTrue(get(httpClient, serverUri.resolve(wordsUri)).body().contains(
+                    "\"value\":" + (ethiqueBookFile.getWordCount() + 1) + "}"));
+            assertEquals(computationCount + 1, bookQueryServer.getComputationCount());
+            assertTrue(get(httpClient, serverUri.resolve("/only-in-reference?reference=1")).body()
+                    .contains("\"word\":\"motajoutealethique\""));
+        }
+    }
+
     @Test
     public void deNotOnlyInEthique() {
         assertFalse(bookFileList.getWordsOnlyPresentInReferenceFile().contains(new Word("de", 1)));
     }
 
-}
\ No newline at end of file
+    private static void assertWordCountsEquals(List<Word> expectedWordList, List<Word> actualWordList) {
+        assertEquals(expectedWordList.size(), actualWordList.size());
+        for (int i = 0; i < expectedWordList.size(); i++) {
+            assertEquals(expectedWordList.get(i).getContent(), actualWordList.get(i).getContent());
+            assertEquals(expectedWordList.get(i).getCount(), actualWordList.get(i).getCount());
+        }
+    }
+
+    private static HttpResponse<String> get(HttpClient httpClient, URI uri) throws IOException, InterruptedException {
+        return httpClient.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+}
@@ -0,0 +1,201 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.ToLongFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Scalability of book loading and comparison on synthetic corpora (see {@link SyntheticCorpus}), at growing sizes
+ * and book counts. Each operation is measured at each size, time and peak heap making curves written in
+ * target/scalability as CSV files. The run fails when a curve grows faster than linearly: the growth exponent
+ * (slope of the log-log curve) must stay under {@code scalability.maxExponent} (1.3 by default).
+ * <p>
+ * These tests are long and not run by default, run them with {@code mvn test -Pscalability}.
+ */
+@Tag("scalability")
+public class ScalabilityTests {
+
+    private static final long SEED = 20240517L;
+    private static final double ZIPF_EXPONENT = 1.05;
+    private static final double SHARED_VOCABULARY_RATE = 0.7;
+    // Vocabulary grows with book size, like in real corpora
+    private static final int WORDS_PER_VOCABULARY_RANK = 8;
+    private static final double MAX_EXPONENT = Double.parseDouble(System.getProperty("scalability.maxExponent", "1.3"));
+    private static final Path CURVES_DIRECTORY = Path.of("target", "scalability");
+
+    @TempDir
+    static Path corpusDirectory;
+
+    @BeforeAll
+    public static void warmUp() throws IOException {
+        // Measured code is compiled before the first measure, so that it does not make small sizes look slow
+        List<Path> bookPaths = newCorpus(1 << 16).writeBooks(corpusDirectory.resolve("warm-up"), 4, 1 << 16);
+        for (int i = 0; i < 5; i++) {
+            compareBooks(bookPaths);
+        }
+    }
+
+    @Test
+    public void bookLoadScalabilityTest() throws IOException {
+        List<Measure> measures = new ArrayList<>();
+        for (int wordCount = 1 << 18; wordCount <= 1 << 23; wordCount <<= 1) {
+            Path bookPath = newCorpus(wordCount).writeBooks(corpusDirectory.resolve("load-" + wordCount), 1, wordCount).get(0);
+            measures.add(measure(wordCount, () -> assertTrue(new BookFile(bookPath).getWordCount() > 0)));
+        }
+        checkCurves("book_load", "words", measures);
+    }
+
+    @Test
+    public void bookSizeComparisonScalabilityTest() throws IOException {
+        List<Measure> measures = new ArrayList<>();
+        for (int wordCount = 1 << 17; wordCount <= 1 << 20; wordCount <<= 1) {
+            List<Path> bookPaths = newCorpus(wordCount).writeBooks(corpusDirectory.resolve("size-" + wordCount), 4, wordCount);
+            measures.add(measure(wordCount, () -> compareBooks(bookPaths)));
+        }
+        checkCurves("book_size_comparison", "words", measures);
+    }
+
+    @Test
+    public void bookCountComparisonScalabilityTest() throws IOException {
+        int wordCount = 1 << 17;
+        List<Path> allBookPaths = newCorpus(wordCount).writeBooks(corpusDirectory.resolve("count"), 32, wordCount);
+        List<Measure> measures = new ArrayList<>();
+        for (int bookCount = 4; bookCount <= allBookPaths.size(); bookCount <<= 1) {
+            List<Path> bookPaths = allBookPaths.subList(0, bookCount);
+            measures.add(measure(bookCount, () -> compareBooks(bookPaths)));
+        }
+        checkCurves("book_count_comparison", "books", measures);
+    }
+
+    private static SyntheticCorpus newCorpus(int wordCount) {
+        return new SyntheticCorpus(SEED, wordCount / WORDS_PER_VOCABULARY_RANK, ZIPF_EXPONENT, SHARED_VOCABULARY_RATE);
+    }
+
+    /**
+     * Loads and compares books, the first one being the reference book.
+     * The similarity matrix is not computed, since it compares all pairs of books.
+     *
+     * @param bookPaths the book file paths.
+     */
+    private static void compareBooks(List<Path> bookPaths) {
+        BookFileList bookFileList = new BookFileList();
+        bookFileList.setConsoleMessagesEnabled(false);
+        for (Path bookPath : bookPaths) {
+            bookFileList.addBookFileToList(new BookFile(bookPath));
+        }
+        bookFileList.chooseReferenceFile(1);
+
+        assertFalse(bookFileList.getWordsOnlyPresentInReferenceFile().isEmpty());
+        assertEquals(bookPaths.size() - 1, bookFileList.getCommonWordsRates().size());
+    }
+
+    /**
+     * Measures a single run of an operation, with the peak heap used above the heap used before it.
+     * Only the first run is measured: later runs would find their words already in the shared dictionary, hiding its
+     * growth.
+     *
+     * @param size      the size the operation runs at.
+     * @param operation the measured operation.
+     * @return the measure.
+     */
+    private static Measure measure(long size, Runnable operation) {
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        long usedHeapBytes = 0;
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPool.getType() == MemoryType.HEAP) {
+                memoryPool.resetPeakUsage();
+                heapPools.add(memoryPool);
+                usedHeapBytes += memoryPool.getUsage().getUsed();
+            }
+        }
+
+        long startNanos = System.nanoTime();
+        operation.run();
+        long nanos = System.nanoTime() - startNanos;
+
+        long peakHeapBytes = 0;
+        for (MemoryPoolMXBean memoryPool : heapPools) {
+            peakHeapBytes += memoryPool.getPeakUsage().getUsed();
+        }
+        return new Measure(size, nanos, Math.max(peakHeapBytes - usedHeapBytes, 1));
+    }
+
+    /**
+     * Writes the time and peak heap curves of an operation, and checks that they grow at most linearly.
+     *
+     * @param operation the operation name.
+     * @param sizeName  the name of the size the operation runs at.
+     * @param measures  the measures, by increasing size.
+     * @throws IOException if the curves cannot be written.
+     */
+    private static void checkCurves(String operation, String sizeName, List<Measure> measures) throws IOException {
+        StringBuilder curves = new StringBuilder(sizeName + ",millis,peak_heap_bytes\n");
+        for (Measure measure : measures) {
+            curves.append(measure.size).append(',')
+                    .append(String.format(Locale.ROOT, "%.3f", measure.nanos / 1e6)).append(',')
+                    .append(measure.peakHeapBytes).append('\n');
+        }
+        Files.createDirectories(CURVES_DIRECTORY);
+        Files.writeString(CURVES_DIRECTORY.resolve(operation + ".csv"), curves, StandardCharsets.UTF_8);
+
+        double timeExponent = getGrowthExponent(measures, measure -> measure.nanos);
+        double heapExponent = getGrowthExponent(measures, measure -> measure.peakHeapBytes);
+        assertTrue(timeExponent <= MAX_EXPONENT,
+                operation + " time grows faster than linearly, exponent " + timeExponent);
+        assertTrue(heapExponent <= MAX_EXPONENT,
+                operation + " peak heap grows faster than linearly, exponent " + heapExponent);
+    }
+
+    /**
+     * Gets the growth exponent of a curve: the least squares slope of its log-log curve, 1 for a linear growth.
+     *
+     * @param measures the curve measures.
+     * @param value    the curve value of a measure.
+     * @return the growth exponent.
+     */
+    private static double getGrowthExponent(List<Measure> measures, ToLongFunction<Measure> value) {
+        double meanX = 0;
+        double meanY = 0;
+        for (Measure measure : measures) {
+            meanX += Math.log(measure.size) / measures.size();
+            meanY += Math.log(value.applyAsLong(measure)) / measures.size();
+        }
+        double covariance = 0;
+        double variance = 0;
+        for (Measure measure : measures) {
+            double x = Math.log(measure.size) - meanX;
+            covariance += x * (Math.log(value.applyAsLong(measure)) - meanY);
+            variance += x * x;
+        }
+        return covariance / variance;
+    }
+
+    private static class Measure {
+
+        private final long size;
+        private final long nanos;
+        private final long peakHeapBytes;
+
+        private Measure(long size, long nanos, long peakHeapBytes) {
+            this.size = size;
+            this.nanos = nanos;
+            this.peakHeapBytes = peakHeapBytes;
+        }
+
+    }
+
+}
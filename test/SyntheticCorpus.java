@@ -0,0 +1,156 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic generator of synthetic books, one word per line like the bundled "-line.txt" books.
+ * Word ranks follow a Zipf distribution: the word of rank r (from 1) is drawn with a probability proportional to
+ * 1 / r^exponent. Each book has the same number of ranks; a rank holds either a word shared by all books or a word
+ * specific to the book, so that the shared vocabulary rate sets how much books overlap. The same seed always gives
+ * the same books.
+ */
+public class SyntheticCorpus {
+
+    private static final String[] CONSONANTS = {"b", "c", "d", "f", "g", "j", "l", "m", "n", "p", "r", "s", "t", "v",
+            "ch", "qu", "tr", "pl", "gr", "br"};
+    private static final String[] VOWELS = {"a", "e", "i", "o", "u", "é"};
+
+    private final long seed;
+    private final int vocabularySize;
+    private final double zipfExponent;
+    private final double sharedVocabularyRate;
+    private final double[] cumulativeProbabilities;
+    private final boolean[] isSharedRank;
+
+    /**
+     * Constructor of a corpus generator.
+     *
+     * @param seed                 the seed of the generated books.
+     * @param vocabularySize       the number of word ranks of each book.
+     * @param zipfExponent         the Zipf exponent, about 1 for natural languages.
+     * @param sharedVocabularyRate the rate of ranks holding a word shared by all books, between 0 and 1.
+     */
+    public SyntheticCorpus(long seed, int vocabularySize, double zipfExponent, double sharedVocabularyRate) {
+        this.seed = seed;
+        this.vocabularySize = vocabularySize;
+        this.zipfExponent = zipfExponent;
+        this.sharedVocabularyRate = sharedVocabularyRate;
+
+        cumulativeProbabilities = new double[vocabularySize];
+        double sum = 0;
+        for (int rank = 1; rank <= vocabularySize; rank++) {
+            sum += 1 / Math.pow(rank, zipfExponent);
+            cumulativeProbabilities[rank - 1] = sum;
+        }
+        for (int i = 0; i < vocabularySize; i++) {
+            cumulativeProbabilities[i] /= sum;
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        isSharedRank = new boolean[vocabularySize];
+        for (int i = 0; i < vocabularySize; i++) {
+            isSharedRank[i] = random.nextDouble() < sharedVocabularyRate;
+        }
+    }
+
+    /**
+     * Gets the word of a rank in a book.
+     *
+     * @param bookIndex the book index.
+     * @param rank      the word rank, from 1.
+     * @return the word content, specific words ending with the book index.
+     */
+    public String getWord(int bookIndex, int rank) {
+        StringBuilder word = new StringBuilder();
+        // Ranks are written with syllables, most frequent words being the shortest ones
+        int syllables = rank - 1;
+        do {
+            int syllable = syllables % (CONSONANTS.length * VOWELS.length);
+            word.append(CONSONANTS[syllable / VOWELS.length]).append(VOWELS[syllable % VOWELS.length]);
+            syllables /= CONSONANTS.length * VOWELS.length;
+        } while (syllables > 0);
+
+        if (!isSharedRank[rank - 1]) {
+            word.append(bookIndex);
+        }
+        return word.toString();
+    }
+
+    /**
+     * Writes a book.
+     *
+     * @param bookPath  the book file path.
+     * @param bookIndex the book index, selecting its specific words and its random sequence.
+     * @param wordCount the number of words (lines) of the book.
+     * @throws IOException if the book cannot be written.
+     */
+    public void writeBook(Path bookPath, int bookIndex, long wordCount) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed * 31 + bookIndex);
+        try (BufferedWriter writer = Files.newBufferedWriter(bookPath, StandardCharsets.UTF_8)) {
+            for (long i = 0; i < wordCount; i++) {
+                writer.write(getWord(bookIndex, drawRank(random)));
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Writes books named "synthetic-[book index]-line.txt" in a directory.
+     *
+     * @param directory the books directory.
+     * @param bookCount the number of books.
+     * @param wordCount the number of words (lines) of each book.
+     * @return the book file paths, by book index.
+     * @throws IOException if books cannot be written.
+     */
+    public List<Path> writeBooks(Path directory, int bookCount, long wordCount) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> bookPaths = new ArrayList<>(bookCount);
+        for (int bookIndex = 0; bookIndex < bookCount; bookIndex++) {
+            Path bookPath = directory.resolve("synthetic-" + bookIndex + "-line.txt");
+            writeBook(bookPath, bookIndex, wordCount);
+            bookPaths.add(bookPath);
+        }
+        return bookPaths;
+    }
+
+    /**
+     * Gets the number of word ranks of each book.
+     *
+     * @return the vocabulary size.
+     */
+    public int getVocabularySize() {
+        return vocabularySize;
+    }
+
+    /**
+     * Gets the Zipf exponent of word ranks.
+     *
+     * @return the Zipf exponent.
+     */
+    public double getZipfExponent() {
+        return zipfExponent;
+    }
+
+    /**
+     * Gets the rate of ranks holding a word shared by all books.
+     *
+     * @return the shared vocabulary rate.
+     */
+    public double getSharedVocabularyRate() {
+        return sharedVocabularyRate;
+    }
+
+    private int drawRank(SplittableRandom random) {
+        int index = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+        // Rounding may leave the last cumulative probability a bit under 1
+        return Math.min(index >= 0 ? index : -index - 1, vocabularySize - 1) + 1;
+    }
+
+}